@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Enumeration;
+
+/**
+ * Loads the function jars embedded in the benchmarks jar. Classes are shared with the benchmarks class path but
+ * resources are only visible from the function jar so that each class loader only exposes its own functions.
+ */
+public class FunctionJars {
+    public static final String SAMPLE = "pfunc-sample";
+    public static final String HELPERS = "pfunc-helpers";
+
+    public static URLClassLoader createClassLoader(String... names) throws IOException {
+        URL[] urls = new URL[names.length];
+        for (int i = 0; i < names.length; i++) {
+            urls[i] = extractJar(names[i]).toURI().toURL();
+        }
+        return new URLClassLoader(urls, new ClassesOnlyClassLoader(FunctionJars.class.getClassLoader()));
+    }
+
+    public static File extractJar(String name) throws IOException {
+        String path = "pfunc-jars/" + name + ".jar";
+        File file = File.createTempFile(name, ".jar");
+        file.deleteOnExit();
+        try (InputStream in = FunctionJars.class.getClassLoader().getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Could not find " + path + " on the classpath");
+            }
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return file;
+    }
+
+    private static class ClassesOnlyClassLoader extends ClassLoader {
+        ClassesOnlyClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        public URL getResource(String name) {
+            return null;
+        }
+
+        @Override
+        public Enumeration<URL> getResources(String name) {
+            return Collections.emptyEnumeration();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.benchmarks;
+
+import io.pfunc.loader.PFuncContext;
+import io.pfunc.loader.PFuncIndex;
+import io.pfunc.loader.PFuncInfo;
+import io.pfunc.sample.Bootstrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.beans.BeanInfo;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting the function metadata returned by a bootstrap class into {@link PFuncInfo} using
+ * java.beans introspection as the loader used to, which happens for every function when loading a library, compared with reading the
+ * function index generated for the library at build time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntrospectionBenchmark {
+    private MetadataContext context = new MetadataContext();
+    private Method metadataMethod;
+    private Object metadata;
+    private URL index;
+
+    @Setup
+    public void setup() throws Exception {
+        metadataMethod = Bootstrap.class.getMethod("functionMetadata");
+        metadata = Bootstrap.functionMetadata()[0];
+        index = Bootstrap.class.getClassLoader().getResource("META-INF/services/io.pfunc/pfunc.index");
+    }
+
+    @Benchmark
+    public Object readProperties() {
+        BeanInfo info = IntrospectorBaseline.introspect(metadata);
+        IntrospectorBaseline.getStringProperty(info, "name", metadata);
+        IntrospectorBaseline.getStringProperty(info, "description", metadata);
+        return IntrospectorBaseline.getClassProperty(info, "returnType", metadata);
+    }
+
+    @Benchmark
+    public List<PFuncInfo> convertMetadata() {
+        return context.convertMetadata(metadataMethod);
+    }
+
+    @Benchmark
+    public List<PFuncInfo> readIndex() {
+        return PFuncIndex.read(index, Bootstrap.class.getClassLoader());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<PFuncInfo> convertMetadataContended() {
+        return context.convertMetadata(metadataMethod);
+    }
+
+    private static class MetadataContext extends PFuncContext {
+        List<PFuncInfo> convertMetadata(Method metadataMethod) {
+            List<PFuncInfo> answer = new ArrayList<>();
+            addFunctionMetadata(metadataMethod, answer);
+            return answer;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.benchmarks;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+
+/**
+ * The java.beans introspection the loader used to read function metadata with before the cached accessor tables.
+ * It is kept here as the baseline the benchmarks compare against so they do not depend on the deprecated
+ * <code>IntrospectionHelper</code>.
+ */
+class IntrospectorBaseline {
+    static BeanInfo introspect(Object value) {
+        try {
+            return Introspector.getBeanInfo(value.getClass());
+        } catch (IntrospectionException e) {
+            throw new IllegalArgumentException("Could not introspect " + value.getClass().getName() + " due to " + e, e);
+        }
+    }
+
+    static Object getObjectProperty(BeanInfo info, String name, Object bean) {
+        for (PropertyDescriptor propertyDescriptor : info.getPropertyDescriptors()) {
+            if (name.equals(propertyDescriptor.getName())) {
+                Method readMethod = propertyDescriptor.getReadMethod();
+                if (readMethod == null) {
+                    return null;
+                }
+                try {
+                    return readMethod.invoke(bean);
+                } catch (Exception e) {
+                    throw new IllegalStateException("Could not invoke " + readMethod + " on " + bean + " due to " + e, e);
+                }
+            }
+        }
+        return null;
+    }
+
+    static String getStringProperty(BeanInfo info, String name, Object bean) {
+        Object value = getObjectProperty(info, name, bean);
+        return value != null ? value.toString() : null;
+    }
+
+    static Class<?> getClassProperty(BeanInfo info, String name, Object bean) {
+        Object value = getObjectProperty(info, name, bean);
+        return value instanceof Class ? (Class<?>) value : null;
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.benchmarks;
+
+import io.pfunc.loader.PFuncContext;
+import io.pfunc.loader.PFuncIndex;
+import io.pfunc.loader.PFuncInfo;
+import io.pfunc.sample.MyFunc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the startup cost of creating the metadata of a library with thousands of functions, either by converting
+ * the results of its bootstrap <code>functionMetadata()</code> method via the cached accessor tables or via
+ * java.beans introspection as the loader used to, or by reading a generated function index. Each also links the
+ * target methods of the functions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LargeLibraryBenchmark {
+    private static Method[] methods;
+    private static int metadataCount;
+
+    @Param({"1000", "5000"})
+    public int functionCount;
+
+    private MetadataContext context = new MetadataContext();
+    private Method metadataMethod;
+    private byte[] index;
+
+    @Setup
+    public void setup() throws Exception {
+        methods = new Method[]{
+                MyFunc.class.getMethod("helloWorld", String.class),
+                MyFunc.class.getMethod("increment", long.class),
+                MyFunc.class.getMethod("words", String.class),
+                MyFunc.class.getMethod("waitFor", long.class)
+        };
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeInt(0x50464E58);
+            out.writeShort(1);
+            out.writeInt(functionCount);
+            for (int i = 0; i < functionCount; i++) {
+                Method method = methods[i % methods.length];
+                writeIndexEntry(out, method.getName() + i, method);
+            }
+        }
+        index = buffer.toByteArray();
+        metadataCount = functionCount;
+        metadataMethod = LargeLibraryBenchmark.class.getMethod("functionMetadata");
+    }
+
+    /**
+     * Creates the metadata like a bootstrap class does, finding each method via reflection
+     */
+    public static io.pfunc.bootstrap.PFuncInfo[] functionMetadata() throws NoSuchMethodException {
+        io.pfunc.bootstrap.PFuncInfo[] answer = new io.pfunc.bootstrap.PFuncInfo[metadataCount];
+        for (int i = 0; i < answer.length; i++) {
+            Method method = methods[i % methods.length];
+            answer[i] = new io.pfunc.bootstrap.PFuncInfo(MyFunc.class.getMethod(method.getName(), method.getParameterTypes()));
+        }
+        return answer;
+    }
+
+    @Benchmark
+    public List<PFuncInfo> convertMetadata() throws IllegalAccessException {
+        return linkTargets(context.convertMetadata(metadataMethod));
+    }
+
+    @Benchmark
+    public List<PFuncInfo> convertMetadataWithIntrospector() throws Exception {
+        List<PFuncInfo> answer = new ArrayList<>();
+        for (Object value : (Object[]) metadataMethod.invoke(null)) {
+            BeanInfo info = IntrospectorBaseline.introspect(value);
+            PFuncInfo function = new PFuncInfo();
+            function.setName(IntrospectorBaseline.getStringProperty(info, "name", value));
+            function.setDescription(IntrospectorBaseline.getStringProperty(info, "description", value));
+            function.setReturnType(IntrospectorBaseline.getClassProperty(info, "returnType", value));
+            Object[] parameters = (Object[]) IntrospectorBaseline.getObjectProperty(info, "parameterInfos", value);
+            for (Object parameter : parameters) {
+                BeanInfo parameterInfo = IntrospectorBaseline.introspect(parameter);
+                IntrospectorBaseline.getStringProperty(parameterInfo, "name", parameter);
+                IntrospectorBaseline.getStringProperty(parameterInfo, "description", parameter);
+                IntrospectorBaseline.getClassProperty(parameterInfo, "type", parameter);
+            }
+            function.setMethod((Method) IntrospectorBaseline.getObjectProperty(info, "method", value));
+            function.setPure(Boolean.TRUE.equals(IntrospectorBaseline.getObjectProperty(info, "pure", value)));
+            answer.add(function);
+        }
+        // the loader had to flush the caches after loading each library so its class loader could be collected
+        Introspector.flushFromCaches(io.pfunc.bootstrap.PFuncInfo.class);
+        Introspector.flushFromCaches(io.pfunc.bootstrap.PFuncParameterInfo.class);
+        return linkTargets(answer);
+    }
+
+    @Benchmark
+    public List<PFuncInfo> readIndex() throws IOException {
+        return PFuncIndex.read(new DataInputStream(new ByteArrayInputStream(index)), MyFunc.class.getClassLoader());
+    }
+
+    /**
+     * Links the target methods as the loader does when creating the functions, which the index does while reading
+     */
+    private static List<PFuncInfo> linkTargets(List<PFuncInfo> infos) throws IllegalAccessException {
+        for (PFuncInfo info : infos) {
+            info.setTarget(MethodHandles.publicLookup().unreflect(info.getMethod()));
+        }
+        return infos;
+    }
+
+    private static void writeIndexEntry(DataOutputStream out, String name, Method method) throws IOException {
+        out.writeUTF(name);
+        out.writeUTF("");
+        out.writeUTF(method.getDeclaringClass().getName());
+        out.writeUTF(method.getName());
+        out.writeUTF(MethodType.methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString());
+        out.writeByte(0);
+        out.writeShort(method.getParameterCount());
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            out.writeUTF("arg" + i);
+            out.writeUTF("");
+        }
+    }
+
+    private static class MetadataContext extends PFuncContext {
+        List<PFuncInfo> convertMetadata(Method metadataMethod) {
+            List<PFuncInfo> answer = new ArrayList<>();
+            addFunctionMetadata(metadataMethod, answer);
+            return answer;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.benchmarks;
+
+import io.pfunc.loader.PFuncContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PFuncContext#loadFunctions(ClassLoader)} for the sample and helpers jars into a new context,
+ * from one thread and from several threads sharing the same class loaders, and for a class loader holding both jars
+ * with and without parallel loading.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadFunctionsBenchmark {
+    private URLClassLoader sampleClassLoader;
+    private URLClassLoader helpersClassLoader;
+    private URLClassLoader combinedClassLoader;
+
+    @Setup
+    public void setup() throws IOException {
+        sampleClassLoader = FunctionJars.createClassLoader(FunctionJars.SAMPLE);
+        helpersClassLoader = FunctionJars.createClassLoader(FunctionJars.HELPERS);
+        combinedClassLoader = FunctionJars.createClassLoader(FunctionJars.SAMPLE, FunctionJars.HELPERS);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        sampleClassLoader.close();
+        helpersClassLoader.close();
+        combinedClassLoader.close();
+    }
+
+    @Benchmark
+    public PFuncContext loadSample() throws IOException {
+        return new PFuncContext(sampleClassLoader);
+    }
+
+    @Benchmark
+    public PFuncContext loadHelpers() throws IOException {
+        return new PFuncContext(helpersClassLoader);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PFuncContext loadSampleContended() throws IOException {
+        return new PFuncContext(sampleClassLoader);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PFuncContext loadHelpersContended() throws IOException {
+        return new PFuncContext(helpersClassLoader);
+    }
+
+    @Benchmark
+    public PFuncContext loadCombined() throws IOException {
+        return new PFuncContext(combinedClassLoader);
+    }
+
+    @Benchmark
+    public PFuncContext loadCombinedParallel() throws IOException {
+        PFuncContext context = new PFuncContext();
+        context.setParallelLoading(true);
+        context.loadFunctions(combinedClassLoader);
+        return context;
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.benchmarks;
+
+import io.pfunc.loader.PFuncContext;
+import io.pfunc.loader.PFuncRef;
+import io.pfunc.loader.PFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up and invoking functions on a context shared by all threads holding the sample and helpers
+ * functions, including <code>listFunctions</code> from the helpers jar which lists the functions of the resolver.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+    private PFuncContext context;
+    private PFunction helloWorld;
+    private PFuncRef helloWorldRef;
+    private PFunction listFunctions;
+
+    @Setup
+    public void setup() throws IOException {
+        context = new PFuncContext(FunctionJars.createClassLoader(FunctionJars.SAMPLE));
+        context.loadFunctions(FunctionJars.createClassLoader(FunctionJars.HELPERS));
+        helloWorld = context.withName("helloWorld");
+        helloWorldRef = context.ref("helloWorld");
+        listFunctions = context.withName("listFunctions");
+
+        PFuncContext resolverContext = io.pfunc.resolver.Bootstrap.getContext();
+        if (resolverContext.getFunctionMap().isEmpty()) {
+            resolverContext.loadFunctions(FunctionJars.createClassLoader(FunctionJars.SAMPLE));
+        }
+    }
+
+    @Benchmark
+    public PFunction withName() {
+        return context.withName("helloWorld");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public PFunction withNameContended() {
+        return context.withName("helloWorld");
+    }
+
+    @Benchmark
+    public Map<String, PFunction> getFunctionMap() {
+        return context.getFunctionMap();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Map<String, PFunction> getFunctionMapContended() {
+        return context.getFunctionMap();
+    }
+
+    @Benchmark
+    public Object invokeHelloWorld() {
+        return helloWorld.invoke("James");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object invokeHelloWorldContended() {
+        return helloWorld.invoke("James");
+    }
+
+    @Benchmark
+    public Object invokeHelloWorldByName() {
+        return context.withName("helloWorld").invoke("James");
+    }
+
+    @Benchmark
+    public Object invokeHelloWorldRef() {
+        return helloWorldRef.invoke("James");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object invokeHelloWorldRefContended() {
+        return helloWorldRef.invoke("James");
+    }
+
+    @Benchmark
+    public Object listFunctions() {
+        return listFunctions.invoke();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object listFunctionsContended() {
+        return listFunctions.invoke();
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.benchmarks;
+
+import io.pfunc.loader.PFuncContext;
+import io.pfunc.loader.PFuncInfo;
+import io.pfunc.loader.PFuncJar;
+import io.pfunc.loader.PFuncParameterInfo;
+import io.pfunc.loader.PFunction;
+import io.pfunc.loader.PropertiesKeys;
+import io.pfunc.sample.Bootstrap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures invoking a function which is not overloaded against invoking overloads from a call site which always
+ * passes the same argument class and from one which alternates between the argument classes of three overloads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverloadBenchmark {
+    private PFunction single;
+    private PFunction overloaded;
+    private final Object[] arguments = {"text", 42L, new File("file")};
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(PropertiesKeys.DIRECT_INVOKE, "true");
+        PFuncJar jar = new PFuncJar(Bootstrap.class.getClassLoader(), Bootstrap.class,
+                Bootstrap.class.getMethod("invoke", String.class, Object[].class), properties);
+        OverloadContext context = new OverloadContext();
+        context.add("single", Overloads.class.getMethod("describe", String.class), jar);
+        for (Class<?> type : new Class<?>[]{String.class, long.class, File.class}) {
+            context.add("describe", Overloads.class.getMethod("describe", type), jar);
+        }
+        single = context.withName("single");
+        overloaded = context.withName("describe");
+    }
+
+    @Benchmark
+    public Object invokeSingle() {
+        return single.invoke1("text");
+    }
+
+    @Benchmark
+    public Object invokeOverloadMonomorphic() {
+        return overloaded.invoke1("text");
+    }
+
+    @Benchmark
+    public Object invokeOverloadPolymorphic() {
+        Object argument = arguments[index++ % arguments.length];
+        return overloaded.invoke1(argument);
+    }
+
+    public static class Overloads {
+        public static String describe(String text) {
+            return text;
+        }
+
+        public static String describe(long value) {
+            return "long";
+        }
+
+        public static String describe(File file) {
+            return "file";
+        }
+    }
+
+    private static class OverloadContext extends PFuncContext {
+        void add(String name, Method method, PFuncJar jar) {
+            PFuncInfo info = new PFuncInfo();
+            info.setName(name);
+            info.setReturnType(method.getReturnType());
+            info.setMethod(method);
+            PFuncParameterInfo parameterInfo = new PFuncParameterInfo();
+            parameterInfo.setType(method.getParameterTypes()[0]);
+            info.setParameterInfos(new PFuncParameterInfo[]{parameterInfo});
+            addFunction(info, jar);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.benchmarks;
+
+import io.pfunc.loader.PFuncContext;
+import io.pfunc.loader.PFuncJar;
+import io.pfunc.loader.PFuncJarFunction;
+import io.pfunc.loader.PFuncPipeline;
+import io.pfunc.loader.PFunction;
+import io.pfunc.loader.PropertiesKeys;
+import io.pfunc.sample.Bootstrap;
+import io.pfunc.sample.MyFunc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares chaining three functions by looking each one up and invoking it with the result of the previous one
+ * against a composed pipeline, and a pipeline whose stages are fused into one method handle.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+    private PFuncContext context;
+    private PFunction composed;
+    private PFunction fused;
+    private long value = 41;
+
+    @Setup
+    public void setup() throws Exception {
+        context = new PFuncContext(MyFunc.class.getClassLoader());
+        composed = context.compose("increment", "increment", "increment");
+
+        Properties properties = new Properties();
+        properties.setProperty(PropertiesKeys.DIRECT_INVOKE, "true");
+        properties.setProperty(PropertiesKeys.METRICS_ENABLED, "false");
+        PFuncJar jar = new PFuncJar(MyFunc.class.getClassLoader(), Bootstrap.class,
+                Bootstrap.class.getMethod("invoke", String.class, Object[].class), properties);
+        PFunction increment = new PFuncJarFunction(context, context.withName("increment").getMetadata(), jar);
+        fused = new PFuncPipeline(increment, increment, increment);
+    }
+
+    @Benchmark
+    public Object lookupEachStage() {
+        Object result = context.withName("increment").invoke(value);
+        result = context.withName("increment").invoke(result);
+        return context.withName("increment").invoke(result);
+    }
+
+    @Benchmark
+    public Object composed() {
+        return composed.invoke1(value);
+    }
+
+    @Benchmark
+    public Object fused() {
+        return fused.invoke1(value);
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.benchmarks;
+
+import io.pfunc.loader.PFuncContext;
+import io.pfunc.loader.PFunction;
+import io.pfunc.sample.MyFunc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the boxed varargs {@link PFunction#invoke(Object...)} against the fixed arity and primitive
+ * specialised entry points. Run with <code>-prof gc</code> to compare allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitiveInvokeBenchmark {
+    private PFunction increment;
+    private long value = 41;
+
+    @Setup
+    public void setup() throws IOException {
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        increment = context.withName("increment");
+    }
+
+    @Benchmark
+    public Object invokeVarargs() {
+        return increment.invoke(value);
+    }
+
+    @Benchmark
+    public Object invoke1() {
+        return increment.invoke1(value);
+    }
+
+    @Benchmark
+    public long invokeLong() {
+        return increment.invokeLong(value);
+    }
+
+    @Benchmark
+    public long direct() {
+        return MyFunc.increment(value);
+    }
+}
@@ -20,7 +20,7 @@ package io.pfunc.bootstrap;
  */
 public class BootstrapHelpers {
     public static <T> T argument(Object[] arguments, int index, Class<T> clazz) {
-        if (arguments == null || arguments.length < index) {
+        if (arguments == null || arguments.length <= index) {
             return null;
         }
         Object value = arguments[index];
@@ -22,12 +22,15 @@ import java.lang.reflect.Parameter;
 /**
  */
 public class PFuncInfo {
+    private final Method method;
     private final String name;
     private final String description;
     private final Class<?> returnType;
     private final PFuncParameterInfo[] parameterInfos;
+    private final boolean pure;
 
     public PFuncInfo(Method method) {
+        this.method = method;
         this.name = method.getName();
         this.returnType = method.getReturnType();
         Parameter[] parameters = method.getParameters();
@@ -38,6 +41,15 @@ public class PFuncInfo {
         }
         // TODO find description via annotation?
         this.description = "";
+        this.pure = method.isAnnotationPresent(Pure.class);
+    }
+
+    /**
+     * Returns the target method so that the function can be invoked directly rather than via the
+     * bootstrap class if the library enables <code>directInvoke</code> in its <code>pfunc.properties</code>
+     */
+    public Method getMethod() {
+        return method;
     }
 
     public String getName() {
@@ -55,4 +67,11 @@ public class PFuncInfo {
     public PFuncParameterInfo[] getParameterInfos() {
         return parameterInfos;
     }
+
+    /**
+     * Returns true if the method is annotated with {@link Pure} so its results can be cached
+     */
+    public boolean isPure() {
+        return pure;
+    }
 }
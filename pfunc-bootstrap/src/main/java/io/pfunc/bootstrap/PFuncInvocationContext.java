@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.bootstrap;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lets long running functions find out if their invocation has been cancelled, such as when its deadline has
+ * passed, so they can stop waiting. The loader sets the cancellation of the current invocation via
+ * {@link #setCancellation(BooleanSupplier)} which uses only JDK types so that it works across class loaders.
+ */
+public class PFuncInvocationContext {
+    private static final ThreadLocal<BooleanSupplier> CANCELLATION = new ThreadLocal<>();
+
+    /**
+     * Returns true if the current invocation has been cancelled or the thread interrupted
+     */
+    public static boolean isCancelled() {
+        BooleanSupplier cancellation = CANCELLATION.get();
+        return (cancellation != null && cancellation.getAsBoolean()) || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the current invocation has been cancelled
+     */
+    public static void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Invocation cancelled");
+        }
+    }
+
+    /**
+     * Sets the cancellation of the invocation on the current thread returning the previous value so it can be
+     * restored afterwards
+     */
+    public static BooleanSupplier setCancellation(BooleanSupplier cancellation) {
+        BooleanSupplier answer = CANCELLATION.get();
+        if (cancellation == null) {
+            CANCELLATION.remove();
+        } else {
+            CANCELLATION.set(cancellation);
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,503 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.bootstrap.processor;
+
+import io.pfunc.bootstrap.PFunc;
+import io.pfunc.bootstrap.Pure;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Generates the bootstrap class, the <code>META-INF/services/io.pfunc/pfunc.properties</code> and the binary
+ * function index of a library from its {@link PFunc} methods so that library authors do not have to write them by
+ * hand and the loader can read the function metadata without reflection.
+ * <p>
+ * The bootstrap class defaults to the <code>Bootstrap</code> class in the package of the first function and can be
+ * changed via the <code>pfunc.bootstrapClass</code> processor option. Any <code>pfunc.properties</code> of the
+ * library's own resources is merged into the generated one.
+ */
+@SupportedAnnotationTypes(PFuncProcessor.PFUNC_ANNOTATION)
+@SupportedOptions(PFuncProcessor.BOOTSTRAP_CLASS_OPTION)
+public class PFuncProcessor extends AbstractProcessor {
+    public static final String BOOTSTRAP_CLASS_OPTION = "pfunc.bootstrapClass";
+    public static final String PROPERTIES_FILE_PATH = "META-INF/services/io.pfunc/pfunc.properties";
+    public static final String INDEX_FILE_NAME = "pfunc.index";
+    public static final String INDEX_FILE_PATH = "META-INF/services/io.pfunc/" + INDEX_FILE_NAME;
+
+    // the format of the index which must be kept in sync with io.pfunc.loader.PFuncIndex
+    public static final int INDEX_MAGIC = 0x50464E58;
+    public static final int INDEX_VERSION = 1;
+    public static final int INDEX_FLAG_PURE = 1;
+
+    static final String PFUNC_ANNOTATION = "io.pfunc.bootstrap.PFunc";
+    private static final String DEFAULT_BOOTSTRAP_CLASS_NAME = "Bootstrap";
+
+    private boolean generated;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (generated || annotations.isEmpty() || roundEnv.processingOver()) {
+            return false;
+        }
+        List<Function> functions = new ArrayList<>();
+        Map<String, Function> signatures = new HashMap<>();
+        boolean valid = true;
+        for (Element element : roundEnv.getElementsAnnotatedWith(PFunc.class)) {
+            if (element.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            ExecutableElement method = (ExecutableElement) element;
+            if (!isAccessible(method)) {
+                error(method, "@PFunc method " + method.getSimpleName() + " must be a public static method of a public class");
+                valid = false;
+                continue;
+            }
+            Function function = new Function(method);
+            // functions can be overloaded with different parameter types
+            Function previous = signatures.put(function.name + parameterTypesText(method), function);
+            if (previous != null) {
+                error(method, "Function " + function.name + " is already defined by " + previous.owner.getQualifiedName()
+                        + "." + previous.method.getSimpleName());
+                valid = false;
+                continue;
+            }
+            functions.add(function);
+        }
+        if (!valid || functions.isEmpty()) {
+            return false;
+        }
+        // lets generate the files in a stable order whatever order the compiler finds the methods in
+        Collections.sort(functions, (a, b) -> a.name.compareTo(b.name));
+        generated = true;
+        String bootstrapClass = getBootstrapClass(functions);
+        try {
+            writeBootstrapClass(bootstrapClass, functions);
+            writeIndex(functions);
+            writeProperties(bootstrapClass, functions);
+        } catch (IOException e) {
+            error(functions.get(0).method, "Failed to generate the bootstrap of the library due to " + e);
+        }
+        return false;
+    }
+
+    private boolean isAccessible(ExecutableElement method) {
+        Set<Modifier> modifiers = method.getModifiers();
+        if (!modifiers.contains(Modifier.PUBLIC) || !modifiers.contains(Modifier.STATIC)) {
+            return false;
+        }
+        for (Element e = method.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+            TypeElement type = (TypeElement) e;
+            if (!type.getModifiers().contains(Modifier.PUBLIC)) {
+                return false;
+            }
+            if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)
+                    && type.getKind() == ElementKind.CLASS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getBootstrapClass(List<Function> functions) {
+        String option = processingEnv.getOptions().get(BOOTSTRAP_CLASS_OPTION);
+        if (option != null && option.trim().length() > 0) {
+            return option.trim();
+        }
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(functions.get(0).owner);
+        if (packageElement.isUnnamed()) {
+            return DEFAULT_BOOTSTRAP_CLASS_NAME;
+        }
+        return packageElement.getQualifiedName() + "." + DEFAULT_BOOTSTRAP_CLASS_NAME;
+    }
+
+    private void writeBootstrapClass(String className, List<Function> functions) throws IOException {
+        int idx = className.lastIndexOf('.');
+        String packageName = idx > 0 ? className.substring(0, idx) : null;
+        String simpleName = className.substring(idx + 1);
+        boolean checked = false;
+        for (Function function : functions) {
+            checked |= !function.method.getThrownTypes().isEmpty();
+        }
+        String throwsClause = checked ? " throws Exception" : "";
+
+        Element[] originatingElements = new Element[functions.size()];
+        for (int i = 0; i < originatingElements.length; i++) {
+            originatingElements[i] = functions.get(i).method;
+        }
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(className, originatingElements).openWriter())) {
+            if (packageName != null) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("import io.pfunc.bootstrap.PFuncInfo;");
+            out.println();
+            out.println("import static io.pfunc.bootstrap.BootstrapHelpers.argument;");
+            out.println();
+            out.println("/**");
+            out.println(" * Generated by " + PFuncProcessor.class.getName() + " from the @PFunc methods of the library");
+            out.println(" */");
+            out.println("public final class " + simpleName + " {");
+            out.println("    private " + simpleName + "() {");
+            out.println("    }");
+            out.println();
+            out.println("    @SuppressWarnings(\"unchecked\")");
+            out.println("    public static Object invoke(String functionName, Object[] arguments)" + throwsClause + " {");
+            out.println("        switch (functionName) {");
+            for (int i = 0; i < functions.size(); i++) {
+                Function function = functions.get(i);
+                boolean overloaded = (i > 0 && functions.get(i - 1).name.equals(function.name))
+                        || (i < functions.size() - 1 && functions.get(i + 1).name.equals(function.name));
+                if (i == 0 || !functions.get(i - 1).name.equals(function.name)) {
+                    out.println("            case \"" + escape(function.name) + "\":");
+                }
+                String indent = "                ";
+                if (overloaded) {
+                    // the loader selects overloads itself but the bootstrap class must be usable on its own
+                    out.println(indent + "if (" + acceptsText(function) + ") {");
+                    indent += "    ";
+                }
+                String call = function.owner.getQualifiedName() + "." + function.method.getSimpleName() + "(" + argumentsText(function) + ")";
+                if (function.method.getReturnType().getKind() == TypeKind.VOID) {
+                    out.println(indent + call + ";");
+                    out.println(indent + "return null;");
+                } else {
+                    out.println(indent + "return " + call + ";");
+                }
+                if (overloaded) {
+                    out.println("                }");
+                    if (i == functions.size() - 1 || !functions.get(i + 1).name.equals(function.name)) {
+                        out.println("                break;");
+                    }
+                }
+            }
+            out.println("        }");
+            out.println("        throw new IllegalArgumentException(\"Function does not exist: \" + functionName);");
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * Invokes the function once for each of the argument arrays. The failure of an item is returned as its");
+            out.println("     * result so the loader treats any result which is a Throwable as a failed item");
+            out.println("     */");
+            out.println("    public static Object[] invokeBatch(String functionName, Object[][] arguments) {");
+            out.println("        Object[] answer = new Object[arguments.length];");
+            out.println("        for (int i = 0; i < arguments.length; i++) {");
+            out.println("            try {");
+            out.println("                answer[i] = invoke(functionName, arguments[i]);");
+            out.println("            } catch (Exception e) {");
+            out.println("                answer[i] = e;");
+            out.println("            }");
+            out.println("        }");
+            out.println("        return answer;");
+            out.println("    }");
+            out.println();
+            out.println("    public static PFuncInfo[] functionMetadata() throws NoSuchMethodException {");
+            out.println("        return new PFuncInfo[]{");
+            for (int i = 0; i < functions.size(); i++) {
+                Function function = functions.get(i);
+                StringBuilder builder = new StringBuilder();
+                builder.append("                new PFuncInfo(").append(function.owner.getQualifiedName()).append(".class.getMethod(\"")
+                        .append(function.method.getSimpleName()).append("\"");
+                for (VariableElement parameter : function.method.getParameters()) {
+                    builder.append(", ").append(erasure(parameter.asType())).append(".class");
+                }
+                builder.append("))");
+                if (i < functions.size() - 1) {
+                    builder.append(",");
+                }
+                out.println(builder);
+            }
+            out.println("        };");
+            out.println("    }");
+            out.println("}");
+        }
+    }
+
+    private String argumentsText(Function function) {
+        StringBuilder builder = new StringBuilder();
+        List<? extends VariableElement> parameters = function.method.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            TypeMirror type = parameters.get(i).asType();
+            String typeName = type.getKind().isPrimitive() ? boxedName(type) : erasure(type);
+            builder.append("argument(arguments, ").append(i).append(", ").append(typeName).append(".class)");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the condition under which the arguments can be passed to the overloaded function
+     */
+    private String acceptsText(Function function) {
+        List<? extends VariableElement> parameters = function.method.getParameters();
+        StringBuilder builder = new StringBuilder("arguments.length == " + parameters.size());
+        for (int i = 0; i < parameters.size(); i++) {
+            TypeMirror type = parameters.get(i).asType();
+            String argument = "arguments[" + i + "]";
+            if (type.getKind().isPrimitive()) {
+                builder.append(" && ").append(argument).append(" instanceof ").append(boxedName(type));
+            } else {
+                builder.append(" && (").append(argument).append(" == null || ").append(argument).append(" instanceof ")
+                        .append(erasure(type)).append(")");
+            }
+        }
+        return builder.toString();
+    }
+
+    private String parameterTypesText(ExecutableElement method) {
+        List<String> names = new ArrayList<>();
+        for (VariableElement parameter : method.getParameters()) {
+            names.add(erasure(parameter.asType()));
+        }
+        return names.toString();
+    }
+
+    private String boxedName(TypeMirror type) {
+        return processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    /**
+     * Writes the index of the functions which the loader reads instead of invoking the <code>functionMetadata()</code>
+     * method of the bootstrap class and introspecting its results
+     */
+    private void writeIndex(List<Function> functions) throws IOException {
+        FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX_FILE_PATH);
+        try (DataOutputStream out = new DataOutputStream(file.openOutputStream())) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeShort(INDEX_VERSION);
+            out.writeInt(functions.size());
+            for (Function function : functions) {
+                out.writeUTF(function.name);
+                out.writeUTF(function.description);
+                out.writeUTF(processingEnv.getElementUtils().getBinaryName(function.owner).toString());
+                out.writeUTF(function.method.getSimpleName().toString());
+                out.writeUTF(methodDescriptor(function.method));
+                out.writeByte(function.method.getAnnotation(Pure.class) != null ? INDEX_FLAG_PURE : 0);
+                List<? extends VariableElement> parameters = function.method.getParameters();
+                out.writeShort(parameters.size());
+                for (VariableElement parameter : parameters) {
+                    String name = parameter.getSimpleName().toString();
+                    out.writeUTF(name);
+                    String description = function.parameterDescriptions.get(name);
+                    out.writeUTF(description != null ? description : "");
+                }
+            }
+        }
+    }
+
+    private void writeProperties(String bootstrapClass, List<Function> functions) throws IOException {
+        Filer filer = processingEnv.getFiler();
+        Properties properties = new Properties();
+        try {
+            // the library's own properties are copied to the output before compiling
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", PROPERTIES_FILE_PATH);
+            try (InputStream in = existing.openInputStream()) {
+                properties.load(in);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // the library has no properties of its own
+        }
+        properties.setProperty("bootstrapClass", bootstrapClass);
+        properties.setProperty("functionIndex", INDEX_FILE_NAME);
+        // the generated bootstrap class only calls the target methods so they can be invoked directly
+        if (!properties.containsKey("directInvoke")) {
+            properties.setProperty("directInvoke", "true");
+        }
+        StringWriter buffer = new StringWriter();
+        properties.store(buffer, null);
+        List<String> lines = new ArrayList<>();
+        for (String line : buffer.toString().split("\\r?\\n")) {
+            if (line.length() > 0 && !line.startsWith("#")) {
+                lines.add(line);
+            }
+        }
+        Collections.sort(lines);
+
+        Element[] originatingElements = new Element[functions.size()];
+        for (int i = 0; i < originatingElements.length; i++) {
+            originatingElements[i] = functions.get(i).method;
+        }
+        FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", PROPERTIES_FILE_PATH, originatingElements);
+        try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.ISO_8859_1)) {
+            writer.write("# Generated by " + PFuncProcessor.class.getName() + "\n");
+            for (String line : lines) {
+                writer.write(line);
+                writer.write("\n");
+            }
+        }
+    }
+
+    private String methodDescriptor(ExecutableElement method) {
+        StringBuilder builder = new StringBuilder("(");
+        for (VariableElement parameter : method.getParameters()) {
+            appendDescriptor(builder, parameter.asType());
+        }
+        builder.append(")");
+        appendDescriptor(builder, method.getReturnType());
+        return builder.toString();
+    }
+
+    private void appendDescriptor(StringBuilder builder, TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                builder.append('Z');
+                break;
+            case BYTE:
+                builder.append('B');
+                break;
+            case CHAR:
+                builder.append('C');
+                break;
+            case SHORT:
+                builder.append('S');
+                break;
+            case INT:
+                builder.append('I');
+                break;
+            case LONG:
+                builder.append('J');
+                break;
+            case FLOAT:
+                builder.append('F');
+                break;
+            case DOUBLE:
+                builder.append('D');
+                break;
+            case VOID:
+                builder.append('V');
+                break;
+            case ARRAY:
+                builder.append('[');
+                appendDescriptor(builder, ((ArrayType) type).getComponentType());
+                break;
+            case DECLARED:
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                builder.append('L').append(processingEnv.getElementUtils().getBinaryName(element).toString().replace('.', '/')).append(';');
+                break;
+            default:
+                appendDescriptor(builder, processingEnv.getTypeUtils().erasure(type));
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * A function found by the processor along with the descriptions from its annotation and javadoc
+     */
+    private class Function {
+        private final ExecutableElement method;
+        private final TypeElement owner;
+        private final String name;
+        private final String description;
+        private final Map<String, String> parameterDescriptions = new LinkedHashMap<>();
+
+        Function(ExecutableElement method) {
+            this.method = method;
+            this.owner = (TypeElement) method.getEnclosingElement();
+            PFunc annotation = method.getAnnotation(PFunc.class);
+            this.name = annotation.name().length() > 0 ? annotation.name() : method.getSimpleName().toString();
+            String javadoc = processingEnv.getElementUtils().getDocComment(method);
+            StringBuilder text = new StringBuilder();
+            String tag = null;
+            StringBuilder tagText = new StringBuilder();
+            if (javadoc != null) {
+                for (String line : Arrays.asList(javadoc.split("\\r?\\n"))) {
+                    line = line.trim();
+                    if (line.startsWith("@")) {
+                        addParameterDescription(tag, tagText);
+                        tag = line;
+                        tagText.setLength(0);
+                    } else if (tag != null) {
+                        tagText.append(' ').append(line);
+                    } else {
+                        text.append(' ').append(line);
+                    }
+                }
+                addParameterDescription(tag, tagText);
+            }
+            this.description = annotation.description().length() > 0 ? annotation.description() : collapse(text);
+        }
+
+        private void addParameterDescription(String tag, StringBuilder tagText) {
+            if (tag == null || !tag.startsWith("@param")) {
+                return;
+            }
+            String[] words = (tag + tagText).split("\\s+", 3);
+            if (words.length > 1) {
+                parameterDescriptions.put(words[1], words.length > 2 ? words[2].trim() : "");
+            }
+        }
+
+        private String collapse(CharSequence text) {
+            return text.toString().replaceAll("\\s+", " ").trim();
+        }
+    }
+}
@@ -18,6 +18,8 @@ package io.pfunc.bootstrap;
 
 import org.junit.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 /**
  */
 public class BootstrapTest {
@@ -26,4 +28,15 @@ public class BootstrapTest {
 
     }
 
+    @Test
+    public void pureFunctions() throws Exception {
+        assertThat(new PFuncInfo(BootstrapTest.class.getMethod("square", int.class)).isPure()).isTrue();
+        assertThat(new PFuncInfo(BootstrapTest.class.getMethod("pureFunctions")).isPure()).isFalse();
+    }
+
+    @Pure
+    public static int square(int value) {
+        return value * value;
+    }
+
 }
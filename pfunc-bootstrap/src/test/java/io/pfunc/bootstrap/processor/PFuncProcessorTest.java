@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.bootstrap.processor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class PFuncProcessorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void generatesBootstrapPropertiesAndIndex() throws Exception {
+        File output = folder.newFolder("classes");
+        File properties = new File(output, PFuncProcessor.PROPERTIES_FILE_PATH);
+        properties.getParentFile().mkdirs();
+        Files.write(properties.toPath(), "cacheFunctions=square\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        List<Diagnostic<? extends JavaFileObject>> errors = compile(output, "sample/Maths.java",
+                "package sample;\n" +
+                        "public class Maths {\n" +
+                        "    /**\n" +
+                        "     * Squares a number\n" +
+                        "     *\n" +
+                        "     * @param value the number to square\n" +
+                        "     */\n" +
+                        "    @io.pfunc.bootstrap.PFunc @io.pfunc.bootstrap.Pure\n" +
+                        "    public static int square(int value) {\n" +
+                        "        return value * value;\n" +
+                        "    }\n" +
+                        "    @io.pfunc.bootstrap.PFunc(name = \"join\", description = \"Joins words\")\n" +
+                        "    public static String concat(java.util.List<String> words) throws java.io.IOException {\n" +
+                        "        return String.join(\" \", words);\n" +
+                        "    }\n" +
+                        "}\n");
+        assertThat(errors).isEmpty();
+
+        Properties generated = new Properties();
+        try (Reader reader = new FileReader(properties)) {
+            generated.load(reader);
+        }
+        assertThat(generated.getProperty("bootstrapClass")).isEqualTo("sample.Bootstrap");
+        assertThat(generated.getProperty("functionIndex")).isEqualTo(PFuncProcessor.INDEX_FILE_NAME);
+        assertThat(generated.getProperty("directInvoke")).isEqualTo("true");
+        assertThat(generated.getProperty("cacheFunctions")).isEqualTo("square");
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{output.toURI().toURL()}, getClass().getClassLoader())) {
+            Class<?> bootstrap = classLoader.loadClass("sample.Bootstrap");
+            Method invoke = bootstrap.getMethod("invoke", String.class, Object[].class);
+            assertThat(invoke.invoke(null, "square", new Object[]{7})).isEqualTo(49);
+            assertThat(invoke.invoke(null, "join", new Object[]{Arrays.asList("a", "b")})).isEqualTo("a b");
+            assertThat((Object[]) bootstrap.getMethod("functionMetadata").invoke(null)).hasSize(2);
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(new File(output, PFuncProcessor.INDEX_FILE_PATH)))) {
+            assertThat(in.readInt()).isEqualTo(PFuncProcessor.INDEX_MAGIC);
+            assertThat(in.readUnsignedShort()).isEqualTo(PFuncProcessor.INDEX_VERSION);
+            assertThat(in.readInt()).isEqualTo(2);
+
+            // the functions are sorted by name
+            assertThat(in.readUTF()).isEqualTo("join");
+            assertThat(in.readUTF()).isEqualTo("Joins words");
+            assertThat(in.readUTF()).isEqualTo("sample.Maths");
+            assertThat(in.readUTF()).isEqualTo("concat");
+            assertThat(in.readUTF()).isEqualTo("(Ljava/util/List;)Ljava/lang/String;");
+            assertThat(in.readByte()).isEqualTo((byte) 0);
+            assertThat(in.readUnsignedShort()).isEqualTo(1);
+            assertThat(in.readUTF()).isEqualTo("words");
+            assertThat(in.readUTF()).isEmpty();
+
+            assertThat(in.readUTF()).isEqualTo("square");
+            assertThat(in.readUTF()).isEqualTo("Squares a number");
+            assertThat(in.readUTF()).isEqualTo("sample.Maths");
+            assertThat(in.readUTF()).isEqualTo("square");
+            assertThat(in.readUTF()).isEqualTo("(I)I");
+            assertThat(in.readByte()).isEqualTo((byte) PFuncProcessor.INDEX_FLAG_PURE);
+            assertThat(in.readUnsignedShort()).isEqualTo(1);
+            assertThat(in.readUTF()).isEqualTo("value");
+            assertThat(in.readUTF()).isEqualTo("the number to square");
+        }
+    }
+
+    @Test
+    public void generatesDispatchOfOverloads() throws Exception {
+        File output = folder.newFolder("classes");
+        List<Diagnostic<? extends JavaFileObject>> errors = compile(output, "sample/Texts.java",
+                "package sample;\n" +
+                        "public class Texts {\n" +
+                        "    @io.pfunc.bootstrap.PFunc\n" +
+                        "    public static String describe(String text) { return \"text \" + text; }\n" +
+                        "    @io.pfunc.bootstrap.PFunc\n" +
+                        "    public static String describe(java.io.File file) { return \"file \" + file.getName(); }\n" +
+                        "    @io.pfunc.bootstrap.PFunc\n" +
+                        "    public static String describe(long value) { return \"long \" + value; }\n" +
+                        "}\n");
+        assertThat(errors).isEmpty();
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{output.toURI().toURL()}, getClass().getClassLoader())) {
+            Method invoke = classLoader.loadClass("sample.Bootstrap").getMethod("invoke", String.class, Object[].class);
+            assertThat(invoke.invoke(null, "describe", new Object[]{"a"})).isEqualTo("text a");
+            assertThat(invoke.invoke(null, "describe", new Object[]{new File("b")})).isEqualTo("file b");
+            assertThat(invoke.invoke(null, "describe", new Object[]{3L})).isEqualTo("long 3");
+        }
+    }
+
+    @Test
+    public void rejectsInstanceMethodsAndDuplicateNames() throws Exception {
+        List<Diagnostic<? extends JavaFileObject>> errors = compile(folder.newFolder("classes"), "sample/Broken.java",
+                "package sample;\n" +
+                        "public class Broken {\n" +
+                        "    @io.pfunc.bootstrap.PFunc\n" +
+                        "    public String instance() { return null; }\n" +
+                        "    @io.pfunc.bootstrap.PFunc\n" +
+                        "    public static String a() { return null; }\n" +
+                        "    @io.pfunc.bootstrap.PFunc(name = \"a\")\n" +
+                        "    public static String b() { return null; }\n" +
+                        "}\n");
+        List<String> messages = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> error : errors) {
+            messages.add(error.getMessage(null));
+        }
+        assertThat(messages).hasSize(2);
+        assertThat(messages.get(0)).contains("instance must be a public static method");
+        assertThat(messages.get(1)).contains("Function a is already defined by sample.Broken.a");
+    }
+
+    private List<Diagnostic<? extends JavaFileObject>> compile(File output, String path, String source) throws Exception {
+        File sourceFile = new File(folder.newFolder(), path);
+        sourceFile.getParentFile().mkdirs();
+        Files.write(sourceFile.toPath(), source.getBytes(StandardCharsets.UTF_8));
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            List<String> options = Arrays.asList("-d", output.getPath(), "-classpath", System.getProperty("java.class.path"));
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjects(sourceFile));
+            task.setProcessors(Collections.singletonList(new PFuncProcessor()));
+            task.call();
+        }
+        List<Diagnostic<? extends JavaFileObject>> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic);
+            }
+        }
+        return errors;
+    }
+}
@@ -16,7 +16,9 @@
  */
 package io.pfunc.helpers;
 
+import io.pfunc.bootstrap.PFunc;
 import io.pfunc.loader.PFuncInfo;
+import io.pfunc.loader.PFuncRegistrySnapshot;
 
 import java.util.Set;
 import java.util.TreeSet;
@@ -24,8 +26,23 @@ import java.util.TreeSet;
 /**
  */
 public class Functions {
+    private static volatile Listing listing;
 
+    /**
+     * Returns the prototypes of the functions of the resolver, reusing the text until the functions change
+     */
+    @PFunc
     public static String listFunctions() throws NoSuchMethodException {
+        PFuncRegistrySnapshot snapshot = io.pfunc.resolver.Bootstrap.getContext().getSnapshot();
+        Listing answer = listing;
+        if (answer == null || answer.snapshot != snapshot) {
+            answer = new Listing(snapshot, createListing());
+            listing = answer;
+        }
+        return answer.text;
+    }
+
+    private static String createListing() throws NoSuchMethodException {
         Set<String> names = new TreeSet<>();
         PFuncInfo[] pFuncInfos = io.pfunc.resolver.Bootstrap.functionMetadata();
         if (pFuncInfos != null) {
@@ -35,4 +52,14 @@ public class Functions {
         }
         return String.join("\n", names);
     }
+
+    private static class Listing {
+        private final PFuncRegistrySnapshot snapshot;
+        private final String text;
+
+        Listing(PFuncRegistrySnapshot snapshot, String text) {
+            this.snapshot = snapshot;
+            this.text = text;
+        }
+    }
 }
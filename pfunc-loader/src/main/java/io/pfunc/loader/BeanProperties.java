@@ -24,4 +24,6 @@ public class BeanProperties {
     public static final String RETURN_TYPE = "returnType";
     public static final String PARAMETER_INFOS = "parameterInfos";
     public static final String TYPE = "type";
+    public static final String METHOD = "method";
+    public static final String PURE = "pure";
 }
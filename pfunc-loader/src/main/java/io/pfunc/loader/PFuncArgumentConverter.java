@@ -0,0 +1,363 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.io.File;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts the arguments of a function to its parameter types, such as the text arguments passed on the command
+ * line. The conversion of each parameter is planned once when the function is registered so that invoking only
+ * does an instance check for arguments which already have the right type. Supports converting text to primitives,
+ * enums, files, paths, URLs, URIs, arrays and collections split on commas, and widening numbers.
+ */
+public class PFuncArgumentConverter {
+    private static final Map<Class<?>, Integer> NUMERIC_RANKS = new HashMap<>();
+
+    static {
+        NUMERIC_RANKS.put(byte.class, 1);
+        NUMERIC_RANKS.put(short.class, 2);
+        NUMERIC_RANKS.put(int.class, 3);
+        NUMERIC_RANKS.put(long.class, 4);
+        NUMERIC_RANKS.put(float.class, 5);
+        NUMERIC_RANKS.put(double.class, 6);
+    }
+
+    private final Parameter[] parameters;
+
+    private PFuncArgumentConverter(Parameter[] parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * Creates the converter for the given function or returns null if none of its parameters need converting
+     */
+    public static PFuncArgumentConverter create(PFuncInfo metadata) {
+        PFuncParameterInfo[] parameterInfos = metadata.getParameterInfos();
+        if (parameterInfos == null || parameterInfos.length == 0) {
+            return null;
+        }
+        Method method = metadata.getMethod();
+        Type[] genericTypes = method != null && method.getParameterCount() == parameterInfos.length
+                ? method.getGenericParameterTypes() : null;
+        Parameter[] parameters = new Parameter[parameterInfos.length];
+        boolean converting = false;
+        for (int i = 0; i < parameterInfos.length; i++) {
+            PFuncParameterInfo parameterInfo = parameterInfos[i];
+            Class<?> type = parameterInfo.getType();
+            if (type == null || type == Object.class) {
+                continue;
+            }
+            Type genericType = genericTypes != null ? genericTypes[i] : type;
+            String description = "Argument " + i + " (" + parameterInfo.getPrototype() + ") of " + metadata.getName();
+            parameters[i] = new Parameter(wrap(type), description, createConversion(type, genericType));
+            converting = true;
+        }
+        return converting ? new PFuncArgumentConverter(parameters) : null;
+    }
+
+    /**
+     * Returns the arguments converted to the parameter types. The given array is never modified; a copy is
+     * returned if any argument is converted
+     *
+     * @throws PFuncArgumentException if an argument cannot be converted
+     */
+    public Object[] convert(Object[] arguments) {
+        Object[] answer = arguments;
+        int length = Math.min(arguments.length, parameters.length);
+        for (int i = 0; i < length; i++) {
+            Parameter parameter = parameters[i];
+            Object value = arguments[i];
+            if (parameter != null && value != null && !parameter.type.isInstance(value)) {
+                if (answer == arguments) {
+                    answer = new Object[arguments.length];
+                    System.arraycopy(arguments, 0, answer, 0, arguments.length);
+                }
+                answer[i] = parameter.convert(value);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the argument at the given index converted to its parameter type
+     *
+     * @throws PFuncArgumentException if the argument cannot be converted
+     */
+    public Object convert(int index, Object value) {
+        if (index >= parameters.length || value == null) {
+            return value;
+        }
+        Parameter parameter = parameters[index];
+        if (parameter == null || parameter.type.isInstance(value)) {
+            return value;
+        }
+        return parameter.convert(value);
+    }
+
+    /**
+     * Returns true if a primitive or boxed value of the given type can be widened to the other type without loss
+     */
+    public static boolean isWideningConversion(Class<?> type, Class<?> toType) {
+        Class<?> from = unwrap(type);
+        Class<?> to = unwrap(toType);
+        if (from == to) {
+            return from.isPrimitive();
+        }
+        Integer rank = NUMERIC_RANKS.get(from == char.class ? int.class : from);
+        Integer toRank = NUMERIC_RANKS.get(to);
+        return rank != null && toRank != null && rank <= toRank;
+    }
+
+    static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    static Class<?> unwrap(Class<?> type) {
+        return MethodType.methodType(type).unwrap().returnType();
+    }
+
+    private static Conversion createConversion(Class<?> type, Type genericType) {
+        Class<?> primitiveType = unwrap(type);
+        if (primitiveType.isPrimitive()) {
+            return createPrimitiveConversion(primitiveType);
+        }
+        if (type == String.class || type == CharSequence.class) {
+            return String::valueOf;
+        }
+        if (type.isEnum()) {
+            return createEnumConversion(type);
+        }
+        if (type == File.class) {
+            return value -> new File(textOf(value));
+        }
+        if (type == Path.class) {
+            return value -> Paths.get(textOf(value));
+        }
+        if (type == URL.class) {
+            return value -> value instanceof File ? ((File) value).toURI().toURL() : new URL(textOf(value));
+        }
+        if (type == URI.class) {
+            return value -> value instanceof File ? ((File) value).toURI() : new URI(textOf(value));
+        }
+        if (type.isArray()) {
+            Class<?> componentType = type.getComponentType();
+            return createArrayConversion(componentType, createElementConversion(componentType));
+        }
+        if (type == List.class || type == Collection.class || type == Iterable.class || type == ArrayList.class) {
+            return createCollectionConversion(false, createElementConversion(elementType(genericType)));
+        }
+        if (type == Set.class || type == LinkedHashSet.class) {
+            return createCollectionConversion(true, createElementConversion(elementType(genericType)));
+        }
+        return value -> {
+            throw new IllegalArgumentException("no conversion from " + value.getClass().getName() + " to " + type.getName());
+        };
+    }
+
+    private static Conversion createPrimitiveConversion(Class<?> type) {
+        if (type == boolean.class) {
+            return value -> {
+                String text = textOf(value);
+                if ("true".equalsIgnoreCase(text)) {
+                    return Boolean.TRUE;
+                } else if ("false".equalsIgnoreCase(text)) {
+                    return Boolean.FALSE;
+                }
+                throw new IllegalArgumentException("not a boolean");
+            };
+        }
+        if (type == char.class) {
+            return value -> {
+                String text = textOf(value);
+                if (text.length() != 1) {
+                    throw new IllegalArgumentException("not a single character");
+                }
+                return text.charAt(0);
+            };
+        }
+        if (type == void.class) {
+            return value -> {
+                throw new IllegalArgumentException("void parameter");
+            };
+        }
+        return value -> {
+            if (value instanceof Number || value instanceof Character) {
+                if (!isWideningConversion(value.getClass(), type)) {
+                    throw new IllegalArgumentException("narrowing " + value.getClass().getName() + " to " + type.getName());
+                }
+                Number number = value instanceof Character ? Integer.valueOf((Character) value) : (Number) value;
+                return widen(number, type);
+            }
+            String text = textOf(value).trim();
+            if (type == int.class) {
+                return Integer.valueOf(text);
+            } else if (type == long.class) {
+                return Long.valueOf(text);
+            } else if (type == double.class) {
+                return Double.valueOf(text);
+            } else if (type == float.class) {
+                return Float.valueOf(text);
+            } else if (type == short.class) {
+                return Short.valueOf(text);
+            }
+            return Byte.valueOf(text);
+        };
+    }
+
+    private static Object widen(Number number, Class<?> type) {
+        if (type == long.class) {
+            return number.longValue();
+        } else if (type == double.class) {
+            return number.doubleValue();
+        } else if (type == float.class) {
+            return number.floatValue();
+        } else if (type == int.class) {
+            return number.intValue();
+        }
+        return number.shortValue();
+    }
+
+    private static Conversion createEnumConversion(Class<?> type) {
+        Map<String, Object> constants = new HashMap<>();
+        for (Object constant : type.getEnumConstants()) {
+            String name = ((Enum<?>) constant).name();
+            constants.put(name, constant);
+            constants.putIfAbsent(name.toUpperCase(), constant);
+        }
+        return value -> {
+            String text = textOf(value);
+            Object answer = constants.get(text);
+            if (answer == null) {
+                answer = constants.get(text.toUpperCase());
+            }
+            if (answer == null) {
+                throw new IllegalArgumentException("not one of " + constants.keySet());
+            }
+            return answer;
+        };
+    }
+
+    private static Conversion createArrayConversion(Class<?> componentType, Conversion elementConversion) {
+        return value -> {
+            Object[] values = splitValues(value);
+            Object answer = Array.newInstance(componentType, values.length);
+            for (int i = 0; i < values.length; i++) {
+                Array.set(answer, i, elementConversion.convert(values[i]));
+            }
+            return answer;
+        };
+    }
+
+    private static Conversion createCollectionConversion(boolean set, Conversion elementConversion) {
+        return value -> {
+            Object[] values = splitValues(value);
+            Collection<Object> answer = set ? new LinkedHashSet<>() : new ArrayList<>(values.length);
+            for (Object element : values) {
+                answer.add(elementConversion.convert(element));
+            }
+            return answer;
+        };
+    }
+
+    private static Conversion createElementConversion(Class<?> type) {
+        if (type == null || type == Object.class) {
+            return value -> value;
+        }
+        Class<?> wrapped = wrap(type);
+        Conversion conversion = createConversion(type, type);
+        return value -> value == null || wrapped.isInstance(value) ? value : conversion.convert(value);
+    }
+
+    private static Class<?> elementType(Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+            if (arguments.length == 1 && arguments[0] instanceof Class) {
+                return (Class<?>) arguments[0];
+            }
+        }
+        return null;
+    }
+
+    private static Object[] splitValues(Object value) {
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).toArray();
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object[] answer = new Object[length];
+            for (int i = 0; i < length; i++) {
+                answer[i] = Array.get(value, i);
+            }
+            return answer;
+        }
+        String text = textOf(value).trim();
+        if (text.isEmpty()) {
+            return new Object[0];
+        }
+        return text.split("\\s*,\\s*");
+    }
+
+    private static String textOf(Object value) {
+        if (value instanceof CharSequence || value instanceof Character) {
+            return value.toString();
+        }
+        throw new IllegalArgumentException("cannot convert a " + value.getClass().getName());
+    }
+
+    private interface Conversion {
+        Object convert(Object value) throws Exception;
+    }
+
+    private static class Parameter {
+        private final Class<?> type;
+        private final String description;
+        private final Conversion conversion;
+
+        Parameter(Class<?> type, String description, Conversion conversion) {
+            this.type = type;
+            this.description = description;
+            this.conversion = conversion;
+        }
+
+        Object convert(Object value) {
+            try {
+                return conversion.convert(value);
+            } catch (Exception e) {
+                String reason = e instanceof NumberFormatException || e instanceof MalformedURLException
+                        ? "invalid format" : e.getMessage();
+                throw new PFuncArgumentException(description + " cannot be converted from " + value + ": " + reason, e);
+            }
+        }
+    }
+}
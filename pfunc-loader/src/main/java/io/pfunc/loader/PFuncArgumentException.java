@@ -14,25 +14,23 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package io.pfunc.helpers;
-
-import io.pfunc.bootstrap.PFuncInfo;
+package io.pfunc.loader;
 
 /**
+ * Thrown when an argument cannot be converted to the parameter type of a function. As conversion failures are
+ * expected when invoking functions from text such as the command line no stack trace is captured.
  */
-public class Bootstrap {
-    public static Object invoke(String functionName, Object[] arguments) throws NoSuchMethodException {
-        switch (functionName) {
-            case "listFunctions":
-                return Functions.listFunctions();
-        }
-        throw new IllegalArgumentException("Function does not exist: " + functionName);
+public class PFuncArgumentException extends IllegalArgumentException {
+    public PFuncArgumentException(String message) {
+        super(message);
     }
 
-    public static PFuncInfo[] functionMetadata() throws NoSuchMethodException {
-        return new PFuncInfo[]{
-                new PFuncInfo(Functions.class.getMethod("listFunctions"))
-        };
+    public PFuncArgumentException(String message, Throwable cause) {
+        super(message, cause);
     }
 
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The results of invoking a function over a batch of arguments where each item either has a result
+ * or a failure so that one failing item does not abort the rest of the batch
+ */
+public class PFuncBatchResult {
+    private final Object[] results;
+    private final Throwable[] failures;
+    private int failureCount;
+
+    public PFuncBatchResult(int size) {
+        this.results = new Object[size];
+        this.failures = new Throwable[size];
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncBatchResult{size: " + size() + " failures: " + failureCount + "}";
+    }
+
+    public int size() {
+        return results.length;
+    }
+
+    public Object getResult(int index) {
+        return results[index];
+    }
+
+    public void setResult(int index, Object result) {
+        results[index] = result;
+    }
+
+    public Throwable getFailure(int index) {
+        return failures[index];
+    }
+
+    public void setFailure(int index, Throwable failure) {
+        if (failures[index] == null) {
+            failureCount++;
+        }
+        failures[index] = failure;
+    }
+
+    public boolean isFailed(int index) {
+        return failures[index] != null;
+    }
+
+    public int getFailureCount() {
+        return failureCount;
+    }
+
+    /**
+     * Returns the results of all the items, with null for any item which failed
+     */
+    public List<Object> getResults() {
+        List<Object> answer = new ArrayList<>(results.length);
+        for (Object result : results) {
+            answer.add(result);
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * A bulkhead which limits the number of concurrent invocations of a function or library. The limit adapts using
+ * additive increase / multiplicative decrease: it grows by one while calls complete close to the baseline latency
+ * and the limit is being used, and backs off when latency rises above that baseline. The limit backs off at most
+ * once per round trip, only for calls which started after the previous back off, and the baseline is the best
+ * latency seen in the current or previous window so that it follows changes in the workload. Callers over the limit
+ * are rejected straight away or wait in a bounded FIFO queue for up to the maximum wait time. All state is held in
+ * atomics and lock free queues so that no locks are taken when invoking.
+ */
+public class PFuncConcurrencyLimiter {
+    private static final long BASELINE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String name;
+    private final int minimumLimit;
+    private final int maximumLimit;
+    private final long maximumWaitNanos;
+    private final int maximumQueued;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicLong windowStartNanos;
+    private final AtomicLong windowMinimumNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong previousWindowMinimumNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastBackoffNanos;
+    private final LongAdder rejected = new LongAdder();
+    private final LongSupplier ticker;
+
+    public PFuncConcurrencyLimiter(String name, int initialLimit, int minimumLimit, int maximumLimit,
+                                   long maximumWaitMillis, int maximumQueued, double latencyTolerance) {
+        this(name, initialLimit, minimumLimit, maximumLimit, maximumWaitMillis, maximumQueued, latencyTolerance, System::nanoTime);
+    }
+
+    /**
+     * Creates a limiter which reads the time in nanoseconds from the given ticker when adapting the limit
+     */
+    PFuncConcurrencyLimiter(String name, int initialLimit, int minimumLimit, int maximumLimit,
+                            long maximumWaitMillis, int maximumQueued, double latencyTolerance, LongSupplier ticker) {
+        if (minimumLimit < 1 || maximumLimit < minimumLimit) {
+            throw new IllegalArgumentException("Invalid limits for " + name + ": minimum " + minimumLimit + " maximum " + maximumLimit);
+        }
+        this.name = name;
+        this.minimumLimit = minimumLimit;
+        this.maximumLimit = maximumLimit;
+        this.maximumWaitNanos = TimeUnit.MILLISECONDS.toNanos(maximumWaitMillis);
+        this.maximumQueued = maximumQueued;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = 0.9;
+        this.limit = new AtomicInteger(Math.max(minimumLimit, Math.min(maximumLimit, initialLimit)));
+        this.ticker = ticker;
+        long now = ticker.getAsLong();
+        this.windowStartNanos = new AtomicLong(now);
+        this.lastBackoffNanos = new AtomicLong(now - Long.MAX_VALUE / 2);
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncConcurrencyLimiter{" + name + " limit: " + getLimit() + " inFlight: " + getInFlight() + "}";
+    }
+
+    /**
+     * Acquires a permit waiting in the queue if configured. Queued callers acquire permits in the order they arrived
+     * and new callers do not overtake them.
+     *
+     * @throws RejectedExecutionException if the limit has been reached and a permit could not be acquired in time
+     */
+    public void acquire() {
+        if (waiters.isEmpty() && tryAcquire()) {
+            return;
+        }
+        if (maximumWaitNanos > 0) {
+            if (queued.incrementAndGet() <= maximumQueued) {
+                Thread thread = Thread.currentThread();
+                waiters.add(thread);
+                try {
+                    long deadline = System.nanoTime() + maximumWaitNanos;
+                    while (true) {
+                        if (waiters.peek() == thread && tryAcquire()) {
+                            return;
+                        }
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || thread.isInterrupted()) {
+                            break;
+                        }
+                        // woken by release() once this caller is at the head of the queue
+                        LockSupport.parkNanos(this, remaining);
+                    }
+                } finally {
+                    waiters.remove(thread);
+                    queued.decrementAndGet();
+                    // the next waiter may be able to use a permit this caller did not take
+                    signalNextWaiter();
+                }
+            } else {
+                queued.decrementAndGet();
+            }
+        } else if (tryAcquire()) {
+            return;
+        }
+        rejected.increment();
+        throw new RejectedExecutionException("Concurrency limit of " + limit.get() + " reached for " + name);
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a permit adapting the limit to the latency of the completed invocation
+     */
+    public void release(long latencyNanos) {
+        int active = inFlight.getAndDecrement();
+        long now = ticker.getAsLong();
+        long baseline = updateBaseline(latencyNanos, now);
+        int current = limit.get();
+        if (latencyNanos > baseline * latencyTolerance) {
+            // only back off once for the calls which were running when the limit last backed off
+            long lastBackoff = lastBackoffNanos.get();
+            if (now - latencyNanos - lastBackoff >= 0) {
+                int next = Math.max(minimumLimit, (int) (current * backoffRatio));
+                if (next < current && lastBackoffNanos.compareAndSet(lastBackoff, now)) {
+                    limit.compareAndSet(current, next);
+                }
+            }
+        } else if (active * 2 >= current && current < maximumLimit) {
+            limit.compareAndSet(current, current + 1);
+        }
+        signalNextWaiter();
+    }
+
+    /**
+     * Releases a permit without sampling the latency such as when the invocation never started
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+        signalNextWaiter();
+    }
+
+    private void signalNextWaiter() {
+        Thread next = waiters.peek();
+        if (next != null) {
+            LockSupport.unpark(next);
+        }
+    }
+
+    /**
+     * Tracks the best latency of the current window returning the best latency of the current and previous windows
+     */
+    private long updateBaseline(long latencyNanos, long now) {
+        long windowStart = windowStartNanos.get();
+        if (now - windowStart >= BASELINE_WINDOW_NANOS && windowStartNanos.compareAndSet(windowStart, now)) {
+            previousWindowMinimumNanos.set(windowMinimumNanos.getAndSet(latencyNanos));
+        } else {
+            long minimum;
+            do {
+                minimum = windowMinimumNanos.get();
+            } while (latencyNanos < minimum && !windowMinimumNanos.compareAndSet(minimum, latencyNanos));
+        }
+        return Math.min(windowMinimumNanos.get(), previousWindowMinimumNanos.get());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getQueued() {
+        return Math.max(0, queued.get());
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getBaselineLatencyNanos() {
+        long answer = Math.min(windowMinimumNanos.get(), previousWindowMinimumNanos.get());
+        return answer == Long.MAX_VALUE ? 0 : answer;
+    }
+}
@@ -16,23 +16,42 @@
  */
 package io.pfunc.loader;
 
-import io.pfunc.loader.helpers.IntrospectionHelper;
+import io.pfunc.loader.helpers.BeanAccessors;
+import io.pfunc.loader.helpers.FutureHelper;
+import io.pfunc.loader.helpers.PrometheusHelper;
 
-import java.beans.BeanInfo;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.TreeMap;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -40,10 +59,15 @@ import java.util.logging.Logger;
  */
 public class PFuncContext {
     public static final String PROPERTIES_FILE_PATH = "META-INF/services/io.pfunc/pfunc.properties";
+    public static final int DEFAULT_STREAM_BUFFER_SIZE = 128;
+    public static final long DEFAULT_LIBRARY_DRAIN_TIMEOUT_MILLIS = 30000;
+    public static final String PARALLEL_LOADING_PROPERTY = "io.pfunc.parallelLoading";
     private static final Logger LOGGER = Logger.getLogger(PFuncContext.class.getName());
+    public static final String DEFAULT_JMX_DOMAIN = "io.pfunc";
     private static final String DEFAULT_BOOTSTRAP_CLASS = "io.pfunc.bootstrap.Bootstrap";
     private static final String INVOKE_METHOD = "invoke";
     private static final String GET_FUNCTION_METADATA_METHOD = "functionMetadata";
+    private static final String INVOKE_BATCH_METHOD = "invokeBatch";
 
     private static Class<?>[] invokeMethodParameters = {
             String.class, Object[].class
@@ -52,7 +76,21 @@ public class PFuncContext {
     private static Class<?>[] getFunctionMethodParameters = {
     };
 
-    private final ConcurrentMap<String, PFuncJarFunction> cache = new ConcurrentHashMap<>();
+    private static Class<?>[] invokeBatchMethodParameters = {
+            String.class, Object[][].class
+    };
+
+    // the registered functions which are only modified while synchronized then published as a snapshot
+    private final Map<String, PFunction> cache = new HashMap<>();
+    private final Map<String, PFuncLibrary> libraries = new HashMap<>();
+    private final List<PFuncRegistryListener> registryListeners = new CopyOnWriteArrayList<>();
+    private final Queue<RegistryChange> registryChanges = new ConcurrentLinkedQueue<>();
+    private volatile PFuncRegistrySnapshot snapshot = PFuncRegistrySnapshot.EMPTY;
+    private volatile Executor executor;
+    private int streamBufferSize = DEFAULT_STREAM_BUFFER_SIZE;
+    private long libraryDrainTimeoutMillis = DEFAULT_LIBRARY_DRAIN_TIMEOUT_MILLIS;
+    private boolean parallelLoading = Boolean.getBoolean(PARALLEL_LOADING_PROPERTY);
+    private final List<ObjectName> registeredMBeans = new ArrayList<>();
 
     public PFuncContext() {
     }
@@ -63,41 +101,348 @@ public class PFuncContext {
     }
 
     /**
-     * Returns an immutable copy of the current registered functions so that they can be invokved or their metadata
-     * invoked
+     * Returns an immutable map of the current registered functions sorted by name so that they can be invoked or
+     * their metadata viewed
      */
     public Map<String, PFunction> getFunctionMap() {
-        return Collections.unmodifiableMap(new TreeMap(cache));
+        return snapshot.getFunctionMap();
+    }
+
+    /**
+     * Returns the current immutable snapshot of the registered functions
+     */
+    public PFuncRegistrySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Adds a listener notified, in order, with each new snapshot published when functions are registered
+     */
+    public void addRegistryListener(PFuncRegistryListener listener) {
+        registryListeners.add(listener);
+    }
+
+    public void removeRegistryListener(PFuncRegistryListener listener) {
+        registryListeners.remove(listener);
+    }
+
+    /**
+     * Returns the executor used for asynchronous invocations. Unless one is configured this uses a virtual thread
+     * per invocation if the JVM supports them so that long running functions do not pin platform threads
+     */
+    public Executor getExecutor() {
+        Executor answer = executor;
+        if (answer == null) {
+            answer = DefaultExecutorHolder.EXECUTOR;
+        }
+        return answer;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the maximum number of items buffered ahead of a subscriber when streaming results from
+     * sources which do not support demand signalling such as RxJava observables
+     */
+    public int getStreamBufferSize() {
+        return streamBufferSize;
+    }
+
+    public void setStreamBufferSize(int streamBufferSize) {
+        this.streamBufferSize = streamBufferSize;
+    }
+
+    /**
+     * Returns how long a replaced or unloaded library waits for its running invocations to finish before its class
+     * loader is closed regardless
+     */
+    public long getLibraryDrainTimeoutMillis() {
+        return libraryDrainTimeoutMillis;
+    }
+
+    public void setLibraryDrainTimeoutMillis(long libraryDrainTimeoutMillis) {
+        this.libraryDrainTimeoutMillis = libraryDrainTimeoutMillis;
+    }
+
+    /**
+     * Returns true if libraries and the bootstrap classes within them are loaded and their metadata converted in
+     * parallel on the common fork join pool. Defaults to the <code>io.pfunc.parallelLoading</code> system property.
+     */
+    public boolean isParallelLoading() {
+        return parallelLoading;
+    }
+
+    public void setParallelLoading(boolean parallelLoading) {
+        this.parallelLoading = parallelLoading;
+    }
+
+    private static class DefaultExecutorHolder {
+        static final Executor EXECUTOR = FutureHelper.createDefaultExecutor();
+    }
+
+    /**
+     * A published snapshot and the snapshot it replaced which the registry listeners have not been notified of yet
+     */
+    private static class RegistryChange {
+        final PFuncRegistrySnapshot previous;
+        final PFuncRegistrySnapshot current;
+
+        RegistryChange(PFuncRegistrySnapshot previous, PFuncRegistrySnapshot current) {
+            this.previous = previous;
+            this.current = current;
+        }
     }
 
     public void loadFunctions(ClassLoader classLoader) throws IOException {
-        Properties properties = new Properties();
-        String className = DEFAULT_BOOTSTRAP_CLASS;
-        Enumeration<URL> resources = classLoader.getResources(PROPERTIES_FILE_PATH);
-        while (resources.hasMoreElements()) {
-            URL resource = resources.nextElement();
-            if (resource != null) {
+        List<PFuncJarFunction> functions = createFunctions(classLoader);
+        // publish a single snapshot for all the functions of the class loader
+        synchronized (this) {
+            boolean changed = false;
+            for (PFuncJarFunction function : functions) {
+                changed |= registerFunction(function);
+            }
+            if (changed) {
+                publishSnapshot();
+            }
+        }
+        notifyRegistryListeners();
+    }
+
+    /**
+     * Loads the functions of the class loader as a new version of the named library, atomically replacing the
+     * functions of any previous version. Invocations already running on the previous version finish on it before
+     * its class loader is closed. The context takes ownership of the class loader which is closed when the library
+     * is replaced or unloaded.
+     * <p>
+     * Callers holding a function of a previous version keep invoking that version; use {@link #ref(String)} to
+     * follow reloads.
+     */
+    public PFuncLibrary loadLibrary(String name, ClassLoader classLoader) throws IOException {
+        return loadLibraries(Collections.singletonMap(name, classLoader)).get(0);
+    }
+
+    /**
+     * Loads each of the class loaders as a new version of the library of the given name as
+     * {@link #loadLibrary(String, ClassLoader)} does, publishing a single snapshot. The functions are registered in
+     * the iteration order of the map so the first library registering a name wins even when the libraries are
+     * loaded in parallel. If any library fails to load none are registered.
+     *
+     * @return the new libraries in the iteration order of the map
+     */
+    public List<PFuncLibrary> loadLibraries(Map<String, ? extends ClassLoader> classLoaders) throws IOException {
+        List<Map.Entry<String, ? extends ClassLoader>> entries = new ArrayList<>(classLoaders.entrySet());
+        List<List<PFuncJarFunction>> functions;
+        try {
+            functions = createInOrder(entries, entry -> {
                 try {
-                    properties.load(resource.openStream());
+                    return createFunctions(entry.getValue());
                 } catch (IOException e) {
-                    throw new IllegalArgumentException("Failed to load " + PROPERTIES_FILE_PATH + ". " + e, e);
+                    throw new UncheckedIOException(e);
                 }
-                className = properties.getProperty(PropertiesKeys.BOOSTRAP_CLASS, DEFAULT_BOOTSTRAP_CLASS);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        List<PFuncLibrary> answer = new ArrayList<>();
+        List<PFuncLibrary> replaced = new ArrayList<>();
+        synchronized (this) {
+            for (int i = 0; i < entries.size(); i++) {
+                answer.add(registerLibrary(entries.get(i).getKey(), entries.get(i).getValue(), functions.get(i), replaced));
+            }
+            publishSnapshot();
+        }
+        notifyRegistryListeners();
+        for (PFuncLibrary previous : replaced) {
+            previous.retire(libraryDrainTimeoutMillis);
+        }
+        return answer;
+    }
+
+    /**
+     * Registers functions from persisted metadata as a new version of the named library without loading it. The
+     * class loader of the library is created and the library loaded in place of these functions the first time one
+     * of them is invoked; concurrent first invocations wait for a single activation.
+     *
+     * @see PFuncManifest
+     */
+    public PFuncLibrary loadLazyLibrary(String name, List<PFuncInfo> metadata, Callable<? extends ClassLoader> classLoaderFactory) {
+        PFuncLazyActivation activation = new PFuncLazyActivation(this, name, classLoaderFactory);
+        List<PFunction> functions = new ArrayList<>();
+        for (PFuncInfo info : metadata) {
+            functions.add(new PFuncLazyFunction(info, activation));
+        }
+        List<PFuncLibrary> replaced = new ArrayList<>();
+        PFuncLibrary answer;
+        synchronized (this) {
+            answer = registerLibrary(name, null, functions, replaced);
+            activation.setLibrary(answer);
+            publishSnapshot();
+        }
+        notifyRegistryListeners();
+        for (PFuncLibrary previous : replaced) {
+            previous.retire(libraryDrainTimeoutMillis);
+        }
+        return answer;
+    }
+
+    /**
+     * Loads the class loader in place of the lazy library if it is still the current version of the library
+     *
+     * @return the activated library or null if the lazy library has since been replaced or unloaded
+     */
+    PFuncLibrary activateLibrary(PFuncLibrary lazyLibrary, ClassLoader classLoader) throws IOException {
+        List<PFuncJarFunction> functions = createFunctions(classLoader);
+        List<PFuncLibrary> replaced = new ArrayList<>();
+        PFuncLibrary answer = null;
+        synchronized (this) {
+            if (libraries.get(lazyLibrary.getName()) == lazyLibrary) {
+                answer = registerLibrary(lazyLibrary.getName(), classLoader, functions, replaced);
+                publishSnapshot();
+            }
+        }
+        notifyRegistryListeners();
+        if (answer == null && classLoader instanceof Closeable) {
+            ((Closeable) classLoader).close();
+        }
+        for (PFuncLibrary previous : replaced) {
+            previous.retire(libraryDrainTimeoutMillis);
+        }
+        return answer;
+    }
+
+    /**
+     * Registers the functions as a new version of the named library, adding any previous version to the replaced
+     * libraries which should be retired once the new snapshot is published
+     */
+    private PFuncLibrary registerLibrary(String name, ClassLoader classLoader, List<? extends PFunction> functions,
+                                         List<PFuncLibrary> replaced) {
+        PFuncLibrary previous = libraries.get(name);
+        if (previous != null) {
+            removeFunctions(previous);
+            replaced.add(previous);
+        }
+        List<PFunction> registered = new ArrayList<>();
+        for (PFunction function : functions) {
+            if (registerFunction(function)) {
+                registered.add(function);
+            }
+        }
+        PFuncLibrary answer = new PFuncLibrary(name, previous != null ? previous.getVersion() + 1 : 1, classLoader, registered);
+        libraries.put(name, answer);
+        return answer;
+    }
+
+    /**
+     * Removes the functions of the named library, closing its class loader once its running invocations finish
+     *
+     * @return the library which was unloaded or null if there is no such library
+     */
+    public PFuncLibrary unloadLibrary(String name) {
+        PFuncLibrary answer;
+        synchronized (this) {
+            answer = libraries.remove(name);
+            if (answer == null) {
+                return null;
             }
-            Class<?> clazz;
+            removeFunctions(answer);
+            publishSnapshot();
+        }
+        notifyRegistryListeners();
+        answer.retire(libraryDrainTimeoutMillis);
+        return answer;
+    }
+
+    /**
+     * Returns the current version of the libraries loaded via {@link #loadLibrary(String, ClassLoader)} sorted by
+     * name
+     */
+    public synchronized Map<String, PFuncLibrary> getLibraries() {
+        return new TreeMap<>(libraries);
+    }
+
+    private List<PFuncJarFunction> createFunctions(ClassLoader classLoader) throws IOException {
+        List<URL> resources = Collections.list(classLoader.getResources(PROPERTIES_FILE_PATH));
+        List<PFuncJarFunction> answer = new ArrayList<>();
+        for (List<PFuncJarFunction> functions : createInOrder(resources, resource -> createFunctions(classLoader, resource))) {
+            answer.addAll(functions);
+        }
+        return answer;
+    }
+
+    /**
+     * Applies the factory to each item returning the results in the order of the items. If parallel loading is
+     * enabled the items are processed on the common fork join pool, rethrowing the failure of the first item which
+     * failed so that the outcome is the same as loading serially.
+     */
+    private <T, R> List<R> createInOrder(List<T> items, Function<T, R> factory) {
+        List<R> answer = new ArrayList<>(items.size());
+        if (!parallelLoading || items.size() < 2) {
+            for (T item : items) {
+                answer.add(factory.apply(item));
+            }
+            return answer;
+        }
+        List<CompletableFuture<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(CompletableFuture.supplyAsync(() -> factory.apply(item), ForkJoinPool.commonPool()));
+        }
+        RuntimeException failure = null;
+        for (CompletableFuture<R> future : futures) {
             try {
-                clazz = classLoader.loadClass(className);
-            } catch (ClassNotFoundException e) {
-                throw new IllegalArgumentException("ClassLoader does not contain boostrap class " + className + " in " + classLoader);
+                answer.add(future.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    failure = cause instanceof RuntimeException ? (RuntimeException) cause : e;
+                }
             }
-            PFuncJar jar;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return answer;
+    }
+
+    private List<PFuncJarFunction> createFunctions(ClassLoader classLoader, URL resource) {
+        Properties properties = new Properties();
+        String className = DEFAULT_BOOTSTRAP_CLASS;
+        if (resource != null) {
+            try (InputStream in = resource.openStream()) {
+                properties.load(in);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Failed to load " + PROPERTIES_FILE_PATH + ". " + e, e);
+            }
+            className = properties.getProperty(PropertiesKeys.BOOSTRAP_CLASS, DEFAULT_BOOTSTRAP_CLASS);
+        }
+        Class<?> clazz;
+        try {
+            clazz = classLoader.loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("ClassLoader does not contain boostrap class " + className + " in " + classLoader);
+        }
+        PFuncJar jar;
+        try {
+            Method method = clazz.getMethod(INVOKE_METHOD, invokeMethodParameters);
+            jar = new PFuncJar(classLoader, clazz, method, findOptionalMethod(clazz, INVOKE_BATCH_METHOD, invokeBatchMethodParameters), properties);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Bootstrap class " + clazz.getName() + " does not have a method "
+                    + INVOKE_METHOD + "" + asArgumentTypeText(invokeMethodParameters) + " in " + classLoader);
+        }
+        List<PFuncInfo> infos;
+        String index = resource != null ? properties.getProperty(PropertiesKeys.FUNCTION_INDEX) : null;
+        if (index != null && index.trim().length() > 0) {
+            // the index is next to the pfunc.properties of the same jar
             try {
-                Method method = clazz.getMethod(INVOKE_METHOD, invokeMethodParameters);
-                jar = new PFuncJar(classLoader, clazz, method, properties);
-            } catch (NoSuchMethodException e) {
-                throw new IllegalArgumentException("Bootstrap class " + clazz.getName() + " does not have a method "
-                        + INVOKE_METHOD + "" + asArgumentTypeText(invokeMethodParameters) + " in " + classLoader);
+                infos = PFuncIndex.read(new URL(resource, index.trim()), classLoader);
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException("Invalid " + PropertiesKeys.FUNCTION_INDEX + " " + index + " in " + resource);
             }
+        } else {
             Method metadataMethod;
             try {
                 metadataMethod = clazz.getMethod(GET_FUNCTION_METADATA_METHOD, getFunctionMethodParameters);
@@ -105,11 +450,24 @@ public class PFuncContext {
                 throw new IllegalArgumentException("Bootstrap class " + clazz.getName() + " does not have a method "
                         + GET_FUNCTION_METADATA_METHOD + "" + asArgumentTypeText(getFunctionMethodParameters) + " in " + classLoader);
             }
-            List<PFuncInfo> infos = new ArrayList<>();
+            infos = new ArrayList<>();
             addFunctionMetadata(metadataMethod, infos);
-            for (PFuncInfo info : infos) {
-                addFunction(info, jar);
-            }
+        }
+        List<PFuncJarFunction> answer = new ArrayList<>();
+        for (PFuncInfo info : infos) {
+            answer.add(new PFuncJarFunction(this, info, jar));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the public method of the given name or null if the bootstrap class does not implement it
+     */
+    private Method findOptionalMethod(Class<?> clazz, String name, Class<?>[] parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
         }
     }
 
@@ -147,17 +505,16 @@ public class PFuncContext {
     private PFuncInfo convertToPFuncInfo(Object value) {
         PFuncInfo answer = null;
         if (value != null) {
-            BeanInfo info;
-            info = IntrospectionHelper.introspect(value);
+            BeanAccessors accessors = BeanAccessors.forClass(value.getClass());
             answer = new PFuncInfo();
-            String name = IntrospectionHelper.getStringProperty(info, BeanProperties.NAME, value);
+            String name = accessors.getStringProperty(BeanProperties.NAME, value);
             if (name == null || name.length() == 0) {
                 return null;
             }
             answer.setName(name);
-            answer.setDescription(IntrospectionHelper.getStringProperty(info, BeanProperties.DESCRIPTION, value));
-            answer.setReturnType(IntrospectionHelper.getClassProperty(info, BeanProperties.RETURN_TYPE, value));
-            Object parameters = IntrospectionHelper.getObjectProperty(info, BeanProperties.PARAMETER_INFOS, value);
+            answer.setDescription(accessors.getStringProperty(BeanProperties.DESCRIPTION, value));
+            answer.setReturnType(accessors.getClassProperty(BeanProperties.RETURN_TYPE, value));
+            Object parameters = accessors.getObjectProperty(BeanProperties.PARAMETER_INFOS, value);
             if (parameters != null && parameters.getClass().isArray()) {
                 int length = Array.getLength(parameters);
                 PFuncParameterInfo[] array = new PFuncParameterInfo[length];
@@ -167,6 +524,11 @@ public class PFuncContext {
                 }
                 answer.setParameterInfos(array);
             }
+            Object method = accessors.getObjectProperty(BeanProperties.METHOD, value);
+            if (method instanceof Method) {
+                answer.setMethod((Method) method);
+            }
+            answer.setPure(Boolean.TRUE.equals(accessors.getObjectProperty(BeanProperties.PURE, value)));
         }
         return answer;
     }
@@ -174,31 +536,219 @@ public class PFuncContext {
     private PFuncParameterInfo convertToPFuncParameterInfo(Object value) {
         PFuncParameterInfo answer = null;
         if (value != null) {
-            BeanInfo info;
-            info = IntrospectionHelper.introspect(value);
+            BeanAccessors accessors = BeanAccessors.forClass(value.getClass());
             answer = new PFuncParameterInfo();
-            answer.setName(IntrospectionHelper.getStringProperty(info, BeanProperties.NAME, value));
-            answer.setDescription(IntrospectionHelper.getStringProperty(info, BeanProperties.DESCRIPTION, value));
-            answer.setType(IntrospectionHelper.getClassProperty(info, BeanProperties.TYPE, value));
+            answer.setName(accessors.getStringProperty(BeanProperties.NAME, value));
+            answer.setDescription(accessors.getStringProperty(BeanProperties.DESCRIPTION, value));
+            answer.setType(accessors.getClassProperty(BeanProperties.TYPE, value));
             return answer;
         }
         return answer;
     }
 
     protected void addFunction(PFuncInfo info, PFuncJar jar) {
-        PFuncJarFunction function = new PFuncJarFunction(info, jar);
-        PFuncJarFunction oldValue = cache.putIfAbsent(info.getName(), function);
-        if (oldValue != null) {
+        PFuncJarFunction function = new PFuncJarFunction(this, info, jar);
+        synchronized (this) {
+            if (registerFunction(function)) {
+                publishSnapshot();
+            }
+        }
+        notifyRegistryListeners();
+    }
+
+    /**
+     * Registers the function, combining it with any functions of the same name but different parameter types
+     * into {@link PFuncOverloads}
+     */
+    private boolean registerFunction(PFunction function) {
+        String name = function.getMetadata().getName();
+        PFunction oldValue = cache.putIfAbsent(name, function);
+        if (oldValue == null) {
+            return true;
+        }
+        PFuncOverloads overloads = oldValue instanceof PFuncOverloads
+                ? (PFuncOverloads) oldValue : new PFuncOverloads(name, Collections.singletonList(oldValue));
+        overloads = overloads.withOverload(function);
+        if (overloads == null) {
             LOGGER.warning("Cannot register " + function + " as there is already this function registered: " + oldValue);
+            return false;
         }
+        cache.put(name, overloads);
+        return true;
     }
 
+    private void removeFunctions(PFuncLibrary library) {
+        for (PFunction function : library.getFunctions()) {
+            String name = function.getMetadata().getName();
+            PFunction value = cache.get(name);
+            if (value == function) {
+                cache.remove(name);
+            } else if (value instanceof PFuncOverloads) {
+                PFunction remaining = ((PFuncOverloads) value).withoutOverload(function);
+                if (remaining == null) {
+                    cache.remove(name);
+                } else {
+                    cache.put(name, remaining);
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes a new snapshot of the registered functions while the registry is locked, queueing the change for
+     * {@link #notifyRegistryListeners()} which must be called once the lock has been released
+     */
+    private synchronized void publishSnapshot() {
+        PFuncRegistrySnapshot previous = snapshot;
+        PFuncRegistrySnapshot answer = new PFuncRegistrySnapshot(previous.getVersion() + 1, cache);
+        snapshot = answer;
+        registryChanges.add(new RegistryChange(previous, answer));
+    }
+
+    /**
+     * Notifies the registry listeners of the published snapshots in order without holding the registry lock, so
+     * that a slow listener does not block registering or invoking functions
+     */
+    private void notifyRegistryListeners() {
+        synchronized (registryChanges) {
+            RegistryChange change;
+            while ((change = registryChanges.poll()) != null) {
+                for (PFuncRegistryListener listener : registryListeners) {
+                    try {
+                        listener.onRegistryChange(change.previous, change.current);
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Registry listener " + listener + " failed due to " + e, e);
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns the result cache of the given function or null if its results are not cached
+     */
+    public PFuncResultCache getCache(String name) {
+        PFunction function = snapshot.get(name);
+        return function instanceof PFuncJarFunction ? ((PFuncJarFunction) function).getCache() : null;
+    }
+
+    /**
+     * Returns the invocation statistics of the registered functions sorted by name
+     */
+    public Map<String, PFuncStatistics> getStatistics() {
+        Map<String, PFuncStatistics> answer = new TreeMap<>();
+        for (PFunction value : snapshot.getFunctions()) {
+            // overloads are named by their prototypes
+            List<PFunction> functions = PFuncOverloads.getOverloads(value);
+            for (PFunction function : functions) {
+                PFuncStatistics statistics = function instanceof PFuncJarFunction
+                        ? ((PFuncJarFunction) function).getStatistics() : null;
+                if (statistics != null) {
+                    PFuncInfo metadata = function.getMetadata();
+                    answer.put(functions.size() > 1 ? metadata.getPrototype() : metadata.getName(), statistics);
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns a snapshot of the invocation statistics in the Prometheus text exposition format
+     */
+    public String getPrometheusStatistics() {
+        StringBuilder buffer = new StringBuilder();
+        try {
+            PrometheusHelper.writeStatistics(getStatistics(), buffer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write statistics due to " + e, e);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Registers the statistics of each function as an MBean called
+     * <code>io.pfunc:type=Function,name=&lt;function&gt;</code> in the platform MBean server
+     */
+    public void registerMBeans() {
+        registerMBeans(ManagementFactory.getPlatformMBeanServer(), DEFAULT_JMX_DOMAIN);
+    }
+
+    public synchronized void registerMBeans(MBeanServer server, String domain) {
+        for (Map.Entry<String, PFuncStatistics> entry : getStatistics().entrySet()) {
+            try {
+                ObjectName objectName = new ObjectName(domain + ":type=Function,name=" + ObjectName.quote(entry.getKey()));
+                server.registerMBean(entry.getValue(), objectName);
+                registeredMBeans.add(objectName);
+            } catch (InstanceAlreadyExistsException e) {
+                LOGGER.warning("Cannot register the statistics of " + entry.getKey() + " as there is already an MBean registered: " + e.getMessage());
+            } catch (JMException e) {
+                throw new IllegalArgumentException("Could not register the statistics of " + entry.getKey() + " due to " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Unregisters any MBeans registered by {@link #registerMBeans()}
+     */
+    public void unregisterMBeans() {
+        unregisterMBeans(ManagementFactory.getPlatformMBeanServer());
+    }
+
+    public synchronized void unregisterMBeans(MBeanServer server) {
+        for (ObjectName objectName : registeredMBeans) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (InstanceNotFoundException e) {
+                // already unregistered
+            } catch (JMException e) {
+                LOGGER.log(Level.WARNING, "Could not unregister " + objectName + " due to " + e, e);
+            }
+        }
+        registeredMBeans.clear();
+    }
+
+    /**
+     * Returns a function which invokes the given functions in turn passing the result of each function to the next.
+     * The functions are looked up and their types checked once so that invoking the pipeline does no lookups.
+     *
+     * @throws IllegalArgumentException if a function does not exist or cannot accept the result of the previous one
+     */
+    public PFuncPipeline compose(String... names) {
+        PFunction[] stages = new PFunction[names.length];
+        for (int i = 0; i < names.length; i++) {
+            stages[i] = withName(names[i]);
+        }
+        return new PFuncPipeline(stages);
+    }
+
+    /**
+     * Returns a handle to the named function which can be invoked repeatedly without looking up the name and which
+     * re-links if the registered functions change
+     *
+     * @throws IllegalArgumentException if the function does not exist
+     */
+    public PFuncRef ref(String name) {
+        return new PFuncRef(this, name);
+    }
 
     public PFunction withName(String name) {
-        PFuncJarFunction function = cache.get(name);
+        PFunction function = snapshot.get(name);
         if (function == null) {
             throw new IllegalArgumentException("No such function: " + name);
         }
         return function;
     }
+
+    /**
+     * Returns the overload of the named function with exactly the given parameter types
+     */
+    public PFunction withSignature(String name, Class<?>... parameterTypes) {
+        for (PFunction function : PFuncOverloads.getOverloads(withName(name))) {
+            if (Arrays.equals(PFuncOverloads.getParameterTypes(function.getMetadata()), parameterTypes)) {
+                return function;
+            }
+        }
+        throw new IllegalArgumentException("No such function: " + name + asArgumentTypeText(parameterTypes));
+    }
 }
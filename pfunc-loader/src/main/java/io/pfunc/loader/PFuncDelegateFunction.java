@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A function which delegates every invocation to the function returned by {@link #getFunction()}
+ */
+public abstract class PFuncDelegateFunction implements PFunction {
+    /**
+     * Returns the function to invoke
+     */
+    public abstract PFunction getFunction();
+
+    @Override
+    public PFuncInfo getMetadata() {
+        return getFunction().getMetadata();
+    }
+
+    @Override
+    public Object invoke(Object... arguments) {
+        return getFunction().invoke(arguments);
+    }
+
+    @Override
+    public Object invoke0() {
+        return getFunction().invoke0();
+    }
+
+    @Override
+    public Object invoke1(Object argument) {
+        return getFunction().invoke1(argument);
+    }
+
+    @Override
+    public Object invoke2(Object argument1, Object argument2) {
+        return getFunction().invoke2(argument1, argument2);
+    }
+
+    @Override
+    public int invokeInt(Object... arguments) {
+        return getFunction().invokeInt(arguments);
+    }
+
+    @Override
+    public int invokeInt(int argument) {
+        return getFunction().invokeInt(argument);
+    }
+
+    @Override
+    public long invokeLong(Object... arguments) {
+        return getFunction().invokeLong(arguments);
+    }
+
+    @Override
+    public long invokeLong(long argument) {
+        return getFunction().invokeLong(argument);
+    }
+
+    @Override
+    public double invokeDouble(Object... arguments) {
+        return getFunction().invokeDouble(arguments);
+    }
+
+    @Override
+    public double invokeDouble(double argument) {
+        return getFunction().invokeDouble(argument);
+    }
+
+    @Override
+    public PFuncBatchResult invokeBatch(List<Object[]> arguments) {
+        return getFunction().invokeBatch(arguments);
+    }
+
+    @Override
+    public CompletableFuture<Object> invokeAsync(Object... arguments) {
+        return getFunction().invokeAsync(arguments);
+    }
+
+    @Override
+    public CompletableFuture<Object> invokeAsyncWithOptions(PFuncInvocationOptions options, Object... arguments) {
+        return getFunction().invokeAsyncWithOptions(options, arguments);
+    }
+
+    @Override
+    public PFuncFlow.Publisher<Object> invokeStream(Object... arguments) {
+        return getFunction().invokeStream(arguments);
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the binary function index generated by the <code>io.pfunc.bootstrap.processor.PFuncProcessor</code>
+ * so that the metadata of a library can be created without invoking its bootstrap class or introspecting the
+ * results, linking each target method directly from its descriptor
+ */
+public final class PFuncIndex {
+    private static final Logger LOGGER = Logger.getLogger(PFuncIndex.class.getName());
+
+    // the format written by io.pfunc.bootstrap.processor.PFuncProcessor
+    private static final int MAGIC = 0x50464E58;
+    private static final int VERSION = 1;
+    private static final int FLAG_PURE = 1;
+
+    private PFuncIndex() {
+    }
+
+    public static List<PFuncInfo> read(URL url, ClassLoader classLoader) {
+        try (InputStream in = url.openStream()) {
+            return read(new DataInputStream(new BufferedInputStream(in)), classLoader);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to load the function index " + url + ". " + e, e);
+        }
+    }
+
+    public static List<PFuncInfo> read(DataInputStream in, ClassLoader classLoader) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IllegalArgumentException("Not a function index");
+        }
+        int version = in.readUnsignedShort();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported function index version " + version);
+        }
+        int count = in.readInt();
+        List<PFuncInfo> answer = new ArrayList<>(count);
+        // functions of a library share owner classes and signatures which are expensive to resolve
+        Map<String, Class<?>> classes = new HashMap<>();
+        Map<String, MethodType> types = new HashMap<>();
+        Map<Class<?>, Map<String, List<Method>>> methodTables = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            PFuncInfo info = new PFuncInfo();
+            info.setName(in.readUTF());
+            info.setDescription(in.readUTF());
+            String className = in.readUTF();
+            String methodName = in.readUTF();
+            String descriptor = in.readUTF();
+            info.setPure((in.readByte() & FLAG_PURE) != 0);
+            MethodType type;
+            Class<?> owner;
+            try {
+                owner = classes.get(className);
+                if (owner == null) {
+                    owner = Class.forName(className, false, classLoader);
+                    classes.put(className, owner);
+                }
+                type = types.get(descriptor);
+                if (type == null) {
+                    type = MethodType.fromMethodDescriptorString(descriptor, classLoader);
+                    types.put(descriptor, type);
+                }
+            } catch (ClassNotFoundException | TypeNotPresentException e) {
+                throw new IllegalArgumentException("Could not load function " + info.getName() + " due to " + e, e);
+            }
+            info.setReturnType(type.returnType());
+            int parameterCount = in.readUnsignedShort();
+            if (parameterCount != type.parameterCount()) {
+                throw new IllegalArgumentException("Function " + info.getName() + " has " + parameterCount
+                        + " parameters but its descriptor is " + descriptor);
+            }
+            PFuncParameterInfo[] parameterInfos = new PFuncParameterInfo[parameterCount];
+            for (int j = 0; j < parameterCount; j++) {
+                PFuncParameterInfo parameterInfo = new PFuncParameterInfo();
+                parameterInfo.setName(in.readUTF());
+                parameterInfo.setDescription(in.readUTF());
+                parameterInfo.setType(type.parameterType(j));
+                parameterInfos[j] = parameterInfo;
+            }
+            info.setParameterInfos(parameterInfos);
+            Map<String, List<Method>> methods = methodTables.get(owner);
+            if (methods == null) {
+                methods = getPublicStaticMethods(owner);
+                methodTables.put(owner, methods);
+            }
+            info.setTarget(linkTarget(owner, methods.get(methodName), type));
+            answer.add(info);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the public static methods of the class by name, as unreflecting a method found once per class is
+     * cheaper than resolving every target by name and type
+     */
+    private static Map<String, List<Method>> getPublicStaticMethods(Class<?> owner) {
+        Map<String, List<Method>> answer = new HashMap<>();
+        for (Method method : owner.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                answer.computeIfAbsent(method.getName(), name -> new ArrayList<>(1)).add(method);
+            }
+        }
+        return answer;
+    }
+
+    private static MethodHandle linkTarget(Class<?> owner, List<Method> methods, MethodType type) {
+        if (methods != null) {
+            for (Method method : methods) {
+                if (method.getReturnType() == type.returnType() && Arrays.equals(method.getParameterTypes(), type.parameterArray())) {
+                    try {
+                        return MethodHandles.publicLookup().unreflect(method);
+                    } catch (IllegalAccessException e) {
+                        LOGGER.log(Level.FINE, "Could not link " + method + " so using the bootstrap class instead: " + e, e);
+                        return null;
+                    }
+                }
+            }
+        }
+        LOGGER.fine("Could not find " + owner.getName() + " method of type " + type + " so using the bootstrap class instead");
+        return null;
+    }
+}
@@ -16,6 +16,9 @@
  */
 package io.pfunc.loader;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
 import java.util.Arrays;
 
 /**
@@ -25,6 +28,9 @@ public class PFuncInfo {
     private String description;
     private Class<?> returnType;
     private PFuncParameterInfo[] parameterInfos = {};
+    private Method method;
+    private MethodHandle target;
+    private boolean pure;
 
     @Override
     public String toString() {
@@ -81,4 +87,42 @@ public class PFuncInfo {
     public void setParameterInfos(PFuncParameterInfo[] parameterInfos) {
         this.parameterInfos = parameterInfos;
     }
+
+    /**
+     * Returns the target method of this function if the library exposes it for direct invocation
+     */
+    public Method getMethod() {
+        if (method == null && target != null) {
+            // functions loaded from the index of a library only have a handle of their target method
+            method = MethodHandles.reflectAs(Method.class, target);
+        }
+        return method;
+    }
+
+    public void setMethod(Method method) {
+        this.method = method;
+    }
+
+    /**
+     * Returns true if the function always returns the same result for the same arguments so its results can be cached
+     */
+    /**
+     * Returns the handle of the static target method if it was linked from the function index of the library
+     * rather than found via reflection
+     */
+    public MethodHandle getTarget() {
+        return target;
+    }
+
+    public void setTarget(MethodHandle target) {
+        this.target = target;
+    }
+
+    public boolean isPure() {
+        return pure;
+    }
+
+    public void setPure(boolean pure) {
+        this.pure = pure;
+    }
 }
@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The options of an invocation such as its deadline. Instances are immutable so they can be shared.
+ */
+public class PFuncInvocationOptions {
+    private static final PFuncInvocationOptions DEFAULT = new PFuncInvocationOptions(0, true);
+
+    private final long timeoutNanos;
+    private final boolean interrupt;
+
+    private PFuncInvocationOptions(long timeoutNanos, boolean interrupt) {
+        this.timeoutNanos = timeoutNanos;
+        this.interrupt = interrupt;
+    }
+
+    /**
+     * Returns the options of an invocation with no deadline
+     */
+    public static PFuncInvocationOptions defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the options of an invocation which times out after the given time
+     */
+    public static PFuncInvocationOptions withTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Invalid timeout " + timeout + " " + unit);
+        }
+        return new PFuncInvocationOptions(unit.toNanos(timeout), true);
+    }
+
+    /**
+     * Returns a copy of these options which does or does not interrupt the thread of an invocation when it is
+     * cancelled. Functions can always poll for cancellation via <code>PFuncInvocationContext.isCancelled()</code>
+     */
+    public PFuncInvocationOptions interrupt(boolean interrupt) {
+        return new PFuncInvocationOptions(timeoutNanos, interrupt);
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncInvocationOptions{timeout: " + (hasTimeout() ? timeoutNanos + "ns" : "none") + " interrupt: " + interrupt + "}";
+    }
+
+    public boolean hasTimeout() {
+        return timeoutNanos > 0;
+    }
+
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    public boolean isInterrupt() {
+        return interrupt;
+    }
+}
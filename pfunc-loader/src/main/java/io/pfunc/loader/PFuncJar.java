@@ -16,25 +16,55 @@
  */
 package io.pfunc.loader;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A helper class for working with pfuncs
  */
 public class PFuncJar {
+    private static final Logger LOGGER = Logger.getLogger(PFuncJar.class.getName());
+    private static final long DEFAULT_CACHE_MAXIMUM_SIZE = 1000;
+    private static final int DEFAULT_CONCURRENCY_MAXIMUM_LIMIT = 1000;
+    private static final int DEFAULT_CONCURRENCY_MAXIMUM_QUEUED = 64;
+    private static final double DEFAULT_CONCURRENCY_LATENCY_TOLERANCE = 2.0;
+    private static final MethodType BOOTSTRAP_METHOD_TYPE = MethodType.methodType(Object.class, String.class, Object[].class);
+    private static final MethodType BATCH_METHOD_TYPE = MethodType.methodType(Object[].class, String.class, Object[][].class);
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+    private static final String INVOCATION_CONTEXT_CLASS = "io.pfunc.bootstrap.PFuncInvocationContext";
+    private static final String SET_CANCELLATION_METHOD = "setCancellation";
+
     private final ClassLoader classLoader;
     private final Class<?> boostrapClass;
     private final Method bootstrapMethod;
+    private final MethodHandle bootstrapHandle;
+    private final MethodHandle batchHandle;
     private final Properties properties;
+    private final PFuncConcurrencyLimiter limiter;
+    private final MethodHandle cancellationHandle;
 
     public PFuncJar(ClassLoader classLoader, Class<?> boostrapClass, Method bootstrapMethod, Properties properties) {
+        this(classLoader, boostrapClass, bootstrapMethod, null, properties);
+    }
+
+    public PFuncJar(ClassLoader classLoader, Class<?> boostrapClass, Method bootstrapMethod, Method batchMethod, Properties properties) {
         this.classLoader = classLoader;
         this.boostrapClass = boostrapClass;
         this.bootstrapMethod = bootstrapMethod;
+        this.bootstrapHandle = linkBootstrapMethod(bootstrapMethod, BOOTSTRAP_METHOD_TYPE);
+        this.batchHandle = batchMethod != null ? linkBootstrapMethod(batchMethod, BATCH_METHOD_TYPE) : null;
         this.properties = properties;
+        this.limiter = createConcurrencyLimiter(boostrapClass.getName(), PropertiesKeys.LIBRARY_CONCURRENCY_LIMIT);
+        this.cancellationHandle = linkCancellation(classLoader);
     }
 
     @Override
@@ -45,6 +75,175 @@ public class PFuncJar {
                 '}';
     }
 
+    /**
+     * Returns true if the library has enabled direct invocation of its target methods, skipping the
+     * bootstrap <code>invoke</code> method
+     */
+    public boolean isDirectInvoke() {
+        return Boolean.parseBoolean(properties.getProperty(PropertiesKeys.DIRECT_INVOKE));
+    }
+
+    /**
+     * Creates the result cache for the given function if it is pure or listed in the <code>cacheFunctions</code>
+     * property of the library, otherwise returns null
+     */
+    public PFuncResultCache createResultCache(PFuncInfo metadata) {
+        if (!metadata.isPure() && !isListed(PropertiesKeys.CACHE_FUNCTIONS, metadata.getName())) {
+            return null;
+        }
+        long maximumSize = getLongProperty(PropertiesKeys.CACHE_MAXIMUM_SIZE, DEFAULT_CACHE_MAXIMUM_SIZE);
+        long expireAfterWriteMillis = getLongProperty(PropertiesKeys.CACHE_EXPIRE_AFTER_WRITE_MILLIS, 0);
+        return new PFuncResultCache(maximumSize, expireAfterWriteMillis);
+    }
+
+    /**
+     * Creates the invocation statistics of the given function unless the library disables them by setting
+     * <code>metricsEnabled</code> to false. The latency of one in <code>metricsLatencySampleInterval</code>
+     * invocations is measured
+     */
+    public PFuncStatistics createStatistics(PFuncInfo metadata) {
+        if ("false".equalsIgnoreCase(properties.getProperty(PropertiesKeys.METRICS_ENABLED))) {
+            return null;
+        }
+        int sampleInterval = (int) getLongProperty(PropertiesKeys.METRICS_LATENCY_SAMPLE_INTERVAL, PFuncStatistics.DEFAULT_LATENCY_SAMPLE_INTERVAL);
+        return new PFuncStatistics(metadata.getName(), Math.max(1, sampleInterval));
+    }
+
+    /**
+     * Returns the bulkhead shared by all the functions of this library or null if the library does not configure
+     * a <code>libraryConcurrencyLimit</code>
+     */
+    public PFuncConcurrencyLimiter getConcurrencyLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Creates the bulkhead for the given function or null if the library does not configure a
+     * <code>functionConcurrencyLimit</code>
+     */
+    public PFuncConcurrencyLimiter createConcurrencyLimiter(PFuncInfo metadata) {
+        return createConcurrencyLimiter(metadata.getName(), PropertiesKeys.FUNCTION_CONCURRENCY_LIMIT);
+    }
+
+    protected PFuncConcurrencyLimiter createConcurrencyLimiter(String name, String limitKey) {
+        int initialLimit = (int) getLongProperty(limitKey, 0);
+        if (initialLimit <= 0) {
+            return null;
+        }
+        int minimumLimit = (int) getLongProperty(PropertiesKeys.CONCURRENCY_MINIMUM_LIMIT, 1);
+        int maximumLimit = (int) getLongProperty(PropertiesKeys.CONCURRENCY_MAXIMUM_LIMIT, Math.max(initialLimit, DEFAULT_CONCURRENCY_MAXIMUM_LIMIT));
+        long maximumWaitMillis = getLongProperty(PropertiesKeys.CONCURRENCY_MAXIMUM_WAIT_MILLIS, 0);
+        int maximumQueued = (int) getLongProperty(PropertiesKeys.CONCURRENCY_MAXIMUM_QUEUED, DEFAULT_CONCURRENCY_MAXIMUM_QUEUED);
+        double latencyTolerance = getDoubleProperty(PropertiesKeys.CONCURRENCY_LATENCY_TOLERANCE, DEFAULT_CONCURRENCY_LATENCY_TOLERANCE);
+        return new PFuncConcurrencyLimiter(name, initialLimit, minimumLimit, maximumLimit, maximumWaitMillis, maximumQueued, latencyTolerance);
+    }
+
+    /**
+     * Returns true if the comma separated list property contains the given name or <code>*</code>
+     */
+    protected boolean isListed(String key, String name) {
+        String value = properties.getProperty(key);
+        if (value != null) {
+            for (String item : value.split(",")) {
+                item = item.trim();
+                if (item.equals(name) || item.equals("*")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    protected long getLongProperty(String key, long defaultValue) {
+        String value = properties.getProperty(key);
+        if (value != null && value.trim().length() > 0) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Ignoring invalid value of " + key + " in " + this + ": " + value);
+            }
+        }
+        return defaultValue;
+    }
+
+    protected double getDoubleProperty(String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value != null && value.trim().length() > 0) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Ignoring invalid value of " + key + " in " + this + ": " + value);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Returns a method handle of type <code>(Object[])Object</code> which invokes the given function
+     * directly on its target method if the library enables direct invocation, otherwise via the bootstrap
+     * class with the function name already bound. Returns null if neither could be linked and
+     * {@link #linkReflectively(String)} must be used instead
+     */
+    public MethodHandle linkFunction(PFuncInfo metadata) {
+        MethodHandle target = linkTarget(metadata);
+        if (target != null) {
+            try {
+                return target.asSpreader(Object[].class, target.type().parameterCount()).asType(INVOKER_TYPE);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, "Could not link " + target + " so using the bootstrap class instead: " + e, e);
+            }
+        }
+        if (bootstrapHandle == null) {
+            return null;
+        }
+        return MethodHandles.insertArguments(bootstrapHandle, 0, metadata.getName());
+    }
+
+    /**
+     * Returns a method handle of type <code>(Object[][])Object[]</code> which invokes the bootstrap
+     * <code>invokeBatch</code> method with the function name already bound, or null if the bootstrap class
+     * does not support batch invocation. The method returns one result per item where an item which failed has its
+     * {@link Throwable} as its result, so a function whose own results may be throwables should not be batched.
+     */
+    public MethodHandle linkBatchFunction(String name) {
+        if (batchHandle == null) {
+            return null;
+        }
+        return MethodHandles.insertArguments(batchHandle, 0, name);
+    }
+
+    /**
+     * Returns a fixed arity method handle of the target method's own type if the library enables direct
+     * invocation and the target method can be linked, otherwise null
+     */
+    public MethodHandle linkTarget(PFuncInfo metadata) {
+        if (!isDirectInvoke()) {
+            return null;
+        }
+        if (metadata.getTarget() != null) {
+            return metadata.getTarget().asFixedArity();
+        }
+        return linkTargetMethod(metadata.getMethod());
+    }
+
+    /**
+     * Returns a method handle of type <code>(Object[])Object</code> which invokes the given function via reflection
+     * on the bootstrap method, for use when the bootstrap method could not be linked
+     */
+    public MethodHandle linkReflectively(String name) {
+        try {
+            MethodHandle invoke = MethodHandles.publicLookup().findVirtual(Method.class, "invoke",
+                    MethodType.methodType(Object.class, Object.class, Object[].class)).asFixedArity().bindTo(bootstrapMethod);
+            MethodHandle bootstrapArguments = MethodHandles.insertArguments(invoke, 0, (Object) null).asCollector(Object[].class, 2);
+            return MethodHandles.insertArguments(bootstrapArguments, 0, name).asType(INVOKER_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("Could not find Method.invoke due to " + e, e);
+        }
+    }
+
+    /**
+     * Returns a function which invokes the bootstrap method via reflection
+     */
     public PFunction withName(String name, final PFuncInfo metadata) {
         return new PFunction() {
             @Override
@@ -64,9 +263,9 @@ public class PFuncJar {
                 try {
                     return bootstrapMethod.invoke(null, bootstrapArguments);
                 } catch (IllegalAccessException e) {
-                    throw new IllegalArgumentException("Could not invoke " + bootstrapArguments + " with " + Arrays.asList(bootstrapArguments) + " due to: " + e, e);
+                    throw invocationFailed(name, arguments, e);
                 } catch (InvocationTargetException e) {
-                    throw new IllegalArgumentException("Could not invoke " + bootstrapArguments + " with " + Arrays.asList(bootstrapArguments) + " due to: " + e, e);
+                    throw invocationFailed(name, arguments, e);
                 }
             }
 
@@ -76,4 +275,63 @@ public class PFuncJar {
             }
         };
     }
+
+    /**
+     * Creates the exception thrown when a function invocation fails
+     */
+    protected IllegalArgumentException invocationFailed(String name, Object[] arguments, Throwable e) {
+        return new IllegalArgumentException("Could not invoke " + name + " with " + Arrays.asList(arguments) + " due to: " + e, e);
+    }
+
+    /**
+     * Sets the cancellation of the invocation on the current thread which functions in this library can poll via
+     * <code>PFuncInvocationContext.isCancelled()</code>, returning the previous cancellation. Does nothing if the
+     * library does not include the bootstrap invocation context
+     */
+    public BooleanSupplier setCancellation(BooleanSupplier cancellation) {
+        if (cancellationHandle == null) {
+            return null;
+        }
+        try {
+            return (BooleanSupplier) cancellationHandle.invokeExact(cancellation);
+        } catch (Throwable e) {
+            LOGGER.log(Level.FINE, "Could not set the cancellation of " + boostrapClass.getName() + ": " + e, e);
+            return null;
+        }
+    }
+
+    private static MethodHandle linkCancellation(ClassLoader classLoader) {
+        try {
+            Class<?> contextClass = Class.forName(INVOCATION_CONTEXT_CLASS, false, classLoader);
+            return MethodHandles.publicLookup().findStatic(contextClass, SET_CANCELLATION_METHOD,
+                    MethodType.methodType(BooleanSupplier.class, BooleanSupplier.class));
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            LOGGER.log(Level.FINE, "Library does not support cancellation: " + e, e);
+            return null;
+        }
+    }
+
+    private static MethodHandle linkTargetMethod(Method method) {
+        if (method == null || !Modifier.isStatic(method.getModifiers())) {
+            return null;
+        }
+        try {
+            return MethodHandles.publicLookup().unreflect(method).asFixedArity();
+        } catch (IllegalAccessException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not link " + method + " so using the bootstrap class instead: " + e, e);
+            return null;
+        }
+    }
+
+    private static MethodHandle linkBootstrapMethod(Method method, MethodType type) {
+        if (!Modifier.isStatic(method.getModifiers())) {
+            return null;
+        }
+        try {
+            return MethodHandles.publicLookup().unreflect(method).asType(type);
+        } catch (IllegalAccessException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not link " + method + " so using reflection instead: " + e, e);
+            return null;
+        }
+    }
 }
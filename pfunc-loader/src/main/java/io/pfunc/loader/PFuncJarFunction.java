@@ -16,17 +16,102 @@
  */
 package io.pfunc.loader;
 
+import io.pfunc.loader.helpers.FutureHelper;
+import io.pfunc.loader.helpers.StreamHelper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
 /**
  */
 public class PFuncJarFunction implements PFunction {
+    private static final Object[] NO_ARGUMENTS = {};
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+    private static final MethodHandle ENTER_FUSED;
+    private static final MethodHandle EXIT_FUSED;
+    private static final MethodHandle FAIL_FUSED;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            ENTER_FUSED = lookup.findVirtual(PFuncJarFunction.class, "enterFused", MethodType.methodType(void.class));
+            EXIT_FUSED = lookup.findVirtual(PFuncJarFunction.class, "exitFused", MethodType.methodType(void.class));
+            FAIL_FUSED = lookup.findVirtual(PFuncJarFunction.class, "failFused", MethodType.methodType(void.class, Throwable.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final PFuncContext context;
     private final PFuncInfo metadata;
     private final PFuncJar jar;
-    private final PFunction delegate;
+    private final MethodHandle invoker;
+    private final MethodHandle batchInvoker;
+    private final boolean streaming;
+    private final PFuncResultCache cache;
+    private final PFuncConcurrencyLimiter limiter;
+    private final PFuncConcurrencyLimiter jarLimiter;
+    private final PFuncStatistics statistics;
+    // counts the running invocations when there are no statistics to derive them from
+    private final LongAdder inFlight;
+    private final PFuncArgumentConverter converter;
+    private final boolean linked;
+
+    // specialised invokers which are only linked when the target method is invoked directly
+    private final MethodHandle invoker0;
+    private final MethodHandle invoker1;
+    private final MethodHandle invoker2;
+    private final MethodHandle intInvoker;
+    private final MethodHandle longInvoker;
+    private final MethodHandle doubleInvoker;
+    private final MethodHandle intUnaryInvoker;
+    private final MethodHandle longUnaryInvoker;
+    private final MethodHandle doubleUnaryInvoker;
 
     public PFuncJarFunction(PFuncInfo metadata, PFuncJar jar) {
+        this(null, metadata, jar);
+    }
+
+    public PFuncJarFunction(PFuncContext context, PFuncInfo metadata, PFuncJar jar) {
+        this.context = context;
         this.metadata = metadata;
         this.jar = jar;
-        this.delegate = jar.withName(metadata.getName(), metadata);
+        MethodHandle linkedInvoker = jar.linkFunction(metadata);
+        this.linked = linkedInvoker != null;
+        this.invoker = linked ? linkedInvoker : jar.linkReflectively(metadata.getName());
+        this.batchInvoker = jar.linkBatchFunction(metadata.getName());
+        this.streaming = StreamHelper.isStreamingType(metadata.getReturnType());
+        this.cache = jar.createResultCache(metadata);
+        this.limiter = jar.createConcurrencyLimiter(metadata);
+        this.jarLimiter = jar.getConcurrencyLimiter();
+        this.statistics = jar.createStatistics(metadata);
+        this.inFlight = statistics == null ? new LongAdder() : null;
+        this.converter = PFuncArgumentConverter.create(metadata);
+
+        // cached functions are always invoked via invoke(Object...) so that the cache is used
+        MethodHandle target = cache == null ? jar.linkTarget(metadata) : null;
+        int arity = target != null ? target.type().parameterCount() : -1;
+        MethodHandle spreader = target != null ? target.asSpreader(Object[].class, arity) : null;
+        this.invoker0 = arity == 0 ? asInvoker(target, MethodType.genericMethodType(0)) : null;
+        this.invoker1 = arity == 1 ? asInvoker(target, MethodType.genericMethodType(1)) : null;
+        this.invoker2 = arity == 2 ? asInvoker(target, MethodType.genericMethodType(2)) : null;
+        this.intInvoker = asInvoker(spreader, MethodType.methodType(int.class, Object[].class));
+        this.longInvoker = asInvoker(spreader, MethodType.methodType(long.class, Object[].class));
+        this.doubleInvoker = asInvoker(spreader, MethodType.methodType(double.class, Object[].class));
+        this.intUnaryInvoker = arity == 1 ? asInvoker(target, MethodType.methodType(int.class, int.class)) : null;
+        this.longUnaryInvoker = arity == 1 ? asInvoker(target, MethodType.methodType(long.class, long.class)) : null;
+        this.doubleUnaryInvoker = arity == 1 ? asInvoker(target, MethodType.methodType(double.class, double.class)) : null;
     }
 
     @Override
@@ -38,13 +123,794 @@ public class PFuncJarFunction implements PFunction {
         return jar;
     }
 
+    /**
+     * Returns true if this function is invoked via a linked method handle rather than reflection
+     */
+    public boolean isLinked() {
+        return linked;
+    }
+
+    /**
+     * Returns true if the function returns a type such as a reactive publisher, observable or future whose
+     * results are streamed by {@link #invokeStream(Object...)}
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     @Override
     public String toString() {
         return "PFuncJarFunction{" + metadata.getName() + "() in " + jar + "}";
     }
 
+    /**
+     * Returns the cache of results if this function is pure or configured to be cached, otherwise null
+     */
+    public PFuncResultCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the bulkhead of this function or null if its concurrency is not limited
+     */
+    public PFuncConcurrencyLimiter getConcurrencyLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Returns the invocation statistics of this function or null if the library disables them
+     */
+    public PFuncStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns the number of invocations which are currently running, excluding any which have timed out
+     */
+    public long getInFlight() {
+        return statistics != null ? statistics.getInFlight() : inFlight.sum();
+    }
+
+    /**
+     * Returns a method handle of the target method which records each invocation in the statistics and in flight
+     * count of this function if it can be fused with other functions because it is invoked directly without any
+     * caching or bulkheads, otherwise null. The latency of fused invocations is not sampled.
+     */
+    MethodHandle getFusibleTarget() {
+        if (cache != null || limiter != null || jarLimiter != null) {
+            return null;
+        }
+        MethodHandle target = jar.linkTarget(metadata);
+        if (target == null) {
+            return null;
+        }
+        Class<?> returnType = target.type().returnType();
+        MethodHandle exit = EXIT_FUSED.bindTo(this);
+        MethodHandle answer = MethodHandles.filterReturnValue(target, returnType == void.class
+                ? exit : MethodHandles.foldArguments(MethodHandles.identity(returnType), exit));
+        MethodHandle failed = MethodHandles.foldArguments(MethodHandles.throwException(returnType, Throwable.class),
+                FAIL_FUSED.bindTo(this));
+        answer = MethodHandles.catchException(answer, Throwable.class,
+                MethodHandles.dropArguments(failed, 1, target.type().parameterList()));
+        return MethodHandles.foldArguments(answer, ENTER_FUSED.bindTo(this));
+    }
+
+    private void enterFused() {
+        if (statistics != null) {
+            statistics.enter();
+        } else {
+            inFlight.increment();
+        }
+    }
+
+    private void exitFused() {
+        if (statistics != null) {
+            statistics.exit(false);
+        } else {
+            inFlight.decrement();
+        }
+    }
+
+    private void failFused(Throwable e) {
+        if (statistics != null) {
+            statistics.exit(true);
+        } else {
+            inFlight.decrement();
+        }
+    }
+
     @Override
     public Object invoke(Object... arguments) {
-        return delegate.invoke(arguments);
+        return invokeWith(arguments, null);
+    }
+
+    private Object invokeWith(Object[] arguments, Invocation invocation) {
+        if (arguments == null) {
+            arguments = NO_ARGUMENTS;
+        } else if (converter != null) {
+            arguments = convert(arguments);
+        }
+        if (cache == null) {
+            return invokeTarget(arguments, invocation);
+        }
+        Object result = cache.get(arguments);
+        if (result == PFuncResultCache.MISSING) {
+            result = invokeTarget(arguments, invocation);
+            cache.put(arguments, result);
+        }
+        return result;
+    }
+
+    private Object invokeTarget(Object[] arguments, Invocation invocation) {
+        long start = enter();
+        if (invocation == null) {
+            boolean failed = true;
+            try {
+                Object answer = (Object) invoker.invokeExact(arguments);
+                failed = false;
+                return answer;
+            } catch (Throwable e) {
+                throw jar.invocationFailed(metadata.getName(), arguments, e);
+            } finally {
+                exit(start, failed);
+            }
+        }
+        if (!invocation.start(start == NOT_TIMED ? System.nanoTime() : start)) {
+            exit(start, true);
+            throw new PFuncTimeoutException("Invocation of " + metadata.getName() + " timed out before it started");
+        }
+        BooleanSupplier previousCancellation = jar.setCancellation(invocation);
+        boolean failed = true;
+        try {
+            Object answer = (Object) invoker.invokeExact(arguments);
+            failed = false;
+            return answer;
+        } catch (Throwable e) {
+            throw jar.invocationFailed(metadata.getName(), arguments, e);
+        } finally {
+            jar.setCancellation(previousCancellation);
+            // if the invocation timed out its bulkheads have already been released
+            if (invocation.complete()) {
+                exit(start, failed);
+            }
+        }
+    }
+
+    @Override
+    public Object invoke0() {
+        if (invoker0 == null) {
+            return invoke();
+        }
+        long start = enter();
+        boolean failed = true;
+        try {
+            Object answer = (Object) invoker0.invokeExact();
+            failed = false;
+            return answer;
+        } catch (Throwable e) {
+            throw jar.invocationFailed(metadata.getName(), NO_ARGUMENTS, e);
+        } finally {
+            exit(start, failed);
+        }
+    }
+
+    @Override
+    public Object invoke1(Object argument) {
+        if (invoker1 == null) {
+            return invoke(argument);
+        }
+        if (converter != null) {
+            argument = convert(0, argument);
+        }
+        long start = enter();
+        boolean failed = true;
+        try {
+            Object answer = (Object) invoker1.invokeExact(argument);
+            failed = false;
+            return answer;
+        } catch (Throwable e) {
+            throw jar.invocationFailed(metadata.getName(), new Object[]{argument}, e);
+        } finally {
+            exit(start, failed);
+        }
+    }
+
+    @Override
+    public Object invoke2(Object argument1, Object argument2) {
+        if (invoker2 == null) {
+            return invoke(argument1, argument2);
+        }
+        if (converter != null) {
+            argument1 = convert(0, argument1);
+            argument2 = convert(1, argument2);
+        }
+        long start = enter();
+        boolean failed = true;
+        try {
+            Object answer = (Object) invoker2.invokeExact(argument1, argument2);
+            failed = false;
+            return answer;
+        } catch (Throwable e) {
+            throw jar.invocationFailed(metadata.getName(), new Object[]{argument1, argument2}, e);
+        } finally {
+            exit(start, failed);
+        }
+    }
+
+    @Override
+    public int invokeInt(Object... arguments) {
+        if (intInvoker == null || arguments == null) {
+            return PFunction.super.invokeInt(arguments);
+        }
+        if (converter != null) {
+            arguments = convert(arguments);
+        }
+        long start = enter();
+        boolean failed = true;
+        try {
+            int answer = (int) intInvoker.invokeExact(arguments);
+            failed = false;
+            return answer;
+        } catch (Throwable e) {
+            throw jar.invocationFailed(metadata.getName(), arguments, e);
+        } finally {
+            exit(start, failed);
+        }
+    }
+
+    @Override
+    public int invokeInt(int argument) {
+        if (intUnaryInvoker == null) {
+            return PFunction.super.invokeInt(argument);
+        }
+        long start = enter();
+        boolean failed = true;
+        try {
+            int answer = (int) intUnaryInvoker.invokeExact(argument);
+            failed = false;
+            return answer;
+        } catch (Throwable e) {
+            throw jar.invocationFailed(metadata.getName(), new Object[]{argument}, e);
+        } finally {
+            exit(start, failed);
+        }
+    }
+
+    @Override
+    public long invokeLong(Object... arguments) {
+        if (longInvoker == null || arguments == null) {
+            return PFunction.super.invokeLong(arguments);
+        }
+        if (converter != null) {
+            arguments = convert(arguments);
+        }
+        long start = enter();
+        boolean failed = true;
+        try {
+            long answer = (long) longInvoker.invokeExact(arguments);
+            failed = false;
+            return answer;
+        } catch (Throwable e) {
+            throw jar.invocationFailed(metadata.getName(), arguments, e);
+        } finally {
+            exit(start, failed);
+        }
+    }
+
+    @Override
+    public long invokeLong(long argument) {
+        if (longUnaryInvoker == null) {
+            return PFunction.super.invokeLong(argument);
+        }
+        long start = enter();
+        boolean failed = true;
+        try {
+            long answer = (long) longUnaryInvoker.invokeExact(argument);
+            failed = false;
+            return answer;
+        } catch (Throwable e) {
+            throw jar.invocationFailed(metadata.getName(), new Object[]{argument}, e);
+        } finally {
+            exit(start, failed);
+        }
+    }
+
+    @Override
+    public double invokeDouble(Object... arguments) {
+        if (doubleInvoker == null || arguments == null) {
+            return PFunction.super.invokeDouble(arguments);
+        }
+        if (converter != null) {
+            arguments = convert(arguments);
+        }
+        long start = enter();
+        boolean failed = true;
+        try {
+            double answer = (double) doubleInvoker.invokeExact(arguments);
+            failed = false;
+            return answer;
+        } catch (Throwable e) {
+            throw jar.invocationFailed(metadata.getName(), arguments, e);
+        } finally {
+            exit(start, failed);
+        }
+    }
+
+    @Override
+    public double invokeDouble(double argument) {
+        if (doubleUnaryInvoker == null) {
+            return PFunction.super.invokeDouble(argument);
+        }
+        long start = enter();
+        boolean failed = true;
+        try {
+            double answer = (double) doubleUnaryInvoker.invokeExact(argument);
+            failed = false;
+            return answer;
+        } catch (Throwable e) {
+            throw jar.invocationFailed(metadata.getName(), new Object[]{argument}, e);
+        } finally {
+            exit(start, failed);
+        }
+    }
+
+    /**
+     * Invokes the function on the executor of the context
+     */
+    @Override
+    public CompletableFuture<Object> invokeAsync(Object... arguments) {
+        if (context == null) {
+            return PFunction.super.invokeAsync(arguments);
+        }
+        return FutureHelper.invokeAsync(this, arguments, context.getExecutor());
+    }
+
+    /**
+     * Invokes the function on the executor of the context enforcing the deadline of the options with the shared
+     * {@link PFuncTimer}. When the deadline passes the returned future fails straight away with a
+     * {@link PFuncTimeoutException}, the bulkheads of the invocation are released and the function is cancelled
+     * by interrupting its thread and via the invocation context it can poll.
+     */
+    @Override
+    public CompletableFuture<Object> invokeAsyncWithOptions(PFuncInvocationOptions options, Object... arguments) {
+        if (!options.hasTimeout()) {
+            return invokeAsync(arguments);
+        }
+        CompletableFuture<Object> answer = new CompletableFuture<>();
+        Invocation invocation = new Invocation(options.isInterrupt());
+        PFuncTimer.Timeout timeout = PFuncTimer.getDefault().schedule(() -> timedOut(invocation, answer, options),
+                options.getTimeoutNanos(), TimeUnit.NANOSECONDS);
+        answer.whenComplete((value, e) -> timeout.cancel());
+        Executor executor = context != null ? context.getExecutor() : ForkJoinPool.commonPool();
+        try {
+            executor.execute(() -> {
+                if (answer.isDone()) {
+                    return;
+                }
+                // once timed out the timer completes the future
+                try {
+                    Object result = invokeWith(arguments, invocation);
+                    if (!invocation.isTimedOut()) {
+                        FutureHelper.complete(answer, result);
+                    }
+                } catch (Throwable e) {
+                    if (!invocation.isTimedOut()) {
+                        answer.completeExceptionally(e);
+                    }
+                } finally {
+                    invocation.finish();
+                }
+            });
+        } catch (RuntimeException e) {
+            answer.completeExceptionally(e);
+        }
+        return answer;
+    }
+
+    private void timedOut(Invocation invocation, CompletableFuture<Object> future, PFuncInvocationOptions options) {
+        if (future.isDone()) {
+            return;
+        }
+        boolean running = invocation.cancel();
+        if (!invocation.isTimedOut()) {
+            // the invocation completed first so completes the future itself
+            return;
+        }
+        if (running) {
+            exitTimedOut(invocation.startTime);
+        }
+        if (statistics != null) {
+            statistics.timedOut();
+        }
+        long timeoutMillis = TimeUnit.NANOSECONDS.toMillis(options.getTimeoutNanos());
+        future.completeExceptionally(new PFuncTimeoutException("Invocation of " + metadata.getName()
+                + " timed out after " + timeoutMillis + "ms"));
+    }
+
+    /**
+     * Streams the results of the function using the executor and buffer size of the context
+     */
+    @Override
+    public PFuncFlow.Publisher<Object> invokeStream(Object... arguments) {
+        if (context == null) {
+            return PFunction.super.invokeStream(arguments);
+        }
+        return StreamHelper.invokeStream(this, arguments, context.getExecutor(), context.getStreamBufferSize());
+    }
+
+    /**
+     * Invokes the whole batch in a single call if the bootstrap class implements <code>invokeBatch</code>,
+     * where any item result which is a {@link Throwable} is treated as the failure of that item, see
+     * {@link PFuncJar#linkBatchFunction(String)}. Otherwise each item is invoked in turn.
+     * <p>
+     * Each item is counted as a call and takes a permit from the bulkheads like any other invocation, so when
+     * the bulkheads cannot admit the whole batch at once it is passed to the library in chunks of the permits
+     * available. Items which are rejected by the bulkheads fail with a {@link RejectedExecutionException}.
+     */
+    @Override
+    public PFuncBatchResult invokeBatch(List<Object[]> arguments) {
+        if (batchInvoker == null) {
+            return PFunction.super.invokeBatch(arguments);
+        }
+        Object[][] batch = arguments.toArray(new Object[arguments.size()][]);
+        PFuncBatchResult answer = new PFuncBatchResult(batch.length);
+        // the positions in the answer of the items passed to the library if some could not be converted
+        int[] indexes = null;
+        if (converter != null) {
+            int count = 0;
+            for (int i = 0; i < batch.length; i++) {
+                try {
+                    Object[] item = batch[i] != null ? convert(batch[i]) : null;
+                    if (indexes != null) {
+                        indexes[count] = i;
+                    }
+                    batch[count++] = item;
+                } catch (PFuncArgumentException e) {
+                    answer.setFailure(i, e);
+                    if (indexes == null) {
+                        indexes = new int[batch.length];
+                        for (int j = 0; j < count; j++) {
+                            indexes[j] = j;
+                        }
+                    }
+                }
+            }
+            if (count < batch.length) {
+                if (count == 0) {
+                    return answer;
+                }
+                Object[][] converted = new Object[count][];
+                System.arraycopy(batch, 0, converted, 0, count);
+                batch = converted;
+            }
+        }
+        int offset = 0;
+        while (offset < batch.length) {
+            long start;
+            try {
+                start = enter();
+            } catch (RejectedExecutionException e) {
+                answer.setFailure(indexes != null ? indexes[offset] : offset, e);
+                for (int i = offset + 1; i < batch.length; i++) {
+                    rejectItem();
+                    answer.setFailure(indexes != null ? indexes[i] : i, e);
+                }
+                break;
+            }
+            int count = 1;
+            while (offset + count < batch.length && tryEnter()) {
+                count++;
+            }
+            invokeChunk(batch, offset, count, start, indexes, answer);
+            offset += count;
+        }
+        return answer;
+    }
+
+    /**
+     * Invokes the given items of the batch in a single call to the library once they have been entered, exiting
+     * each of them as its own call
+     */
+    private void invokeChunk(Object[][] batch, int offset, int count, long start, int[] indexes, PFuncBatchResult answer) {
+        Object[][] chunk = batch;
+        if (offset > 0 || count < batch.length) {
+            chunk = new Object[count][];
+            System.arraycopy(batch, offset, chunk, 0, count);
+        }
+        Object[] results;
+        try {
+            results = (Object[]) batchInvoker.invokeExact(chunk);
+        } catch (Throwable e) {
+            IllegalArgumentException failure = new IllegalArgumentException("Could not invoke batch of " + count
+                    + " calls to " + metadata.getName() + " due to: " + e, e);
+            for (int i = 0; i < count; i++) {
+                exit(start, true);
+                answer.setFailure(indexes != null ? indexes[offset + i] : offset + i, failure);
+            }
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int index = indexes != null ? indexes[offset + i] : offset + i;
+            Object result = results != null && i < results.length ? results[i] : null;
+            if (result instanceof Throwable) {
+                exit(start, true);
+                answer.setFailure(index, (Throwable) result);
+            } else {
+                exit(start, false);
+                answer.setResult(index, result);
+            }
+        }
+    }
+
+    /**
+     * Converts the arguments to the parameter types of the function, recording a failed invocation if they cannot
+     * be converted
+     */
+    private Object[] convert(Object[] arguments) {
+        try {
+            return converter.convert(arguments);
+        } catch (PFuncArgumentException e) {
+            if (statistics != null) {
+                statistics.failed();
+            }
+            throw e;
+        }
+    }
+
+    private Object convert(int index, Object argument) {
+        try {
+            return converter.convert(index, argument);
+        } catch (PFuncArgumentException e) {
+            if (statistics != null) {
+                statistics.failed();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Records the start of an invocation and acquires the bulkheads of the function and its library, returning the
+     * start time of the invocation or {@link #NOT_TIMED} if its latency is not needed
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if a concurrency limit has been reached
+     */
+    private long enter() {
+        if (statistics != null) {
+            statistics.enter();
+        } else {
+            inFlight.increment();
+        }
+        if (jarLimiter != null || limiter != null) {
+            try {
+                acquire();
+            } catch (RuntimeException e) {
+                if (statistics != null) {
+                    statistics.rejected();
+                } else {
+                    inFlight.decrement();
+                }
+                throw e;
+            }
+            return System.nanoTime();
+        }
+        if (statistics != null && statistics.isLatencySampled()) {
+            return System.nanoTime();
+        }
+        return NOT_TIMED;
+    }
+
+    /**
+     * Records the start of another item of a batch if the bulkheads have a permit available without waiting
+     */
+    private boolean tryEnter() {
+        if (jarLimiter != null && !jarLimiter.tryAcquire()) {
+            return false;
+        }
+        if (limiter != null && !limiter.tryAcquire()) {
+            if (jarLimiter != null) {
+                jarLimiter.release();
+            }
+            return false;
+        }
+        if (statistics != null) {
+            statistics.enter();
+        } else {
+            inFlight.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Records an item of a batch which was rejected by the bulkheads without being invoked
+     */
+    private void rejectItem() {
+        if (statistics != null) {
+            statistics.enter();
+            statistics.rejected();
+        }
+    }
+
+    private void acquire() {
+        if (jarLimiter != null) {
+            jarLimiter.acquire();
+        }
+        if (limiter != null) {
+            try {
+                limiter.acquire();
+            } catch (RuntimeException e) {
+                if (jarLimiter != null) {
+                    jarLimiter.release();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Records the completion of an invocation and releases the bulkheads. Failed invocations are not sampled by the
+     * bulkheads so that fast failures do not skew their latency baseline
+     */
+    private void exit(long start, boolean failed) {
+        if (start == NOT_TIMED) {
+            if (statistics != null) {
+                statistics.exit(failed);
+            } else {
+                inFlight.decrement();
+            }
+            return;
+        }
+        long latency = System.nanoTime() - start;
+        if (statistics != null) {
+            // invocations are always timed when there is a bulkhead so only record a sample of them like the others
+            if ((limiter == null && jarLimiter == null) || statistics.isLatencySampled()) {
+                statistics.exit(latency, failed);
+            } else {
+                statistics.exit(failed);
+            }
+        } else {
+            inFlight.decrement();
+        }
+        if (limiter != null) {
+            if (failed) {
+                limiter.release();
+            } else {
+                limiter.release(latency);
+            }
+        }
+        if (jarLimiter != null) {
+            if (failed) {
+                jarLimiter.release();
+            } else {
+                jarLimiter.release(latency);
+            }
+        }
+    }
+
+    /**
+     * Releases the bulkheads of an invocation which has timed out while it is still running, sampling the latency
+     * so that the concurrency limits back off
+     */
+    private void exitTimedOut(long start) {
+        long latency = System.nanoTime() - start;
+        if (statistics != null) {
+            // every invocation with a deadline is timed so only record a sample of them
+            if (statistics.isLatencySampled()) {
+                statistics.exit(latency, true);
+            } else {
+                statistics.exit(true);
+            }
+        } else {
+            inFlight.decrement();
+        }
+        if (limiter != null) {
+            limiter.release(latency);
+        }
+        if (jarLimiter != null) {
+            jarLimiter.release(latency);
+        }
+    }
+
+    /**
+     * Adapts the handle to the given type or returns null if the target signature cannot be converted to it
+     */
+    private static MethodHandle asInvoker(MethodHandle handle, MethodType type) {
+        if (handle == null) {
+            return null;
+        }
+        try {
+            return handle.asType(type);
+        } catch (WrongMethodTypeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The state of an invocation with a deadline which is shared between the thread invoking the function and the
+     * timer, so that exactly one of them releases the bulkheads of the invocation
+     */
+    private static class Invocation implements BooleanSupplier {
+        private static final int NEW = 0;
+        private static final int RUNNING = 1;
+        private static final int COMPLETED = 2;
+        private static final int TIMED_OUT = 3;
+
+        private final AtomicInteger state = new AtomicInteger(NEW);
+        private final boolean interrupt;
+        private volatile long startTime;
+        private Thread thread;
+
+        Invocation(boolean interrupt) {
+            this.interrupt = interrupt;
+        }
+
+        /**
+         * Returns true if the invocation has been cancelled which functions can poll via the invocation context
+         */
+        @Override
+        public boolean getAsBoolean() {
+            return isTimedOut();
+        }
+
+        boolean isTimedOut() {
+            return state.get() == TIMED_OUT;
+        }
+
+        /**
+         * Marks the invocation as running on the current thread returning false if it has already timed out
+         */
+        boolean start(long startTime) {
+            this.startTime = startTime;
+            synchronized (this) {
+                thread = Thread.currentThread();
+            }
+            return state.compareAndSet(NEW, RUNNING);
+        }
+
+        /**
+         * Marks the invocation as completed returning false if it timed out first
+         */
+        boolean complete() {
+            return state.compareAndSet(RUNNING, COMPLETED);
+        }
+
+        /**
+         * Cancels the invocation interrupting its thread if it is running, returning true if it was running
+         */
+        boolean cancel() {
+            while (true) {
+                int current = state.get();
+                if (current == RUNNING) {
+                    if (state.compareAndSet(RUNNING, TIMED_OUT)) {
+                        if (interrupt) {
+                            synchronized (this) {
+                                if (thread != null) {
+                                    thread.interrupt();
+                                }
+                            }
+                        }
+                        return true;
+                    }
+                } else if (current == NEW) {
+                    if (state.compareAndSet(NEW, TIMED_OUT)) {
+                        return false;
+                    }
+                } else {
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Called once the task has finished with the thread, clearing any interrupt raised by a cancellation so it
+         * does not leak into the next task run by the thread
+         */
+        void finish() {
+            synchronized (this) {
+                thread = null;
+            }
+            if (state.get() == TIMED_OUT) {
+                Thread.interrupted();
+            }
+        }
     }
 }
@@ -0,0 +1,155 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size log-linear histogram of latencies in nanoseconds. Each power of two is split into 8 linear
+ * buckets giving a relative error of at most 12.5% from zero up to the maximum trackable value, above which values
+ * are recorded in the last bucket. Recording never allocates or locks.
+ */
+public class PFuncLatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAXIMUM_EXPONENT = 40;
+    private static final int BUCKET_COUNT = (MAXIMUM_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    public static final long MAXIMUM_TRACKABLE_NANOS = (1L << (MAXIMUM_EXPONENT + 1)) - 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maximumNanos = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.getAndIncrement(bucketIndex(nanos));
+        totalNanos.add(nanos);
+        maximumNanos.accumulate(nanos);
+    }
+
+    /**
+     * Returns the number of recorded values
+     */
+    public long getCount() {
+        long answer = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            answer += buckets.get(i);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the number of recorded values which are less than the given value. This is exact when the value is
+     * a power of two
+     */
+    public long getCountBelow(long nanos) {
+        long answer = 0;
+        for (int i = 0; i < BUCKET_COUNT && bucketUpperBound(i) < nanos; i++) {
+            answer += buckets.get(i);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the number of recorded values which are less than or equal to the given value. This is exact when the
+     * value is one less than a power of two
+     */
+    public long getCountAtOrBelow(long nanos) {
+        long answer = 0;
+        for (int i = 0; i < BUCKET_COUNT && bucketUpperBound(i) <= nanos; i++) {
+            answer += buckets.get(i);
+        }
+        return answer;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaximumNanos() {
+        return maximumNanos.get();
+    }
+
+    public long getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : getTotalNanos() / count;
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing the given percentile of the recorded values or zero if
+     * nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * count));
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return Math.min(bucketUpperBound(i), getMaximumNanos());
+            }
+        }
+        return getMaximumNanos();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        totalNanos.reset();
+        maximumNanos.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncLatencyHistogram{count: " + getCount() + " mean: " + getMeanNanos() + "ns p99: "
+                + getValueAtPercentile(99) + "ns max: " + getMaximumNanos() + "ns}";
+    }
+
+    static int bucketIndex(long nanos) {
+        if (nanos < SUB_BUCKET_COUNT) {
+            return (int) nanos;
+        }
+        if (nanos > MAXIMUM_TRACKABLE_NANOS) {
+            return BUCKET_COUNT - 1;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lower = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
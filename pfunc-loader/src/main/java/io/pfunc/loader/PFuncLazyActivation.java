@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Activates a library registered from its metadata alone the first time one of its functions is invoked, creating
+ * its class loader and loading it into the context in place of its lazy functions. Concurrent first invocations
+ * wait for a single activation. If the activation fails then invocations fail straight away with the same failure
+ * until a retry delay has passed, which doubles after each failed attempt.
+ */
+class PFuncLazyActivation {
+    private static final Logger LOGGER = Logger.getLogger(PFuncLazyActivation.class.getName());
+    private static final long INITIAL_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAXIMUM_RETRY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final PFuncContext context;
+    private final String name;
+    private final Callable<? extends ClassLoader> classLoaderFactory;
+    private volatile PFuncLibrary library;
+    private volatile Map<String, PFunction> functions;
+    private volatile IllegalArgumentException failure;
+    private volatile long retryAtNanos;
+    private long retryNanos = INITIAL_RETRY_NANOS;
+
+    PFuncLazyActivation(PFuncContext context, String name, Callable<? extends ClassLoader> classLoaderFactory) {
+        this.context = context;
+        this.name = name;
+        this.classLoaderFactory = classLoaderFactory;
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncLazyActivation{" + name + "}";
+    }
+
+    /**
+     * Sets the lazy library which is replaced when this activation completes
+     */
+    void setLibrary(PFuncLibrary library) {
+        this.library = library;
+    }
+
+    boolean isActivated() {
+        return functions != null;
+    }
+
+    /**
+     * Returns the activated function with the name and parameter types of the given metadata, activating the library
+     * if required, or null if the activated library does not have the function. If the parameter types of the
+     * metadata could not all be resolved then the only activated function with the same name is used
+     */
+    PFunction getFunction(PFuncInfo metadata) {
+        Map<String, PFunction> answer = functions;
+        if (answer == null) {
+            checkRetry();
+            answer = activate();
+        }
+        PFunction function = answer.get(signature(metadata));
+        if (function == null) {
+            function = answer.get(metadata.getName());
+        }
+        return function;
+    }
+
+    private static String signature(PFuncInfo metadata) {
+        return metadata.getName() + Arrays.toString(PFuncOverloads.getParameterTypes(metadata));
+    }
+
+    /**
+     * Fails with the last failure to activate the library until it is time to retry the activation
+     */
+    private void checkRetry() {
+        IllegalArgumentException lastFailure = failure;
+        if (lastFailure != null && System.nanoTime() - retryAtNanos < 0) {
+            throw lastFailure;
+        }
+    }
+
+    private synchronized Map<String, PFunction> activate() {
+        Map<String, PFunction> answer = functions;
+        if (answer != null) {
+            return answer;
+        }
+        // another caller may have failed to activate the library while this one was waiting
+        checkRetry();
+        ClassLoader classLoader;
+        try {
+            classLoader = classLoaderFactory.call();
+        } catch (Exception e) {
+            throw activationFailed(e);
+        }
+        PFuncLibrary activated;
+        try {
+            activated = context.activateLibrary(library, classLoader);
+        } catch (Exception e) {
+            closeQuietly(classLoader);
+            throw activationFailed(e);
+        }
+        answer = new HashMap<>();
+        // if the library has been replaced since it was registered the functions now registered are used
+        List<PFunction> activatedFunctions = new ArrayList<>();
+        if (activated != null) {
+            activatedFunctions.addAll(activated.getFunctions());
+        } else {
+            for (PFunction function : context.getSnapshot().getFunctions()) {
+                activatedFunctions.addAll(PFuncOverloads.getOverloads(function));
+            }
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        for (PFunction function : activatedFunctions) {
+            answer.put(signature(function.getMetadata()), function);
+            counts.merge(function.getMetadata().getName(), 1, Integer::sum);
+        }
+        // functions can also be found by name when they are not overloaded
+        for (PFunction function : activatedFunctions) {
+            String functionName = function.getMetadata().getName();
+            if (counts.get(functionName) == 1) {
+                answer.put(functionName, function);
+            }
+        }
+        failure = null;
+        functions = answer;
+        return answer;
+    }
+
+    private IllegalArgumentException activationFailed(Exception e) {
+        IllegalArgumentException answer = new IllegalArgumentException("Could not activate library " + name + " due to " + e, e);
+        retryAtNanos = System.nanoTime() + retryNanos;
+        retryNanos = Math.min(retryNanos * 2, MAXIMUM_RETRY_NANOS);
+        failure = answer;
+        return answer;
+    }
+
+    private void closeQuietly(ClassLoader classLoader) {
+        if (classLoader instanceof Closeable) {
+            try {
+                ((Closeable) classLoader).close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not close the class loader of " + this + " due to " + e, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+/**
+ * A function registered from persisted metadata whose library is only activated when it is first invoked
+ */
+class PFuncLazyFunction extends PFuncDelegateFunction {
+    private final PFuncInfo metadata;
+    private final PFuncLazyActivation activation;
+    private volatile PFunction function;
+
+    PFuncLazyFunction(PFuncInfo metadata, PFuncLazyActivation activation) {
+        this.metadata = metadata;
+        this.activation = activation;
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncLazyFunction{" + metadata.getName() + "}";
+    }
+
+    /**
+     * Returns the metadata of the activated function if the library has been activated, otherwise the persisted
+     * metadata
+     */
+    @Override
+    public PFuncInfo getMetadata() {
+        PFunction answer = function;
+        return answer != null ? answer.getMetadata() : metadata;
+    }
+
+    @Override
+    public PFunction getFunction() {
+        PFunction answer = function;
+        if (answer == null) {
+            answer = activation.getFunction(metadata);
+            if (answer == null) {
+                throw new IllegalArgumentException("No such function: " + metadata.getName()
+                        + " in the activated library " + activation);
+            }
+            function = answer;
+        }
+        return answer;
+    }
+}
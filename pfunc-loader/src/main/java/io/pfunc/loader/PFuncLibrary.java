@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A version of a named library of functions loaded into a {@link PFuncContext} from a class loader which the context
+ * owns. When the library is replaced or unloaded its functions are removed from the registry straight away while
+ * invocations already running finish on the old version; once they have drained the class loader is closed so that
+ * its classes can be garbage collected.
+ */
+public class PFuncLibrary {
+    private static final Logger LOGGER = Logger.getLogger(PFuncLibrary.class.getName());
+    private static final long DRAIN_POLL_MILLIS = 10;
+
+    private final String name;
+    private final long version;
+    private final ClassLoader classLoader;
+    private final List<PFunction> functions;
+    private final CompletableFuture<PFuncLibrary> closed = new CompletableFuture<>();
+
+    PFuncLibrary(String name, long version, ClassLoader classLoader, List<? extends PFunction> functions) {
+        this.name = name;
+        this.version = version;
+        this.classLoader = classLoader;
+        this.functions = Collections.unmodifiableList(new ArrayList<>(functions));
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncLibrary{" + name + " version " + version + "}";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the version of the library which increases each time a library of the same name is loaded
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the class loader of the library or null if it is a lazy library which has not been activated
+     */
+    public ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    /**
+     * Returns the functions registered by this version of the library
+     */
+    public List<PFunction> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * Returns the number of invocations of the functions of this version of the library which are currently running
+     */
+    public long getInFlight() {
+        long answer = 0;
+        for (PFunction function : functions) {
+            if (function instanceof PFuncJarFunction) {
+                answer += ((PFuncJarFunction) function).getInFlight();
+            }
+        }
+        return answer;
+    }
+
+    public boolean isClosed() {
+        return closed.isDone();
+    }
+
+    /**
+     * Returns a future completed once the library has been retired and its class loader closed
+     */
+    public CompletableFuture<PFuncLibrary> whenClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the class loader once the running invocations have finished or the timeout has passed, polling the
+     * in flight count on the shared {@link PFuncTimer} so that no thread waits for them
+     */
+    void retire(long timeoutMillis) {
+        drain(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    private void drain(long deadline) {
+        long inFlight = getInFlight();
+        if (inFlight > 0 && deadline - System.nanoTime() > 0) {
+            PFuncTimer.getDefault().schedule(() -> drain(deadline), DRAIN_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (inFlight > 0) {
+            LOGGER.warning("Closing " + this + " with " + inFlight + " invocations still running");
+        }
+        close();
+    }
+
+    private void close() {
+        if (classLoader instanceof Closeable) {
+            try {
+                ((Closeable) classLoader).close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Could not close the class loader of " + this + " due to " + e, e);
+            }
+        }
+        closed.complete(this);
+    }
+}
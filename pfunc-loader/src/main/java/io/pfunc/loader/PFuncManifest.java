@@ -0,0 +1,196 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The persisted metadata of the functions of libraries keyed by the coordinates of each library so that the functions
+ * can be registered at startup via {@link PFuncContext#loadLazyLibrary(String, List, java.util.concurrent.Callable)}
+ * without resolving or loading the libraries.
+ * <p>
+ * The manifest is stored as a properties file. Types are stored by class name and resolved against a class loader
+ * when the manifest is loaded; types which cannot be resolved without the library are left null until the library
+ * is activated.
+ */
+public class PFuncManifest {
+    private static final String LIBRARY = "library.";
+    private static final String FUNCTION = ".function.";
+    private static final String PARAMETER = ".parameter.";
+    private static final Map<String, Class<?>> PRIMITIVE_TYPES = new HashMap<>();
+
+    static {
+        for (Class<?> type : new Class<?>[]{boolean.class, byte.class, char.class, short.class, int.class, long.class,
+                float.class, double.class, void.class}) {
+            PRIMITIVE_TYPES.put(type.getName(), type);
+        }
+    }
+
+    private final Map<String, List<PFuncInfo>> libraries = new LinkedHashMap<>();
+
+    @Override
+    public String toString() {
+        return "PFuncManifest{" + libraries.keySet() + "}";
+    }
+
+    /**
+     * Loads the manifest returning an empty manifest if the file does not exist
+     */
+    public static PFuncManifest load(File file, ClassLoader classLoader) throws IOException {
+        PFuncManifest answer = new PFuncManifest();
+        if (!file.exists()) {
+            return answer;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        }
+        for (int i = 0; properties.containsKey(LIBRARY + i + ".key"); i++) {
+            String prefix = LIBRARY + i;
+            List<PFuncInfo> functions = new ArrayList<>();
+            for (int j = 0; properties.containsKey(prefix + FUNCTION + j + ".name"); j++) {
+                String functionPrefix = prefix + FUNCTION + j;
+                PFuncInfo info = new PFuncInfo();
+                info.setName(properties.getProperty(functionPrefix + ".name"));
+                info.setDescription(properties.getProperty(functionPrefix + ".description"));
+                info.setReturnType(loadType(properties.getProperty(functionPrefix + ".returnType"), classLoader));
+                info.setPure(Boolean.parseBoolean(properties.getProperty(functionPrefix + ".pure")));
+                List<PFuncParameterInfo> parameters = new ArrayList<>();
+                for (int k = 0; properties.containsKey(functionPrefix + PARAMETER + k + ".type"); k++) {
+                    String parameterPrefix = functionPrefix + PARAMETER + k;
+                    PFuncParameterInfo parameter = new PFuncParameterInfo();
+                    parameter.setName(properties.getProperty(parameterPrefix + ".name"));
+                    parameter.setDescription(properties.getProperty(parameterPrefix + ".description"));
+                    parameter.setType(loadType(properties.getProperty(parameterPrefix + ".type"), classLoader));
+                    parameters.add(parameter);
+                }
+                info.setParameterInfos(parameters.toArray(new PFuncParameterInfo[parameters.size()]));
+                functions.add(info);
+            }
+            answer.libraries.put(properties.getProperty(prefix + ".key"), functions);
+        }
+        return answer;
+    }
+
+    /**
+     * Stores the manifest replacing the file atomically so that concurrent readers never see a partial manifest
+     */
+    public void store(File file) throws IOException {
+        Properties properties = new Properties();
+        int i = 0;
+        for (Map.Entry<String, List<PFuncInfo>> entry : libraries.entrySet()) {
+            String prefix = LIBRARY + i++;
+            properties.setProperty(prefix + ".key", entry.getKey());
+            int j = 0;
+            for (PFuncInfo info : entry.getValue()) {
+                String functionPrefix = prefix + FUNCTION + j++;
+                properties.setProperty(functionPrefix + ".name", info.getName());
+                setOptionalProperty(properties, functionPrefix + ".description", info.getDescription());
+                setOptionalProperty(properties, functionPrefix + ".returnType", typeName(info.getReturnType()));
+                properties.setProperty(functionPrefix + ".pure", Boolean.toString(info.isPure()));
+                PFuncParameterInfo[] parameters = info.getParameterInfos();
+                for (int k = 0; parameters != null && k < parameters.length; k++) {
+                    String parameterPrefix = functionPrefix + PARAMETER + k;
+                    properties.setProperty(parameterPrefix + ".type", typeName(parameters[k].getType()));
+                    setOptionalProperty(properties, parameterPrefix + ".name", parameters[k].getName());
+                    setOptionalProperty(properties, parameterPrefix + ".description", parameters[k].getDescription());
+                }
+            }
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        File tempFile = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile.toPath())) {
+                properties.store(out, "pfunc function metadata");
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Returns the coordinates of the libraries in the manifest
+     */
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(libraries.keySet());
+    }
+
+    /**
+     * Returns the metadata of the functions of the library with the given coordinates or null if it is not in the
+     * manifest
+     */
+    public List<PFuncInfo> getFunctions(String key) {
+        return libraries.get(key);
+    }
+
+    public void setFunctions(String key, List<PFuncInfo> functions) {
+        libraries.put(key, new ArrayList<>(functions));
+    }
+
+    /**
+     * Records the metadata of the functions of the loaded library against the given coordinates
+     */
+    public void setFunctions(String key, PFuncLibrary library) {
+        List<PFuncInfo> functions = new ArrayList<>();
+        for (PFunction function : library.getFunctions()) {
+            functions.add(function.getMetadata());
+        }
+        setFunctions(key, functions);
+    }
+
+    private static void setOptionalProperty(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    private static String typeName(Class<?> type) {
+        return type != null ? type.getName() : "";
+    }
+
+    private static Class<?> loadType(String name, ClassLoader classLoader) {
+        if (name == null || name.length() == 0) {
+            return null;
+        }
+        Class<?> answer = PRIMITIVE_TYPES.get(name);
+        if (answer != null) {
+            return answer;
+        }
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+    }
+}
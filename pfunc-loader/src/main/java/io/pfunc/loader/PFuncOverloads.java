@@ -0,0 +1,435 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The overloads of a function name which have different parameter types. Each invocation selects the overload
+ * whose parameter types accept the classes of the arguments, remembering the last selection so that monomorphic
+ * call sites only compare the class of each argument, and caching other selections by the argument classes in a
+ * small array which is probed without allocating. The overloads invoked with a single primitive argument are
+ * selected once for the wrapper class of the primitive so that the argument is not boxed.
+ * <p>
+ * Instances are immutable; registering or removing an overload creates a new instance.
+ */
+public final class PFuncOverloads implements PFunction {
+    private static final int MAXIMUM_CACHED_SELECTIONS = 64;
+    private static final Class<?>[] NO_CLASSES = {};
+    private static final Object[] NO_ARGUMENTS = {};
+    private static final Selection[] NO_SELECTIONS = {};
+    private static final Class<?>[] INT_CLASSES = {Integer.class};
+    private static final Class<?>[] LONG_CLASSES = {Long.class};
+    private static final Class<?>[] DOUBLE_CLASSES = {Double.class};
+
+    private final String name;
+    private final PFunction[] overloads;
+    private final Class<?>[][] parameterTypes;
+    // copied on write so it can be probed without locking
+    private volatile Selection[] selections = NO_SELECTIONS;
+    // immutable so they can be published without synchronization; a stale value only costs a cache lookup
+    private Selection last;
+    private PFunction intOverload;
+    private PFunction longOverload;
+    private PFunction doubleOverload;
+
+    PFuncOverloads(String name, List<? extends PFunction> overloads) {
+        this.name = name;
+        this.overloads = overloads.toArray(new PFunction[overloads.size()]);
+        this.parameterTypes = new Class<?>[this.overloads.length][];
+        for (int i = 0; i < this.overloads.length; i++) {
+            parameterTypes[i] = getParameterTypes(this.overloads[i].getMetadata());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncOverloads{" + name + " " + getPrototypes() + "}";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the overloads in the order they were registered
+     */
+    public List<PFunction> getOverloads() {
+        return Collections.unmodifiableList(Arrays.asList(overloads));
+    }
+
+    /**
+     * Returns the overload with exactly the given parameter types or null if there is none
+     */
+    public PFunction getOverload(Class<?>... types) {
+        for (int i = 0; i < overloads.length; i++) {
+            if (Arrays.equals(parameterTypes[i], types)) {
+                return overloads[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the metadata of the first overload
+     */
+    @Override
+    public PFuncInfo getMetadata() {
+        return overloads[0].getMetadata();
+    }
+
+    /**
+     * Returns the overload which would be invoked with the given arguments
+     *
+     * @throws PFuncArgumentException if no overload or more than one equally specific overload accepts the arguments
+     */
+    public PFunction select(Object... arguments) {
+        if (arguments == null) {
+            arguments = NO_ARGUMENTS;
+        }
+        Selection selection = last;
+        if (selection != null && selection.matches(arguments)) {
+            return selection.function;
+        }
+        for (Selection cached : selections) {
+            if (cached.matches(arguments)) {
+                last = cached;
+                return cached.function;
+            }
+        }
+        Class<?>[] classes = new Class<?>[arguments.length];
+        for (int i = 0; i < arguments.length; i++) {
+            classes[i] = arguments[i] != null ? arguments[i].getClass() : null;
+        }
+        return selectFor(classes);
+    }
+
+    private PFunction select1(Object argument) {
+        Selection selection = last;
+        if (selection != null && selection.matches(argument)) {
+            return selection.function;
+        }
+        for (Selection cached : selections) {
+            if (cached.matches(argument)) {
+                last = cached;
+                return cached.function;
+            }
+        }
+        return selectFor(new Class<?>[]{argument != null ? argument.getClass() : null});
+    }
+
+    private PFunction selectFor(Class<?>[] classes) {
+        Selection selection = new Selection(classes, resolve(classes));
+        synchronized (this) {
+            Selection[] current = selections;
+            for (Selection cached : current) {
+                if (Arrays.equals(cached.classes, classes)) {
+                    last = cached;
+                    return cached.function;
+                }
+            }
+            if (current.length < MAXIMUM_CACHED_SELECTIONS) {
+                Selection[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = selection;
+                selections = updated;
+            }
+        }
+        last = selection;
+        return selection.function;
+    }
+
+    private PFunction selectInt() {
+        PFunction answer = intOverload;
+        if (answer == null) {
+            intOverload = answer = resolve(INT_CLASSES);
+        }
+        return answer;
+    }
+
+    private PFunction selectLong() {
+        PFunction answer = longOverload;
+        if (answer == null) {
+            longOverload = answer = resolve(LONG_CLASSES);
+        }
+        return answer;
+    }
+
+    private PFunction selectDouble() {
+        PFunction answer = doubleOverload;
+        if (answer == null) {
+            doubleOverload = answer = resolve(DOUBLE_CLASSES);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the most specific overload whose parameters accept the argument classes. If none accept them but
+     * only one overload has the same number of parameters then it is used so that its arguments can be converted
+     */
+    private PFunction resolve(Class<?>[] classes) {
+        List<Integer> applicable = new ArrayList<>();
+        int arityMatch = -1;
+        int arityMatches = 0;
+        for (int i = 0; i < overloads.length; i++) {
+            if (parameterTypes[i].length == classes.length) {
+                arityMatch = i;
+                arityMatches++;
+                if (accepts(parameterTypes[i], classes)) {
+                    applicable.add(i);
+                }
+            }
+        }
+        if (applicable.isEmpty() && arityMatches == 1) {
+            return overloads[arityMatch];
+        }
+        for (int candidate : applicable) {
+            boolean mostSpecific = true;
+            for (int other : applicable) {
+                if (!isMoreSpecific(parameterTypes[candidate], parameterTypes[other])) {
+                    mostSpecific = false;
+                    break;
+                }
+            }
+            if (mostSpecific) {
+                return overloads[candidate];
+            }
+        }
+        throw new PFuncArgumentException((applicable.isEmpty() ? "No" : "More than one") + " overload of " + name
+                + " matches the arguments " + describe(classes) + " from " + getPrototypes());
+    }
+
+    private static boolean accepts(Class<?>[] types, Class<?>[] classes) {
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = types[i];
+            Class<?> argumentClass = classes[i];
+            if (argumentClass == null ? type.isPrimitive() : !PFuncArgumentConverter.wrap(type).isAssignableFrom(argumentClass)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if every parameter type is the same as or a subtype of the other parameter type
+     */
+    private static boolean isMoreSpecific(Class<?>[] types, Class<?>[] otherTypes) {
+        for (int i = 0; i < types.length; i++) {
+            if (!PFuncArgumentConverter.wrap(otherTypes[i]).isAssignableFrom(PFuncArgumentConverter.wrap(types[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String describe(Class<?>[] classes) {
+        List<String> names = new ArrayList<>();
+        for (Class<?> clazz : classes) {
+            names.add(clazz != null ? clazz.getName() : "null");
+        }
+        return names.toString();
+    }
+
+    private List<String> getPrototypes() {
+        List<String> answer = new ArrayList<>();
+        for (PFunction overload : overloads) {
+            answer.add(overload.getMetadata().getPrototype());
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the parameter types of the function, treating unknown types as <code>Object</code>
+     */
+    static Class<?>[] getParameterTypes(PFuncInfo metadata) {
+        PFuncParameterInfo[] parameterInfos = metadata.getParameterInfos();
+        if (parameterInfos == null || parameterInfos.length == 0) {
+            return NO_CLASSES;
+        }
+        Class<?>[] answer = new Class<?>[parameterInfos.length];
+        for (int i = 0; i < answer.length; i++) {
+            Class<?> type = parameterInfos[i] != null ? parameterInfos[i].getType() : null;
+            answer[i] = type != null ? type : Object.class;
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the function itself or its overloads if it is overloaded
+     */
+    static List<PFunction> getOverloads(PFunction function) {
+        if (function instanceof PFuncOverloads) {
+            return ((PFuncOverloads) function).getOverloads();
+        }
+        return Collections.singletonList(function);
+    }
+
+    /**
+     * Returns the overloads with the given function added or null if there is already an overload with the same
+     * parameter types
+     */
+    PFuncOverloads withOverload(PFunction function) {
+        if (getOverload(getParameterTypes(function.getMetadata())) != null) {
+            return null;
+        }
+        List<PFunction> list = new ArrayList<>(Arrays.asList(overloads));
+        list.add(function);
+        return new PFuncOverloads(name, list);
+    }
+
+    /**
+     * Returns the remaining function or overloads once the given function is removed, or null if none remain
+     */
+    PFunction withoutOverload(PFunction function) {
+        List<PFunction> list = new ArrayList<>(Arrays.asList(overloads));
+        if (!list.remove(function)) {
+            return this;
+        }
+        if (list.isEmpty()) {
+            return null;
+        }
+        return list.size() == 1 ? list.get(0) : new PFuncOverloads(name, list);
+    }
+
+    @Override
+    public Object invoke(Object... arguments) {
+        if (arguments == null) {
+            arguments = NO_ARGUMENTS;
+        }
+        return select(arguments).invoke(arguments);
+    }
+
+    @Override
+    public Object invoke0() {
+        return select(NO_ARGUMENTS).invoke0();
+    }
+
+    @Override
+    public Object invoke1(Object argument) {
+        return select1(argument).invoke1(argument);
+    }
+
+    @Override
+    public Object invoke2(Object argument1, Object argument2) {
+        return select(argument1, argument2).invoke2(argument1, argument2);
+    }
+
+    @Override
+    public int invokeInt(Object... arguments) {
+        return select(arguments).invokeInt(arguments);
+    }
+
+    @Override
+    public int invokeInt(int argument) {
+        return selectInt().invokeInt(argument);
+    }
+
+    @Override
+    public long invokeLong(Object... arguments) {
+        return select(arguments).invokeLong(arguments);
+    }
+
+    @Override
+    public long invokeLong(long argument) {
+        return selectLong().invokeLong(argument);
+    }
+
+    @Override
+    public double invokeDouble(Object... arguments) {
+        return select(arguments).invokeDouble(arguments);
+    }
+
+    @Override
+    public double invokeDouble(double argument) {
+        return selectDouble().invokeDouble(argument);
+    }
+
+    /**
+     * Invokes the batch via the selected overload if every item selects the same one, otherwise invokes each item
+     */
+    @Override
+    public PFuncBatchResult invokeBatch(List<Object[]> arguments) {
+        PFunction selected = null;
+        for (Object[] item : arguments) {
+            PFunction function;
+            try {
+                function = select(item);
+            } catch (PFuncArgumentException e) {
+                selected = null;
+                break;
+            }
+            if (selected == null) {
+                selected = function;
+            } else if (selected != function) {
+                selected = null;
+                break;
+            }
+        }
+        if (selected != null) {
+            return selected.invokeBatch(arguments);
+        }
+        return PFunction.super.invokeBatch(arguments);
+    }
+
+    @Override
+    public CompletableFuture<Object> invokeAsync(Object... arguments) {
+        return select(arguments).invokeAsync(arguments);
+    }
+
+    @Override
+    public CompletableFuture<Object> invokeAsyncWithOptions(PFuncInvocationOptions options, Object... arguments) {
+        return select(arguments).invokeAsyncWithOptions(options, arguments);
+    }
+
+    @Override
+    public PFuncFlow.Publisher<Object> invokeStream(Object... arguments) {
+        return select(arguments).invokeStream(arguments);
+    }
+
+    /**
+     * The argument classes of the last invocation and the overload selected for them
+     */
+    private static final class Selection {
+        private final Class<?>[] classes;
+        private final PFunction function;
+
+        Selection(Class<?>[] classes, PFunction function) {
+            this.classes = classes;
+            this.function = function;
+        }
+
+        boolean matches(Object[] arguments) {
+            if (arguments.length != classes.length) {
+                return false;
+            }
+            for (int i = 0; i < arguments.length; i++) {
+                Object argument = arguments[i];
+                if ((argument != null ? argument.getClass() : null) != classes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean matches(Object argument) {
+            return classes.length == 1 && (argument != null ? argument.getClass() : null) == classes[0];
+        }
+    }
+}
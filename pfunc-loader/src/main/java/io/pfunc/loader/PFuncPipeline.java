@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+
+/**
+ * A function which feeds the result of each stage into the next stage. The stages are resolved and type checked
+ * once when the pipeline is created. If every stage can be invoked directly on its target method without any
+ * caching or bulkheads, as is the case by default for the functions of a library built by the annotation
+ * processor, the stages are fused into a single method handle which still counts the invocations, failures and in flight invocations of
+ * each stage but does not sample their latency. Otherwise each stage after the first is invoked via
+ * {@link PFunction#invoke1(Object)} so that no lookups are needed.
+ */
+public class PFuncPipeline implements PFunction {
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private final PFunction[] stages;
+    private final PFunction first;
+    private final PFuncInfo metadata;
+    private final MethodHandle fused;
+    private final MethodHandle fusedInvoker;
+    private final MethodHandle fused1;
+
+    public PFuncPipeline(PFunction... stages) {
+        if (stages == null || stages.length == 0) {
+            throw new IllegalArgumentException("A pipeline needs at least one function");
+        }
+        this.stages = stages.clone();
+        this.first = stages[0];
+        for (int i = 1; i < stages.length; i++) {
+            checkCompatible(stages[i - 1].getMetadata(), stages[i].getMetadata());
+        }
+        this.metadata = createMetadata(this.stages);
+        this.fused = fuse(this.stages);
+        this.fusedInvoker = fused != null
+                ? fused.asSpreader(Object[].class, fused.type().parameterCount()).asType(INVOKER_TYPE) : null;
+        this.fused1 = fused != null && fused.type().parameterCount() == 1
+                ? fused.asType(MethodType.genericMethodType(1)) : null;
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncPipeline{" + metadata.getName() + "}";
+    }
+
+    @Override
+    public PFuncInfo getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Returns true if the stages have been fused into a single method handle
+     */
+    public boolean isFused() {
+        return fused != null;
+    }
+
+    @Override
+    public Object invoke(Object... arguments) {
+        if (fusedInvoker != null) {
+            try {
+                return (Object) fusedInvoker.invokeExact(arguments);
+            } catch (Throwable e) {
+                throw invocationFailed(arguments, e);
+            }
+        }
+        Object result = first.invoke(arguments);
+        for (int i = 1; i < stages.length; i++) {
+            result = stages[i].invoke1(result);
+        }
+        return result;
+    }
+
+    @Override
+    public Object invoke1(Object argument) {
+        if (fused1 != null) {
+            try {
+                return (Object) fused1.invokeExact(argument);
+            } catch (Throwable e) {
+                throw invocationFailed(new Object[]{argument}, e);
+            }
+        }
+        if (fused != null) {
+            return invoke(argument);
+        }
+        Object result = first.invoke1(argument);
+        for (int i = 1; i < stages.length; i++) {
+            result = stages[i].invoke1(result);
+        }
+        return result;
+    }
+
+    private IllegalArgumentException invocationFailed(Object[] arguments, Throwable e) {
+        return new IllegalArgumentException("Could not invoke " + metadata.getName() + " with " + Arrays.asList(arguments) + " due to: " + e, e);
+    }
+
+    /**
+     * Checks that the result of the given function can be passed to the next function
+     */
+    protected static void checkCompatible(PFuncInfo from, PFuncInfo to) {
+        PFuncParameterInfo[] parameterInfos = to.getParameterInfos();
+        if (parameterInfos == null || parameterInfos.length != 1) {
+            throw new IllegalArgumentException("Cannot pipe " + from.getName() + " into " + to.getPrototype()
+                    + " as it does not take a single argument");
+        }
+        Class<?> returnType = from.getReturnType();
+        Class<?> parameterType = parameterInfos[0].getType();
+        if (!isCompatible(returnType, parameterType)) {
+            throw new IllegalArgumentException("Cannot pipe " + from.getName() + " returning " + returnType.getName()
+                    + " into " + to.getPrototype());
+        }
+    }
+
+    /**
+     * Returns true if a value of the given type could be passed as the given parameter type. Reference types are
+     * compatible if either is assignable to the other since values are checked again when invoked.
+     */
+    protected static boolean isCompatible(Class<?> type, Class<?> parameterType) {
+        if (type == null || parameterType == null) {
+            return true;
+        }
+        if (type == void.class) {
+            return false;
+        }
+        if (PFuncArgumentConverter.unwrap(type).isPrimitive() && PFuncArgumentConverter.unwrap(parameterType).isPrimitive()) {
+            return PFuncArgumentConverter.isWideningConversion(type, parameterType);
+        }
+        Class<?> boxedType = PFuncArgumentConverter.wrap(type);
+        Class<?> boxedParameterType = PFuncArgumentConverter.wrap(parameterType);
+        return boxedParameterType.isAssignableFrom(boxedType) || boxedType.isAssignableFrom(boxedParameterType);
+    }
+
+    private static MethodHandle fuse(PFunction[] stages) {
+        MethodHandle answer = null;
+        for (PFunction stage : stages) {
+            if (!(stage instanceof PFuncJarFunction)) {
+                return null;
+            }
+            MethodHandle target = ((PFuncJarFunction) stage).getFusibleTarget();
+            if (target == null) {
+                return null;
+            }
+            if (answer == null) {
+                answer = target;
+            } else {
+                try {
+                    Class<?> resultType = answer.type().returnType();
+                    answer = MethodHandles.filterReturnValue(answer, target.asType(target.type().changeParameterType(0, resultType)));
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            }
+        }
+        return answer;
+    }
+
+    private static PFuncInfo createMetadata(PFunction[] stages) {
+        StringBuilder name = new StringBuilder();
+        for (PFunction stage : stages) {
+            if (name.length() > 0) {
+                name.append(" | ");
+            }
+            name.append(stage.getMetadata().getName());
+        }
+        PFuncInfo firstInfo = stages[0].getMetadata();
+        PFuncInfo lastInfo = stages[stages.length - 1].getMetadata();
+        PFuncInfo answer = new PFuncInfo();
+        answer.setName(name.toString());
+        answer.setDescription("Pipeline of " + name);
+        answer.setParameterInfos(firstInfo.getParameterInfos());
+        answer.setReturnType(lastInfo.getReturnType());
+        return answer;
+    }
+}
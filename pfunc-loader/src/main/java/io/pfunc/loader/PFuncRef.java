@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+/**
+ * A handle to a named function of a {@link PFuncContext} which is resolved once so that hot callers can hoist the
+ * name lookup out of their loops. Each invocation only checks that the registry snapshot it was linked against is
+ * still current; when the functions change, for example because a library is reloaded, the handle transparently
+ * re-links to the function now registered under its name.
+ */
+public class PFuncRef extends PFuncDelegateFunction {
+    private final PFuncContext context;
+    private final String name;
+    // immutable so can be safely read without synchronization
+    private Link link;
+
+    PFuncRef(PFuncContext context, String name) {
+        this.context = context;
+        this.name = name;
+        this.link = relink(context.getSnapshot());
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncRef{" + name + "}";
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the function currently registered under the name of this handle
+     *
+     * @throws IllegalArgumentException if the function is no longer registered
+     */
+    @Override
+    public PFunction getFunction() {
+        Link current = link;
+        PFuncRegistrySnapshot snapshot = context.getSnapshot();
+        if (current.snapshot != snapshot) {
+            current = relink(snapshot);
+            link = current;
+        }
+        return current.function;
+    }
+
+    /**
+     * Returns the version of the registry snapshot the handle is currently linked against
+     */
+    public long getVersion() {
+        return link.snapshot.getVersion();
+    }
+
+    private Link relink(PFuncRegistrySnapshot snapshot) {
+        PFunction function = snapshot.get(name);
+        if (function == null) {
+            throw new IllegalArgumentException("No such function: " + name);
+        }
+        return new Link(snapshot, function);
+    }
+
+    private static class Link {
+        private final PFuncRegistrySnapshot snapshot;
+        private final PFunction function;
+
+        Link(PFuncRegistrySnapshot snapshot, PFunction function) {
+            this.snapshot = snapshot;
+            this.function = function;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable view of the functions registered in a {@link PFuncContext} sorted by name. A new snapshot with a
+ * higher version is published each time functions are added, replaced or removed so that reading the current
+ * snapshot is just a volatile read and consumers can cache views derived from it until the version changes.
+ */
+public final class PFuncRegistrySnapshot {
+    static final PFuncRegistrySnapshot EMPTY = new PFuncRegistrySnapshot(0, Collections.emptyMap());
+
+    private final long version;
+    private final Map<String, PFunction> functionMap;
+    private final Map<String, PFunction> index;
+    private final List<PFunction> functions;
+
+    PFuncRegistrySnapshot(long version, Map<String, ? extends PFunction> functions) {
+        this.version = version;
+        this.functionMap = Collections.unmodifiableMap(new TreeMap<>(functions));
+        this.functions = Collections.unmodifiableList(new ArrayList<>(this.functionMap.values()));
+        this.index = new HashMap<>(functions);
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncRegistrySnapshot{version=" + version + ", size=" + functions.size() + "}";
+    }
+
+    /**
+     * Returns the version of the registry which increases each time the functions change
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the functions keyed and sorted by name
+     */
+    public Map<String, PFunction> getFunctionMap() {
+        return functionMap;
+    }
+
+    /**
+     * Returns the functions sorted by name
+     */
+    public List<PFunction> getFunctions() {
+        return functions;
+    }
+
+    public PFunction get(String name) {
+        return index.get(name);
+    }
+
+    public int size() {
+        return functions.size();
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A bounded cache of the results of a pure function keyed by its arguments. The cache is split into segments which
+ * each evict their least recently used entries so that concurrent callers rarely contend on the same lock.
+ */
+public class PFuncResultCache {
+    /**
+     * Returned by {@link #get(Object[])} when there is no cached result for the arguments
+     */
+    public static final Object MISSING = new Object();
+
+    private static final Object NULL_RESULT = new Object();
+    private static final int MAXIMUM_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final long maximumSize;
+    private final long expireAfterWriteNanos;
+    private final LongSupplier ticker;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache with the given maximum number of entries whose entries expire after the given number of
+     * milliseconds, or never if it is zero
+     */
+    public PFuncResultCache(long maximumSize, long expireAfterWriteMillis) {
+        this(maximumSize, expireAfterWriteMillis, System::nanoTime);
+    }
+
+    /**
+     * Creates a cache which reads the time in nanoseconds from the given ticker when entries expire
+     */
+    PFuncResultCache(long maximumSize, long expireAfterWriteMillis, LongSupplier ticker) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive but was " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.expireAfterWriteNanos = expireAfterWriteMillis * 1000000L;
+        this.ticker = ticker;
+        int segmentCount = 1;
+        while (segmentCount < MAXIMUM_SEGMENTS && segmentCount * 2 <= maximumSize) {
+            segmentCount *= 2;
+        }
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        int segmentSize = (int) Math.min(Integer.MAX_VALUE, (maximumSize + segmentCount - 1) / segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncResultCache{size: " + size() + " hits: " + getHitCount() + " misses: " + getMissCount()
+                + " evictions: " + getEvictionCount() + "}";
+    }
+
+    /**
+     * Returns the cached result for the arguments or {@link #MISSING} if there is none. The arguments are not copied.
+     */
+    public Object get(Object[] arguments) {
+        int hash = Arrays.deepHashCode(arguments);
+        Segment segment = segmentFor(hash);
+        Object value = segment.get(new ArgumentsKey(arguments, hash));
+        if (value == MISSING) {
+            misses.increment();
+            return MISSING;
+        }
+        hits.increment();
+        return value == NULL_RESULT ? null : value;
+    }
+
+    /**
+     * Caches the result for the arguments. The arguments and any arrays nested in them are copied so that the caller
+     * may reuse or modify them without changing the key.
+     */
+    public void put(Object[] arguments, Object result) {
+        int hash = Arrays.deepHashCode(arguments);
+        segmentFor(hash).put(new ArgumentsKey(deepCopy(arguments), hash), result != null ? result : NULL_RESULT);
+    }
+
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long size() {
+        long answer = 0;
+        for (Segment segment : segments) {
+            answer += segment.size();
+        }
+        return answer;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Copies the arguments and, recursively, the arrays they contain as they are compared by value in the keys
+     */
+    private static Object[] deepCopy(Object[] arguments) {
+        Object[] answer = (Object[]) Array.newInstance(arguments.getClass().getComponentType(), arguments.length);
+        for (int i = 0; i < arguments.length; i++) {
+            Object value = arguments[i];
+            answer[i] = value != null && value.getClass().isArray() ? copyArray(value) : value;
+        }
+        return answer;
+    }
+
+    private static Object copyArray(Object array) {
+        if (array instanceof Object[]) {
+            return deepCopy((Object[]) array);
+        }
+        int length = Array.getLength(array);
+        Object answer = Array.newInstance(array.getClass().getComponentType(), length);
+        System.arraycopy(array, 0, answer, 0, length);
+        return answer;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    private final class Segment {
+        private final Map<ArgumentsKey, CacheEntry> map;
+
+        Segment(int capacity) {
+            this.map = new LinkedHashMap<ArgumentsKey, CacheEntry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ArgumentsKey, CacheEntry> eldest) {
+                    if (size() > capacity) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Object get(ArgumentsKey key) {
+            CacheEntry entry = map.get(key);
+            if (entry == null) {
+                return MISSING;
+            }
+            if (expireAfterWriteNanos > 0 && ticker.getAsLong() - entry.writeTime > expireAfterWriteNanos) {
+                map.remove(key);
+                evictions.increment();
+                return MISSING;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(ArgumentsKey key, Object value) {
+            map.put(key, new CacheEntry(value, expireAfterWriteNanos > 0 ? ticker.getAsLong() : 0));
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+
+    private static final class CacheEntry {
+        private final Object value;
+        private final long writeTime;
+
+        CacheEntry(Object value, long writeTime) {
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+    }
+
+    /**
+     * Wraps the argument array with its precomputed deep hash code
+     */
+    private static final class ArgumentsKey {
+        private final Object[] arguments;
+        private final int hash;
+
+        ArgumentsKey(Object[] arguments, int hash) {
+            this.arguments = arguments;
+            this.hash = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ArgumentsKey)) {
+                return false;
+            }
+            ArgumentsKey that = (ArgumentsKey) obj;
+            return hash == that.hash && Arrays.deepEquals(arguments, that.arguments);
+        }
+    }
+}
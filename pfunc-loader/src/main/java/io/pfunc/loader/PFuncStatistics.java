@@ -0,0 +1,189 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The invocation statistics of a function. Counters are striped so that recording from many threads does not
+ * contend. Reading the clock costs more than the rest of the recording so latency is only measured for a random
+ * sample of the invocations, one in {@link #getLatencySampleInterval()} on average. The counts of the
+ * {@link #getLatency()} histogram are therefore of the sampled invocations only.
+ */
+public class PFuncStatistics implements PFuncStatisticsMXBean {
+    public static final int DEFAULT_LATENCY_SAMPLE_INTERVAL = 16;
+
+    private final String name;
+    private final int latencySampleMask;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder entered = new LongAdder();
+    private final PFuncLatencyHistogram latency = new PFuncLatencyHistogram();
+
+    public PFuncStatistics(String name) {
+        this(name, DEFAULT_LATENCY_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Creates the statistics of the given function with the latency sample interval rounded up to a power of two
+     */
+    public PFuncStatistics(String name, int latencySampleInterval) {
+        if (latencySampleInterval < 1) {
+            throw new IllegalArgumentException("Invalid latency sample interval for " + name + ": " + latencySampleInterval);
+        }
+        this.name = name;
+        this.latencySampleMask = latencySampleInterval == 1 ? 0 : Integer.highestOneBit(latencySampleInterval - 1) * 2 - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncStatistics{" + name + " calls: " + getCallCount() + " errors: " + getErrorCount()
+                + " inFlight: " + getInFlight() + " latency: " + latency + "}";
+    }
+
+    /**
+     * Records the start of an invocation
+     */
+    public void enter() {
+        entered.increment();
+    }
+
+    /**
+     * Returns true if the latency of the current invocation should be measured
+     */
+    public boolean isLatencySampled() {
+        return latencySampleMask == 0 || (ThreadLocalRandom.current().nextInt() & latencySampleMask) == 0;
+    }
+
+    /**
+     * Records the completion of an invocation started with {@link #enter()}
+     */
+    public void exit(boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * Records the completion of an invocation started with {@link #enter()} whose latency was sampled
+     */
+    public void exit(long latencyNanos, boolean failed) {
+        exit(failed);
+        latency.record(latencyNanos);
+    }
+
+    /**
+     * Records an invocation which failed before it started such as when its arguments could not be converted.
+     * The invocation is counted as entered too so that it does not reduce the number in flight
+     */
+    public void failed() {
+        entered.increment();
+        calls.increment();
+        errors.increment();
+    }
+
+    /**
+     * Records that an invocation started with {@link #enter()} was rejected by a concurrency limit
+     */
+    public void rejected() {
+        rejected.increment();
+    }
+
+    /**
+     * Records that an invocation did not complete before its deadline
+     */
+    public void timedOut() {
+        timeouts.increment();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Returns the number of invocations in progress which is derived from the other counters so that it costs
+     * nothing extra to record
+     */
+    @Override
+    public long getInFlight() {
+        long completed = calls.sum() + rejected.sum();
+        return Math.max(0, entered.sum() - completed);
+    }
+
+    public int getLatencySampleInterval() {
+        return latencySampleMask + 1;
+    }
+
+    public PFuncLatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public long getMeanLatencyNanos() {
+        return latency.getMeanNanos();
+    }
+
+    @Override
+    public long getMaximumLatencyNanos() {
+        return latency.getMaximumNanos();
+    }
+
+    @Override
+    public long getMedianLatencyNanos() {
+        return latency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP90LatencyNanos() {
+        return latency.getValueAtPercentile(90);
+    }
+
+    @Override
+    public long getP99LatencyNanos() {
+        return latency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999LatencyNanos() {
+        return latency.getValueAtPercentile(99.9);
+    }
+}
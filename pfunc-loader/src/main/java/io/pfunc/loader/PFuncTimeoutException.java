@@ -14,27 +14,13 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package io.pfunc.sample;
-
-import io.pfunc.bootstrap.PFuncInfo;
-
-import static io.pfunc.bootstrap.BootstrapHelpers.argument;
+package io.pfunc.loader;
 
 /**
+ * Thrown when an invocation does not complete before its deadline
  */
-public class Bootstrap {
-    public static Object invoke(String functionName, Object[] arguments) {
-        switch (functionName) {
-            case "helloWorld":
-                return MyFunc.helloWorld(argument(arguments, 0, String.class));
-        }
-        throw new IllegalArgumentException("Function does not exist: " + functionName);
+public class PFuncTimeoutException extends RuntimeException {
+    public PFuncTimeoutException(String message) {
+        super(message);
     }
-
-    public static PFuncInfo[] functionMetadata() throws NoSuchMethodException {
-        return new PFuncInfo[]{
-                new PFuncInfo(MyFunc.class.getMethod("helloWorld", String.class))
-        };
-    }
-
 }
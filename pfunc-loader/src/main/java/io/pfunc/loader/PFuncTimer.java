@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A hashed wheel timer which enforces the deadlines of many invocations using a single daemon thread. Timeouts
+ * are placed in the bucket of the wheel for the tick they expire in, so scheduling and cancelling are constant
+ * time and a timeout fires up to one tick late. Tasks run on the timer thread so they must be quick.
+ */
+public class PFuncTimer {
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    private static final Logger LOGGER = Logger.getLogger(PFuncTimer.class.getName());
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private final String name;
+    private final long tickNanos;
+    private final List<Timeout>[] wheel;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean stopped;
+    private volatile long startTime;
+
+    public PFuncTimer() {
+        this("pfunc-timer-" + COUNTER.incrementAndGet(), DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+
+    @SuppressWarnings("unchecked")
+    public PFuncTimer(String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Invalid tick " + tickMillis + "ms or wheel size " + wheelSize + " for " + name);
+        }
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.wheel = new List[Math.max(1, size)];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = wheel.length - 1;
+    }
+
+    /**
+     * Returns the timer shared by all contexts
+     */
+    public static PFuncTimer getDefault() {
+        return DefaultTimerHolder.TIMER;
+    }
+
+    @Override
+    public String toString() {
+        return "PFuncTimer{" + name + "}";
+    }
+
+    /**
+     * Schedules the task to run once the delay has passed
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (stopped) {
+            throw new IllegalStateException("Timer " + name + " is stopped");
+        }
+        start();
+        Timeout answer = new Timeout(task, System.nanoTime() + unit.toNanos(delay));
+        pending.add(answer);
+        return answer;
+    }
+
+    /**
+     * Stops the timer thread without running any pending timeouts
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    private void start() {
+        if (started.compareAndSet(false, true)) {
+            startTime = System.nanoTime();
+            Thread thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (!stopped) {
+            long deadline = startTime + (tick + 1) * tickNanos;
+            long now;
+            while ((now = System.nanoTime()) < deadline) {
+                LockSupport.parkNanos(this, deadline - now);
+            }
+            transferPending(tick);
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPending(long tick) {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            // the bucket of a tick is processed at the end of the tick so pick the first tick ending after the deadline
+            long elapsed = timeout.deadline - startTime;
+            long expiryTick = Math.max(tick, (elapsed + tickNanos - 1) / tickNanos - 1);
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            wheel[(int) (expiryTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(List<Timeout> bucket) {
+        int kept = 0;
+        for (int i = 0, size = bucket.size(); i < size; i++) {
+            Timeout timeout = bucket.get(i);
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            if (timeout.remainingRounds <= 0) {
+                timeout.expire();
+            } else {
+                timeout.remainingRounds--;
+                bucket.set(kept++, timeout);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+    }
+
+    /**
+     * A scheduled task which can be cancelled before it runs
+     */
+    public static class Timeout {
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private long remainingRounds;
+
+        Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout returning false if it has already run
+         */
+        public boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void expire() {
+            if (state.compareAndSet(WAITING, EXPIRED)) {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    LOGGER.log(Level.WARNING, "Timeout task " + task + " failed: " + e, e);
+                }
+            }
+        }
+    }
+
+    private static class DefaultTimerHolder {
+        static final PFuncTimer TIMER = new PFuncTimer("pfunc-timer", DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+    }
+}
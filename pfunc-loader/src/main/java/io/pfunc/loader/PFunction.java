@@ -16,10 +16,135 @@
  */
 package io.pfunc.loader;
 
+import io.pfunc.loader.helpers.FutureHelper;
+import io.pfunc.loader.helpers.StreamHelper;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  */
 public interface PFunction {
     Object invoke(Object... arguments);
 
     PFuncInfo getMetadata();
+
+    /**
+     * Invokes a function which takes no arguments without allocating an argument array
+     */
+    default Object invoke0() {
+        return invoke();
+    }
+
+    /**
+     * Invokes a function which takes a single argument without allocating an argument array
+     */
+    default Object invoke1(Object argument) {
+        return invoke(argument);
+    }
+
+    /**
+     * Invokes a function which takes two arguments without allocating an argument array
+     */
+    default Object invoke2(Object argument1, Object argument2) {
+        return invoke(argument1, argument2);
+    }
+
+    /**
+     * Invokes a function which returns an <code>int</code> without boxing the result
+     */
+    default int invokeInt(Object... arguments) {
+        return ((Number) invoke(arguments)).intValue();
+    }
+
+    /**
+     * Invokes a function which takes and returns an <code>int</code> without boxing
+     */
+    default int invokeInt(int argument) {
+        return invokeInt(new Object[]{argument});
+    }
+
+    /**
+     * Invokes a function which returns a <code>long</code> without boxing the result
+     */
+    default long invokeLong(Object... arguments) {
+        return ((Number) invoke(arguments)).longValue();
+    }
+
+    /**
+     * Invokes a function which takes and returns a <code>long</code> without boxing
+     */
+    default long invokeLong(long argument) {
+        return invokeLong(new Object[]{argument});
+    }
+
+    /**
+     * Invokes a function which returns a <code>double</code> without boxing the result
+     */
+    default double invokeDouble(Object... arguments) {
+        return ((Number) invoke(arguments)).doubleValue();
+    }
+
+    /**
+     * Invokes a function which takes and returns a <code>double</code> without boxing
+     */
+    default double invokeDouble(double argument) {
+        return invokeDouble(new Object[]{argument});
+    }
+
+    /**
+     * Invokes the function once for each of the given argument arrays, capturing the failure of any
+     * item in the result rather than aborting the batch
+     */
+    default PFuncBatchResult invokeBatch(List<Object[]> arguments) {
+        PFuncBatchResult answer = new PFuncBatchResult(arguments.size());
+        int index = 0;
+        for (Object[] item : arguments) {
+            try {
+                answer.setResult(index, invoke(item));
+            } catch (RuntimeException e) {
+                answer.setFailure(index, e);
+            }
+            index++;
+        }
+        return answer;
+    }
+
+    /**
+     * Invokes the function asynchronously returning a future of its result. If the function itself returns
+     * a <code>CompletionStage</code> or <code>Future</code> the returned future completes with its value.
+     */
+    default CompletableFuture<Object> invokeAsync(Object... arguments) {
+        return FutureHelper.invokeAsync(this, arguments, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Invokes the function asynchronously with the given options. If the options have a deadline the returned
+     * future fails with a {@link PFuncTimeoutException} once it passes.
+     */
+    default CompletableFuture<Object> invokeAsyncWithOptions(PFuncInvocationOptions options, Object... arguments) {
+        return FutureHelper.withDeadline(invokeAsync(arguments), options, getMetadata().getName());
+    }
+
+    /**
+     * Invokes the function with the given options waiting for its result
+     *
+     * @throws PFuncTimeoutException if the deadline of the options passes before the function completes
+     */
+    default Object invokeWithOptions(PFuncInvocationOptions options, Object... arguments) {
+        if (!options.hasTimeout()) {
+            return invoke(arguments);
+        }
+        return FutureHelper.await(invokeAsyncWithOptions(options, arguments));
+    }
+
+    /**
+     * Returns a publisher which invokes the function for each subscriber and streams its result with demand
+     * signalling. Reactive publishers, observables, futures, iterators and streams are streamed item by item;
+     * any other result is published as a single item.
+     */
+    default PFuncFlow.Publisher<Object> invokeStream(Object... arguments) {
+        return StreamHelper.invokeStream(this, arguments, ForkJoinPool.commonPool(), PFuncContext.DEFAULT_STREAM_BUFFER_SIZE);
+    }
 }
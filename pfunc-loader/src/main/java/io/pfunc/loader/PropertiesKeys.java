@@ -20,4 +20,18 @@ package io.pfunc.loader;
  */
 public class PropertiesKeys {
     public static final String BOOSTRAP_CLASS = "bootstrapClass";
+    public static final String DIRECT_INVOKE = "directInvoke";
+    public static final String FUNCTION_INDEX = "functionIndex";
+    public static final String CACHE_FUNCTIONS = "cacheFunctions";
+    public static final String CACHE_MAXIMUM_SIZE = "cacheMaximumSize";
+    public static final String CACHE_EXPIRE_AFTER_WRITE_MILLIS = "cacheExpireAfterWriteMillis";
+    public static final String FUNCTION_CONCURRENCY_LIMIT = "functionConcurrencyLimit";
+    public static final String LIBRARY_CONCURRENCY_LIMIT = "libraryConcurrencyLimit";
+    public static final String CONCURRENCY_MINIMUM_LIMIT = "concurrencyMinimumLimit";
+    public static final String CONCURRENCY_MAXIMUM_LIMIT = "concurrencyMaximumLimit";
+    public static final String CONCURRENCY_MAXIMUM_WAIT_MILLIS = "concurrencyMaximumWaitMillis";
+    public static final String CONCURRENCY_MAXIMUM_QUEUED = "concurrencyMaximumQueued";
+    public static final String CONCURRENCY_LATENCY_TOLERANCE = "concurrencyLatencyTolerance";
+    public static final String METRICS_ENABLED = "metricsEnabled";
+    public static final String METRICS_LATENCY_SAMPLE_INTERVAL = "metricsLatencySampleInterval";
 }
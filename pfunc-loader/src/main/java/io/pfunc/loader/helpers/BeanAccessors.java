@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader.helpers;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The getters of the bean properties of a class linked as method handles. Tables are created once per class via
+ * {@link #forClass(Class)} and cached in a {@link ClassValue} so they do not keep the class loader of a library
+ * from being collected
+ */
+public final class BeanAccessors {
+    private static final Logger LOGGER = Logger.getLogger(BeanAccessors.class.getName());
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<BeanAccessors> ACCESSORS = new ClassValue<BeanAccessors>() {
+        @Override
+        protected BeanAccessors computeValue(Class<?> type) {
+            return new BeanAccessors(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final Map<String, MethodHandle> getters;
+
+    private BeanAccessors(Class<?> type) {
+        this.type = type;
+        Map<String, MethodHandle> map = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            String name = getPropertyName(method);
+            if (name == null) {
+                continue;
+            }
+            // is getters take precedence like they do for java.beans
+            if (map.containsKey(name) && !method.getName().startsWith("is")) {
+                continue;
+            }
+            try {
+                map.put(name, MethodHandles.publicLookup().unreflect(method).asType(GETTER_TYPE));
+            } catch (IllegalAccessException e) {
+                LOGGER.log(Level.FINE, "Could not link getter " + method + " due to " + e, e);
+            }
+        }
+        this.getters = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Returns the accessors of the given class
+     */
+    public static BeanAccessors forClass(Class<?> type) {
+        return ACCESSORS.get(type);
+    }
+
+    @Override
+    public String toString() {
+        return "BeanAccessors{" + type.getName() + getters.keySet() + "}";
+    }
+
+    /**
+     * Returns the names of the readable properties
+     */
+    public Iterable<String> getPropertyNames() {
+        return getters.keySet();
+    }
+
+    /**
+     * Returns the getter of the given property as a handle of type <code>(Object)Object</code> or null if the class
+     * has no such readable property
+     */
+    public MethodHandle getGetter(String name) {
+        return getters.get(name);
+    }
+
+    /**
+     * Returns the value of the given property of the bean or null if there is no such property or the getter failed
+     */
+    public Object getObjectProperty(String name, Object bean) {
+        MethodHandle getter = getters.get(name);
+        if (getter == null) {
+            return null;
+        }
+        try {
+            return (Object) getter.invokeExact(bean);
+        } catch (Throwable e) {
+            LOGGER.log(Level.WARNING, "Could not invoke getter " + name + " on " + bean + " due to " + e, e);
+            return null;
+        }
+    }
+
+    public String getStringProperty(String name, Object bean) {
+        Object value = getObjectProperty(name, bean);
+        if (value != null) {
+            return value.toString();
+        }
+        return null;
+    }
+
+    public Class<?> getClassProperty(String name, Object bean) {
+        Object value = getObjectProperty(name, bean);
+        if (value instanceof Class) {
+            return (Class<?>) value;
+        } else if (value != null) {
+            LOGGER.warning("property " + name + " on bean " + bean + " returned " + value + " when was expecting a Class");
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the property if the method is a public getter, otherwise null
+     */
+    private static String getPropertyName(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0
+                || method.getDeclaringClass() == Object.class) {
+            return null;
+        }
+        String methodName = method.getName();
+        Class<?> returnType = method.getReturnType();
+        if (methodName.startsWith("get") && methodName.length() > 3 && returnType != void.class) {
+            return decapitalize(methodName.substring(3));
+        }
+        if (methodName.startsWith("is") && methodName.length() > 2 && returnType == boolean.class) {
+            return decapitalize(methodName.substring(2));
+        }
+        return null;
+    }
+
+    /**
+     * Converts the name of a property the same way as <code>java.beans.Introspector.decapitalize</code>
+     */
+    private static String decapitalize(String name) {
+        if (name.length() > 1 && Character.isUpperCase(name.charAt(1)) && Character.isUpperCase(name.charAt(0))) {
+            return name;
+        }
+        char[] chars = name.toCharArray();
+        chars[0] = Character.toLowerCase(chars[0]);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader.helpers;
+
+import io.pfunc.loader.PFuncInvocationOptions;
+import io.pfunc.loader.PFuncTimeoutException;
+import io.pfunc.loader.PFuncTimer;
+import io.pfunc.loader.PFunction;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ */
+public class FutureHelper {
+    private static final Logger LOGGER = Logger.getLogger(FutureHelper.class.getName());
+
+    /**
+     * Creates the default executor for asynchronous invocations which uses a virtual thread per task
+     * if the JVM supports them, otherwise a cached pool of daemon threads
+     */
+    public static ExecutorService createDefaultExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException e) {
+            // virtual threads are not available on this JVM
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not create a virtual thread executor so using platform threads: " + e, e);
+        }
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "pfunc-async-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newCachedThreadPool(threadFactory);
+    }
+
+    /**
+     * Invokes the function on the given executor returning a future of the result. If the function returns a
+     * {@link CompletionStage} or {@link Future} then the returned future completes with its value instead. If the
+     * executor rejects the invocation the returned future fails with the {@link RejectedExecutionException}.
+     */
+    public static CompletableFuture<Object> invokeAsync(PFunction function, Object[] arguments, Executor executor) {
+        CompletableFuture<Object> answer = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    complete(answer, function.invoke(arguments));
+                } catch (Throwable e) {
+                    answer.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            answer.completeExceptionally(e);
+        }
+        return answer;
+    }
+
+    /**
+     * Completes the future with the given result, waiting for the result first if it is itself asynchronous
+     */
+    public static void complete(CompletableFuture<Object> future, Object result) throws InterruptedException {
+        if (result instanceof CompletionStage) {
+            ((CompletionStage<?>) result).whenComplete((value, e) -> {
+                if (e != null) {
+                    future.completeExceptionally(e);
+                } else {
+                    future.complete(value);
+                }
+            });
+        } else if (result instanceof Future) {
+            try {
+                future.complete(((Future<?>) result).get());
+            } catch (ExecutionException e) {
+                future.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+            }
+        } else {
+            future.complete(result);
+        }
+    }
+
+    /**
+     * Fails the future with a {@link PFuncTimeoutException} if it has not completed before the deadline of the
+     * options, using the shared {@link PFuncTimer}
+     */
+    public static CompletableFuture<Object> withDeadline(CompletableFuture<Object> future, PFuncInvocationOptions options, String name) {
+        if (options.hasTimeout() && !future.isDone()) {
+            long timeoutMillis = TimeUnit.NANOSECONDS.toMillis(options.getTimeoutNanos());
+            PFuncTimer.Timeout timeout = PFuncTimer.getDefault().schedule(
+                    () -> future.completeExceptionally(new PFuncTimeoutException("Invocation of " + name + " timed out after " + timeoutMillis + "ms")),
+                    options.getTimeoutNanos(), TimeUnit.NANOSECONDS);
+            future.whenComplete((value, e) -> timeout.cancel());
+        }
+        return future;
+    }
+
+    /**
+     * Waits for the result of the future rethrowing the failure of the invocation
+     */
+    public static Object await(CompletableFuture<Object> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalArgumentException("Invocation failed due to: " + cause, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IllegalStateException("Interrupted waiting for the invocation", e);
+        }
+    }
+}
@@ -25,7 +25,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Reads bean properties via java.beans introspection.
+ *
+ * @deprecated use {@link BeanAccessors} which caches the getters of each class as method handles
  */
+@Deprecated
 public class IntrospectionHelper {
     private static final Logger LOGGER = Logger.getLogger(IntrospectionHelper.class.getName());
 
@@ -0,0 +1,171 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader.helpers;
+
+import io.pfunc.loader.PFuncLatencyHistogram;
+import io.pfunc.loader.PFuncStatistics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes function statistics in the Prometheus text exposition format
+ */
+public class PrometheusHelper {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The inclusive upper bounds of the latency histogram buckets which are a nanosecond below the powers of four
+     * from about a microsecond to a minute so that they line up with the buckets of {@link PFuncLatencyHistogram}
+     * and their counts are exact
+     */
+    private static final long[] LATENCY_BUCKETS_NANOS;
+
+    static {
+        LATENCY_BUCKETS_NANOS = new long[14];
+        for (int i = 0; i < LATENCY_BUCKETS_NANOS.length; i++) {
+            LATENCY_BUCKETS_NANOS[i] = (1L << (10 + 2 * i)) - 1;
+        }
+    }
+
+    /**
+     * Writes the statistics of the functions labelled by their names
+     */
+    public static void writeStatistics(Collection<PFuncStatistics> statistics, Appendable out) throws IOException {
+        List<Series> series = new ArrayList<>(statistics.size());
+        for (PFuncStatistics function : statistics) {
+            series.add(new Series(function, null));
+        }
+        write(series, out);
+    }
+
+    /**
+     * Writes the statistics of the functions keyed by their name or, for overloaded functions, their prototype as
+     * returned by {@link io.pfunc.loader.PFuncContext#getStatistics()}. Overloads also get a <code>signature</code>
+     * label holding their prototype so that each has its own series.
+     */
+    public static void writeStatistics(Map<String, PFuncStatistics> statistics, Appendable out) throws IOException {
+        List<Series> series = new ArrayList<>(statistics.size());
+        for (Map.Entry<String, PFuncStatistics> entry : statistics.entrySet()) {
+            PFuncStatistics function = entry.getValue();
+            series.add(new Series(function, entry.getKey().equals(function.getName()) ? null : entry.getKey()));
+        }
+        write(series, out);
+    }
+
+    /**
+     * Writes the series of the functions. The latency histogram only records a random sample of the invocations
+     * so its buckets, count and sum are scaled up by the latency sample interval of each function to estimate those
+     * of all the timed invocations. They are exact when the interval is 1.
+     */
+    private static void write(List<Series> statistics, Appendable out) throws IOException {
+        writeHeader(out, "pfunc_invocations_total", "counter", "The number of completed invocations");
+        for (Series function : statistics) {
+            writeSample(out, "pfunc_invocations_total", function, null, function.statistics.getCallCount());
+        }
+        writeHeader(out, "pfunc_invocation_errors_total", "counter", "The number of invocations which failed");
+        for (Series function : statistics) {
+            writeSample(out, "pfunc_invocation_errors_total", function, null, function.statistics.getErrorCount());
+        }
+        writeHeader(out, "pfunc_invocations_rejected_total", "counter", "The number of invocations rejected by a concurrency limit");
+        for (Series function : statistics) {
+            writeSample(out, "pfunc_invocations_rejected_total", function, null, function.statistics.getRejectedCount());
+        }
+        writeHeader(out, "pfunc_invocation_timeouts_total", "counter", "The number of invocations which did not complete before their deadline");
+        for (Series function : statistics) {
+            writeSample(out, "pfunc_invocation_timeouts_total", function, null, function.statistics.getTimeoutCount());
+        }
+        writeHeader(out, "pfunc_invocations_in_flight", "gauge", "The number of invocations in progress");
+        for (Series function : statistics) {
+            writeSample(out, "pfunc_invocations_in_flight", function, null, function.statistics.getInFlight());
+        }
+        writeHeader(out, "pfunc_invocation_duration_seconds", "histogram",
+                "The latency of invocations estimated from a sample of one in pfunc_invocation_latency_sample_interval");
+        for (Series function : statistics) {
+            PFuncLatencyHistogram latency = function.statistics.getLatency();
+            long scale = function.statistics.getLatencySampleInterval();
+            for (long bucket : LATENCY_BUCKETS_NANOS) {
+                writeSample(out, "pfunc_invocation_duration_seconds_bucket", function,
+                        Double.toString(bucket / NANOS_PER_SECOND), latency.getCountAtOrBelow(bucket) * scale);
+            }
+            long count = latency.getCount() * scale;
+            writeSample(out, "pfunc_invocation_duration_seconds_bucket", function, "+Inf", count);
+            writeSample(out, "pfunc_invocation_duration_seconds_sum", function, null, latency.getTotalNanos() * scale / NANOS_PER_SECOND);
+            writeSample(out, "pfunc_invocation_duration_seconds_count", function, null, count);
+        }
+        writeHeader(out, "pfunc_invocation_latency_sample_interval", "gauge",
+                "The number of invocations per latency sample on average");
+        for (Series function : statistics) {
+            writeSample(out, "pfunc_invocation_latency_sample_interval", function, null, function.statistics.getLatencySampleInterval());
+        }
+    }
+
+    private static void writeHeader(Appendable out, String metric, String type, String help) throws IOException {
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSample(Appendable out, String metric, Series function, String le, Object value) throws IOException {
+        out.append(metric).append("{function=\"");
+        escapeLabelValue(out, function.statistics.getName());
+        out.append('"');
+        if (function.signature != null) {
+            out.append(",signature=\"");
+            escapeLabelValue(out, function.signature);
+            out.append('"');
+        }
+        if (le != null) {
+            out.append(",le=\"").append(le).append('"');
+        }
+        out.append("} ").append(value.toString()).append('\n');
+    }
+
+    private static void escapeLabelValue(Appendable out, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                default:
+                    out.append(ch);
+            }
+        }
+    }
+
+    /**
+     * The statistics of a function and the signature which tells apart the series of its overloads
+     */
+    private static final class Series {
+        private final PFuncStatistics statistics;
+        private final String signature;
+
+        Series(PFuncStatistics statistics, String signature) {
+            this.statistics = statistics;
+            this.signature = signature;
+        }
+    }
+}
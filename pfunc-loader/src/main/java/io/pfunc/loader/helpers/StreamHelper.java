@@ -0,0 +1,439 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader.helpers;
+
+import io.pfunc.loader.PFuncFlow;
+import io.pfunc.loader.PFunction;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.BaseStream;
+
+/**
+ * Adapts the results of streaming functions such as reactive streams publishers (Reactor <code>Flux</code> and
+ * <code>Mono</code>, RxJava <code>Flowable</code>), RxJava <code>Observable</code>, futures, iterators and streams
+ * into a {@link PFuncFlow.Publisher}. Library types are only accessed reflectively so that the loader does not
+ * depend on any reactive library. Streams, closeable iterators and the blocking iterators of RxJava are closed once
+ * they complete, fail or their subscriber cancels.
+ */
+public class StreamHelper {
+    private static final Logger LOGGER = Logger.getLogger(StreamHelper.class.getName());
+    private static final String REACTIVE_STREAMS_PUBLISHER = "org.reactivestreams.Publisher";
+    private static final String REACTIVE_STREAMS_SUBSCRIBER = "org.reactivestreams.Subscriber";
+    private static final String REACTIVE_STREAMS_SUBSCRIPTION = "org.reactivestreams.Subscription";
+    private static final String RXJAVA1_OBSERVABLE = "rx.Observable";
+    private static final String[] RXJAVA_OBSERVABLES = {"io.reactivex.Observable", "io.reactivex.rxjava3.core.Observable"};
+    // the types and methods which release the subscription of a blocking RxJava iterator
+    private static final String[][] DISPOSABLES = {
+            {"rx.Subscription", "unsubscribe"},
+            {"io.reactivex.disposables.Disposable", "dispose"},
+            {"io.reactivex.rxjava3.disposables.Disposable", "dispose"}
+    };
+
+    /**
+     * Returns true if values of the given type are streamed rather than published as a single item
+     */
+    public static boolean isStreamingType(Class<?> type) {
+        if (type == null) {
+            return false;
+        }
+        if (Future.class.isAssignableFrom(type) || CompletionStage.class.isAssignableFrom(type)
+                || Iterator.class.isAssignableFrom(type) || BaseStream.class.isAssignableFrom(type)
+                || PFuncFlow.Publisher.class.isAssignableFrom(type)) {
+            return true;
+        }
+        if (findType(type, REACTIVE_STREAMS_PUBLISHER) != null || findType(type, RXJAVA1_OBSERVABLE) != null) {
+            return true;
+        }
+        for (String name : RXJAVA_OBSERVABLES) {
+            if (findType(type, name) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a cold publisher which invokes the function on the executor for each subscriber and streams its result
+     */
+    public static PFuncFlow.Publisher<Object> invokeStream(PFunction function, Object[] arguments, Executor executor, int bufferSize) {
+        return subscriber -> executor.execute(() -> {
+            Object result;
+            try {
+                result = function.invoke(arguments);
+            } catch (Throwable e) {
+                error(subscriber, e);
+                return;
+            }
+            toPublisher(result, executor, bufferSize).subscribe(subscriber);
+        });
+    }
+
+    /**
+     * Adapts the given function result into a publisher. Values which are not a streaming type are published as a
+     * single item, with null being an empty stream.
+     */
+    @SuppressWarnings("unchecked")
+    public static PFuncFlow.Publisher<Object> toPublisher(Object value, Executor executor, int bufferSize) {
+        if (value instanceof PFuncFlow.Publisher) {
+            return (PFuncFlow.Publisher<Object>) value;
+        }
+        if (value == null) {
+            return subscriber -> new IteratorSubscription(subscriber, Collections.emptyIterator(), null, executor).start();
+        }
+        Class<?> publisherType = findType(value.getClass(), REACTIVE_STREAMS_PUBLISHER);
+        if (publisherType != null) {
+            return subscriber -> subscribeReactiveStreams(value, publisherType, subscriber);
+        }
+        if (value instanceof CompletionStage || value instanceof Future) {
+            return subscriber -> {
+                CompletableFuture<Object> future = new CompletableFuture<>();
+                executor.execute(() -> {
+                    try {
+                        FutureHelper.complete(future, value);
+                    } catch (Throwable e) {
+                        future.completeExceptionally(e);
+                    }
+                });
+                future.whenComplete((result, e) -> {
+                    if (e != null) {
+                        error(subscriber, e);
+                    } else {
+                        toPublisher(result, executor, bufferSize).subscribe(subscriber);
+                    }
+                });
+            };
+        }
+        Iterator<?> iterator;
+        try {
+            iterator = toIterator(value, bufferSize);
+        } catch (Exception e) {
+            return subscriber -> error(subscriber, e);
+        }
+        Iterator<?> items = iterator != null ? iterator : Collections.singletonList(value).iterator();
+        Object source = value instanceof BaseStream ? value : iterator;
+        return subscriber -> new IteratorSubscription(subscriber, items, source, executor).start();
+    }
+
+    /**
+     * Returns a blocking iterator over push based sources such as RxJava observables and streams or null if the
+     * value is not one of those types. RxJava buffers at most the given number of items ahead of the subscriber.
+     */
+    protected static Iterator<?> toIterator(Object value, int bufferSize) throws Exception {
+        if (value instanceof Iterator) {
+            return (Iterator<?>) value;
+        }
+        if (value instanceof BaseStream) {
+            return ((BaseStream<?, ?>) value).iterator();
+        }
+        Class<?> type = findType(value.getClass(), RXJAVA1_OBSERVABLE);
+        if (type != null) {
+            Object blocking = invokeMethod(type.getMethod("toBlocking"), value);
+            return (Iterator<?>) invokeMethod(blocking.getClass().getMethod("getIterator"), blocking);
+        }
+        for (String name : RXJAVA_OBSERVABLES) {
+            type = findType(value.getClass(), name);
+            if (type != null) {
+                return ((Iterable<?>) invokeMethod(type.getMethod("blockingIterable", int.class), value, bufferSize)).iterator();
+            }
+        }
+        return null;
+    }
+
+    private static void subscribeReactiveStreams(Object publisher, Class<?> publisherType, PFuncFlow.Subscriber<? super Object> subscriber) {
+        try {
+            ClassLoader classLoader = publisherType.getClassLoader();
+            Class<?> subscriberType = classLoader.loadClass(REACTIVE_STREAMS_SUBSCRIBER);
+            Class<?> subscriptionType = classLoader.loadClass(REACTIVE_STREAMS_SUBSCRIPTION);
+            Method request = subscriptionType.getMethod("request", long.class);
+            Method cancel = subscriptionType.getMethod("cancel");
+            InvocationHandler handler = new ReactiveStreamsSubscriber(subscriber, request, cancel);
+            Object proxy = Proxy.newProxyInstance(classLoader, new Class<?>[]{subscriberType}, handler);
+            invokeMethod(publisherType.getMethod("subscribe", subscriberType), publisher, proxy);
+        } catch (Throwable e) {
+            error(subscriber, e);
+        }
+    }
+
+    /**
+     * Closes a stream or closeable iterator or disposes of a blocking RxJava iterator, logging any failure
+     */
+    protected static void close(Object source) {
+        if (source == null) {
+            return;
+        }
+        try {
+            if (source instanceof AutoCloseable) {
+                ((AutoCloseable) source).close();
+                return;
+            }
+            for (String[] disposable : DISPOSABLES) {
+                Class<?> type = findType(source.getClass(), disposable[0]);
+                if (type != null) {
+                    invokeMethod(type.getMethod(disposable[1]), source);
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Failed to close " + source + " due to " + e, e);
+        }
+    }
+
+    private static Object invokeMethod(Method method, Object target, Object... arguments) throws Exception {
+        try {
+            return method.invoke(target, arguments);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the class or interface with the given name which the type extends or implements or null if it does not
+     */
+    private static Class<?> findType(Class<?> type, String name) {
+        if (type == null) {
+            return null;
+        }
+        if (type.getName().equals(name)) {
+            return type;
+        }
+        for (Class<?> interfaceType : type.getInterfaces()) {
+            Class<?> answer = findType(interfaceType, name);
+            if (answer != null) {
+                return answer;
+            }
+        }
+        return findType(type.getSuperclass(), name);
+    }
+
+    private static void error(PFuncFlow.Subscriber<?> subscriber, Throwable e) {
+        subscriber.onSubscribe(new PFuncFlow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        });
+        subscriber.onError(e);
+    }
+
+    /**
+     * Forwards the signals of a reactive streams publisher to a subscriber, passing its demand straight upstream
+     */
+    private static class ReactiveStreamsSubscriber implements InvocationHandler {
+        private final PFuncFlow.Subscriber<? super Object> subscriber;
+        private final Method requestMethod;
+        private final Method cancelMethod;
+
+        ReactiveStreamsSubscriber(PFuncFlow.Subscriber<? super Object> subscriber, Method requestMethod, Method cancelMethod) {
+            this.subscriber = subscriber;
+            this.requestMethod = requestMethod;
+            this.cancelMethod = cancelMethod;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "onSubscribe":
+                    Object upstream = args[0];
+                    subscriber.onSubscribe(new PFuncFlow.Subscription() {
+                        @Override
+                        public void request(long n) {
+                            invokeUpstream(requestMethod, upstream, n);
+                        }
+
+                        @Override
+                        public void cancel() {
+                            invokeUpstream(cancelMethod, upstream);
+                        }
+                    });
+                    return null;
+                case "onNext":
+                    subscriber.onNext(args[0]);
+                    return null;
+                case "onError":
+                    subscriber.onError((Throwable) args[0]);
+                    return null;
+                case "onComplete":
+                    subscriber.onComplete();
+                    return null;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "ReactiveStreamsSubscriber{" + subscriber + "}";
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }
+
+        private void invokeUpstream(Method method, Object upstream, Object... arguments) {
+            try {
+                method.invoke(upstream, arguments);
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not invoke " + method + " due to " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Emits the items of an iterator on an executor only as fast as the subscriber requests them, closing the source
+     * of the items on the executor once the stream terminates or is cancelled
+     */
+    private static class IteratorSubscription implements PFuncFlow.Subscription, Runnable {
+        private final PFuncFlow.Subscriber<? super Object> subscriber;
+        private final Iterator<?> iterator;
+        private final Object source;
+        private final Executor executor;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable invalidRequest;
+        private long emitted;
+        private boolean checkedEmpty;
+        private boolean closed;
+
+        IteratorSubscription(PFuncFlow.Subscriber<? super Object> subscriber, Iterator<?> iterator, Object source, Executor executor) {
+            this.subscriber = subscriber;
+            this.iterator = iterator;
+            this.source = source;
+            this.executor = executor;
+        }
+
+        void start() {
+            subscriber.onSubscribe(this);
+            // the first drain completes empty streams without waiting for demand
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Subscriber requested " + n + " items which must be positive");
+            } else {
+                long current;
+                long next;
+                do {
+                    current = requested.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!requested.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            // lets close the source on the executor unless it is already draining and will notice the cancel
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                if (drain()) {
+                    return;
+                }
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Emits as many items as have been requested returning true if the stream has terminated. Apart from the
+         * first check for an empty stream the iterator is only asked for another item once there is demand for it,
+         * so that an iterator which blocks waiting for items does not block without demand.
+         */
+        private boolean drain() {
+            try {
+                while (!cancelled) {
+                    if (invalidRequest != null) {
+                        terminate();
+                        subscriber.onError(invalidRequest);
+                        return true;
+                    }
+                    if (!checkedEmpty) {
+                        // lets complete empty streams without waiting for demand
+                        checkedEmpty = true;
+                        if (!iterator.hasNext()) {
+                            terminate();
+                            subscriber.onComplete();
+                            return true;
+                        }
+                    }
+                    if (emitted == requested.get()) {
+                        return false;
+                    }
+                    if (!iterator.hasNext()) {
+                        terminate();
+                        subscriber.onComplete();
+                        return true;
+                    }
+                    subscriber.onNext(iterator.next());
+                    emitted++;
+                }
+            } catch (Throwable e) {
+                terminate();
+                subscriber.onError(e);
+                return true;
+            }
+            // cancelled by the subscriber
+            closeSource();
+            return true;
+        }
+
+        private void terminate() {
+            cancelled = true;
+            closeSource();
+        }
+
+        private void closeSource() {
+            if (!closed) {
+                closed = true;
+                close(source);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import io.pfunc.sample.MyFunc;
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class PFuncArgumentConverterTest {
+    @Test
+    public void convertTextArguments() throws Exception {
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        PFunction increment = context.withName("increment");
+        String[] arguments = {"41"};
+        assertThat(increment.invoke((Object[]) arguments)).isEqualTo(42L);
+        assertThat(increment.invoke1("1")).isEqualTo(2L);
+        assertThat(increment.invoke(7)).isEqualTo(8L);
+        assertThat(arguments[0]).isEqualTo("41");
+
+        try {
+            increment.invoke("cheese");
+            fail("Should have failed to convert");
+        } catch (PFuncArgumentException e) {
+            assertThat(e.getMessage()).startsWith("Argument 0 (long value) of increment cannot be converted from cheese");
+            assertThat(e.getStackTrace()).isEmpty();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void convertTypes() throws Exception {
+        PFuncArgumentConverter converter = PFuncArgumentConverter.create(metadata(Sample.class.getMethod("sample",
+                int.class, boolean.class, TimeUnit.class, File.class, URL.class, List.class, Set.class, double[].class, Long.class)));
+        Object[] arguments = {"3", "TRUE", "seconds", "/tmp", "http://pfunc.io", "1, 2,3", "a,b,a", "1.5,2", 5};
+        Object[] converted = converter.convert(arguments);
+        assertThat(converted).isNotSameAs(arguments);
+        assertThat(converted[0]).isEqualTo(3);
+        assertThat(converted[1]).isEqualTo(true);
+        assertThat(converted[2]).isEqualTo(TimeUnit.SECONDS);
+        assertThat(converted[3]).isEqualTo(new File("/tmp"));
+        assertThat(converted[4]).isEqualTo(new URL("http://pfunc.io"));
+        assertThat((List<Object>) converted[5]).containsExactly(1L, 2L, 3L);
+        assertThat((Set<Object>) converted[6]).containsExactly("a", "b");
+        assertThat((double[]) converted[7]).containsExactly(1.5, 2.0);
+        assertThat(converted[8]).isEqualTo(5L);
+
+        Object[] typed = {1, true, TimeUnit.DAYS, null, null, null, null, null, 2L};
+        assertThat(converter.convert(typed)).isSameAs(typed);
+
+        try {
+            converter.convert(new Object[]{5L});
+            fail("Should not narrow a long to an int");
+        } catch (PFuncArgumentException e) {
+            assertThat(e.getMessage()).contains("narrowing");
+        }
+    }
+
+    private static PFuncInfo metadata(java.lang.reflect.Method method) {
+        PFuncInfo answer = new PFuncInfo();
+        answer.setName(method.getName());
+        answer.setMethod(method);
+        Class<?>[] types = method.getParameterTypes();
+        PFuncParameterInfo[] parameterInfos = new PFuncParameterInfo[types.length];
+        for (int i = 0; i < types.length; i++) {
+            parameterInfos[i] = new PFuncParameterInfo();
+            parameterInfos[i].setType(types[i]);
+        }
+        answer.setParameterInfos(parameterInfos);
+        return answer;
+    }
+
+    public static class Sample {
+        public static void sample(int count, boolean flag, TimeUnit unit, File file, URL url, List<Long> numbers,
+                                  Set<String> names, double[] values, Long total) {
+        }
+    }
+}
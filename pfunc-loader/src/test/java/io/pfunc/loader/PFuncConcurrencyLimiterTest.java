@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import io.pfunc.sample.Bootstrap;
+import io.pfunc.sample.MyFunc;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class PFuncConcurrencyLimiterTest {
+    @Test
+    public void rejectsCallsOverTheLimit() throws Exception {
+        PFuncConcurrencyLimiter limiter = new PFuncConcurrencyLimiter("test", 2, 1, 4, 0, 0, 2.0);
+        limiter.acquire();
+        limiter.acquire();
+        try {
+            limiter.acquire();
+            fail("Should have rejected the call");
+        } catch (RejectedExecutionException e) {
+            assertThat(limiter.getRejectedCount()).isEqualTo(1);
+        }
+        limiter.release();
+        assertThat(limiter.tryAcquire()).isTrue();
+    }
+
+    @Test
+    public void adaptsLimitToLatency() throws Exception {
+        PFuncConcurrencyLimiter limiter = new PFuncConcurrencyLimiter("test", 2, 1, 4, 0, 0, 2.0);
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire();
+            limiter.acquire();
+            limiter.release(TimeUnit.MICROSECONDS.toNanos(10));
+            limiter.release(TimeUnit.MICROSECONDS.toNanos(10));
+        }
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        limiter.acquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(limiter.getLimit()).isEqualTo(3);
+        assertThat(limiter.getInFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void backsOffOncePerRoundTrip() throws Exception {
+        AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        PFuncConcurrencyLimiter limiter = new PFuncConcurrencyLimiter("test", 4, 1, 4, 0, 0, 2.0, now::get);
+        limiter.acquire();
+        limiter.release(TimeUnit.MICROSECONDS.toNanos(10));
+
+        long slow = TimeUnit.MILLISECONDS.toNanos(10);
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < 4; i++) {
+            limiter.release(slow);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(3);
+
+        now.addAndGet(2 * slow);
+        limiter.acquire();
+        limiter.release(slow);
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    public void baselineFollowsTheWorkload() throws Exception {
+        AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(1));
+        PFuncConcurrencyLimiter limiter = new PFuncConcurrencyLimiter("test", 2, 1, 4, 0, 0, 2.0, now::get);
+        limiter.acquire();
+        limiter.release(TimeUnit.MICROSECONDS.toNanos(10));
+        assertThat(limiter.getBaselineLatencyNanos()).isEqualTo(TimeUnit.MICROSECONDS.toNanos(10));
+
+        for (int i = 0; i < 2; i++) {
+            now.addAndGet(TimeUnit.SECONDS.toNanos(11));
+            limiter.acquire();
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertThat(limiter.getBaselineLatencyNanos()).isEqualTo(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Test
+    public void queuedCallersAcquireInOrder() throws Exception {
+        PFuncConcurrencyLimiter limiter = new PFuncConcurrencyLimiter("test", 1, 1, 1, 5000, 2, 2.0);
+        limiter.acquire();
+
+        List<String> order = new CopyOnWriteArrayList<>();
+        Thread first = startWaiter(limiter, "first", order);
+        awaitQueued(limiter, 1);
+        Thread second = startWaiter(limiter, "second", order);
+        awaitQueued(limiter, 2);
+
+        limiter.release();
+        first.join(5000);
+        second.join(5000);
+        assertThat(order).containsExactly("first", "second");
+        assertThat(limiter.getInFlight()).isEqualTo(0);
+        assertThat(limiter.getRejectedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void limitsConfiguredFunctions() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(PropertiesKeys.FUNCTION_CONCURRENCY_LIMIT, "1");
+        PFuncJar jar = new PFuncJar(MyFunc.class.getClassLoader(), Bootstrap.class,
+                Bootstrap.class.getMethod("invoke", String.class, Object[].class), properties);
+
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        PFuncJarFunction function = new PFuncJarFunction(context, context.withName("increment").getMetadata(), jar);
+        PFuncConcurrencyLimiter limiter = function.getConcurrencyLimiter();
+        assertThat(limiter).isNotNull();
+        assertThat(function.invokeLong(1L)).isEqualTo(2L);
+        assertThat(limiter.getInFlight()).isEqualTo(0);
+
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        try {
+            function.invoke(1L);
+            fail("Should have rejected the call");
+        } catch (RejectedExecutionException e) {
+            assertThat(limiter.getRejectedCount()).isEqualTo(1);
+        } finally {
+            for (int i = 0; i < acquired; i++) {
+                limiter.release();
+            }
+        }
+        assertThat(limiter.getInFlight()).isEqualTo(0);
+    }
+
+    private static Thread startWaiter(PFuncConcurrencyLimiter limiter, String name, List<String> order) {
+        Thread thread = new Thread(() -> {
+            limiter.acquire();
+            order.add(name);
+            limiter.release();
+        }, name);
+        thread.start();
+        return thread;
+    }
+
+    private static void awaitQueued(PFuncConcurrencyLimiter limiter, int queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (limiter.getQueued() < queued && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(limiter.getQueued()).isEqualTo(queued);
+    }
+}
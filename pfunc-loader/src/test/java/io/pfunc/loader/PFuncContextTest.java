@@ -16,14 +16,26 @@
  */
 package io.pfunc.loader;
 
+import io.pfunc.sample.Bootstrap;
 import io.pfunc.sample.MyFunc;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  */
@@ -74,5 +86,218 @@ public class PFuncContextTest {
         assertFunctionHasValidMetadata(function);
     }
 
+    @Test
+    public void functionsAreLinked() throws Exception {
+        PFunction function = context.withName(methodName);
+        assertThat(function).isInstanceOf(PFuncJarFunction.class);
+        assertThat(((PFuncJarFunction) function).isLinked()).describedAs("linked " + function).isTrue();
+    }
+
+    @Test
+    public void directInvokeUsesTargetMethod() throws Exception {
+        PFuncJarFunction function = (PFuncJarFunction) context.withName(methodName);
+        assertThat(function.getJar().isDirectInvoke()).isTrue();
+        assertThat(function.getMetadata().getMethod()).isEqualTo(MyFunc.class.getMethod(methodName, String.class));
+        assertThat(function.invoke("James")).isEqualTo("Hello James");
+
+        // a bootstrap class whose dispatch differs from the target method shows which one was invoked
+        Properties properties = new Properties();
+        properties.setProperty(PropertiesKeys.DIRECT_INVOKE, "true");
+        PFuncJar jar = new PFuncJar(MyFunc.class.getClassLoader(), DivergingBootstrap.class,
+                DivergingBootstrap.class.getMethod("invoke", String.class, Object[].class), properties);
+        PFuncJarFunction direct = new PFuncJarFunction(context, function.getMetadata(), jar);
+        assertThat(direct.invoke("James")).isEqualTo("Hello James");
+        assertThat(direct.invoke1("James")).isEqualTo("Hello James");
+
+        properties.setProperty(PropertiesKeys.DIRECT_INVOKE, "false");
+        PFuncJarFunction bootstrapped = new PFuncJarFunction(context, function.getMetadata(), jar);
+        assertThat(bootstrapped.invoke("James")).isEqualTo("bootstrap helloWorld");
+    }
+
+    /**
+     * A bootstrap class which does not dispatch to the target methods
+     */
+    public static class DivergingBootstrap {
+        public static Object invoke(String name, Object[] arguments) {
+            return "bootstrap " + name;
+        }
+    }
+
+    @Test
+    public void loadsMetadataFromGeneratedIndex() throws Exception {
+        PFuncInfo metadata = context.withName(methodName).getMetadata();
+        assertThat(metadata.getTarget()).isNotNull();
+        assertThat(metadata.getDescription()).isEqualTo("Returns a greeting");
+        assertThat(metadata.getReturnType()).isEqualTo(String.class);
+        assertThat(metadata.getParameterInfos()).hasSize(1);
+        assertThat(metadata.getParameterInfos()[0].getName()).isEqualTo("name");
+        assertThat(metadata.getParameterInfos()[0].getDescription()).isEqualTo("the name to greet");
+        assertThat(metadata.getParameterInfos()[0].getType()).isEqualTo(String.class);
+    }
+
+    @Test
+    public void convertsBootstrapMetadata() throws Exception {
+        List<PFuncInfo> infos = new ArrayList<>();
+        context.addFunctionMetadata(io.pfunc.sample.Bootstrap.class.getMethod("functionMetadata"), infos);
+        assertThat(infos).hasSize(4);
+        PFuncInfo info = infos.get(0);
+        assertThat(info.getName()).isEqualTo(methodName);
+        assertThat(info.getReturnType()).isEqualTo(String.class);
+        assertThat(info.getMethod()).isEqualTo(MyFunc.class.getMethod(methodName, String.class));
+        assertThat(info.isPure()).isFalse();
+        assertThat(info.getParameterInfos()).hasSize(1);
+        assertThat(info.getParameterInfos()[0].getType()).isEqualTo(String.class);
+    }
+
+    @Test
+    public void invokePrimitiveAndFixedArity() throws Exception {
+        PFunction function = context.withName("increment");
+        assertThat(function.invokeLong(41L)).isEqualTo(42L);
+        assertThat(function.invokeLong(new Object[]{41L})).isEqualTo(42L);
+        assertThat(function.invokeInt(41)).isEqualTo(42);
+        assertThat(function.invoke1(41L)).isEqualTo(42L);
+        assertThat(context.withName(methodName).invoke1("James")).isEqualTo("Hello James");
+    }
+
+    @Test
+    public void invokeBatchReportsFailedItems() throws Exception {
+        PFunction function = context.withName("increment");
+        PFuncBatchResult result = function.invokeBatch(Arrays.asList(new Object[]{1L}, new Object[]{"cheese"}, new Object[]{3L}));
+        assertThat(result.size()).isEqualTo(3);
+        assertThat(result.getResults()).containsExactly(2L, null, 4L);
+        assertThat(result.getFailureCount()).isEqualTo(1);
+        assertThat(result.getFailure(1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void invokeBatchInvokesEachItemWithoutBatchBootstrap() throws Exception {
+        // a bootstrap class without an invokeBatch method
+        PFuncJar jar = new PFuncJar(MyFunc.class.getClassLoader(), Bootstrap.class,
+                Bootstrap.class.getMethod("invoke", String.class, Object[].class), new Properties());
+        assertThat(jar.linkBatchFunction("increment")).isNull();
+        PFuncJarFunction function = new PFuncJarFunction(context, context.withName("increment").getMetadata(), jar);
 
+        PFuncBatchResult result = function.invokeBatch(Arrays.asList(new Object[]{1L}, new Object[]{"cheese"}, new Object[]{3L}));
+        assertThat(result.getResults()).containsExactly(2L, null, 4L);
+        assertThat(result.getFailureCount()).isEqualTo(1);
+        assertThat(result.getFailure(1)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(function.getStatistics().getCallCount()).isEqualTo(3);
+        assertThat(function.getStatistics().getErrorCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void invokeBatchCountsEachItemOfLibraryBatch() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(PropertiesKeys.FUNCTION_CONCURRENCY_LIMIT, "1");
+        PFuncJar jar = new PFuncJar(MyFunc.class.getClassLoader(), Bootstrap.class,
+                Bootstrap.class.getMethod("invoke", String.class, Object[].class),
+                Bootstrap.class.getMethod("invokeBatch", String.class, Object[][].class), properties);
+        assertThat(jar.linkBatchFunction("increment")).isNotNull();
+        PFuncJarFunction function = new PFuncJarFunction(context, context.withName("increment").getMetadata(), jar);
+        PFuncConcurrencyLimiter limiter = function.getConcurrencyLimiter();
+        assertThat(limiter).isNotNull();
+
+        PFuncBatchResult result = function.invokeBatch(Arrays.asList(new Object[]{1L}, new Object[]{"cheese"}, null, new Object[]{3L}));
+        assertThat(result.getResults()).containsExactly(2L, null, null, 4L);
+        assertThat(result.getFailureCount()).isEqualTo(2);
+        assertThat(result.getFailure(1)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(result.isFailed(2)).isTrue();
+        assertThat(function.getStatistics().getCallCount()).isEqualTo(4);
+        assertThat(function.getStatistics().getErrorCount()).isEqualTo(2);
+        assertThat(function.getStatistics().getInFlight()).isEqualTo(0);
+        assertThat(limiter.getInFlight()).isEqualTo(0);
+
+        // items the bulkhead cannot admit are rejected
+        int acquired = 0;
+        while (limiter.tryAcquire()) {
+            acquired++;
+        }
+        try {
+            result = function.invokeBatch(Arrays.asList(new Object[]{1L}, new Object[]{2L}));
+            assertThat(result.getFailureCount()).isEqualTo(2);
+            assertThat(result.getFailure(1)).isInstanceOf(RejectedExecutionException.class);
+            assertThat(function.getStatistics().getInFlight()).isEqualTo(0);
+        } finally {
+            for (int i = 0; i < acquired; i++) {
+                limiter.release();
+            }
+        }
+    }
+
+    @Test
+    public void invokeAsync() throws Exception {
+        PFunction function = context.withName(methodName);
+        assertThat(function.invokeAsync("James").get(10, TimeUnit.SECONDS)).isEqualTo("Hello James");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            context.setExecutor(executor);
+            assertThat(function.invokeAsync("Rob").get(10, TimeUnit.SECONDS)).isEqualTo("Hello Rob");
+        } finally {
+            executor.shutdown();
+        }
+
+        // an executor which rejects the invocation fails the future rather than the caller
+        CompletableFuture<Object> future = function.invokeAsync("Bob");
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Should have been rejected by the executor");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+        }
+    }
+
+    @Test
+    public void publishesSnapshotsWhenFunctionsChange() throws Exception {
+        PFuncRegistrySnapshot snapshot = context.getSnapshot();
+        assertThat(snapshot.getVersion()).isEqualTo(1);
+        assertThat(context.getFunctionMap()).isSameAs(snapshot.getFunctionMap()).isSameAs(context.getFunctionMap());
+        assertThat(new ArrayList<>(snapshot.getFunctionMap().keySet())).isSorted();
+
+        List<PFuncRegistrySnapshot> changes = new ArrayList<>();
+        context.addRegistryListener((previous, current) -> {
+            assertThat(previous).isSameAs(snapshot);
+            // listeners are notified once the registry is unlocked
+            assertThat(Thread.holdsLock(context)).isFalse();
+            changes.add(current);
+        });
+
+        // registering the same functions again does not change the registry
+        context.loadFunctions(MyFunc.class.getClassLoader());
+        assertThat(context.getSnapshot()).isSameAs(snapshot);
+
+        PFuncInfo info = new PFuncInfo();
+        info.setName("addOne");
+        info.setMethod(MyFunc.class.getMethod("increment", long.class));
+        context.addFunction(info, ((PFuncJarFunction) context.withName("increment")).getJar());
+        PFuncRegistrySnapshot current = context.getSnapshot();
+        assertThat(current.getVersion()).isEqualTo(2);
+        assertThat(current.size()).isEqualTo(snapshot.size() + 1);
+        assertThat(current.get("addOne").invoke(1L)).isEqualTo(2L);
+        assertThat(snapshot.get("addOne")).isNull();
+        assertThat(changes).containsExactly(current);
+    }
+
+    @Test
+    public void refsRelinkWhenFunctionsChange() throws Exception {
+        PFuncRef ref = context.ref("increment");
+        assertThat(ref.invokeLong(41L)).isEqualTo(42L);
+        assertThat(ref.invoke1(1L)).isEqualTo(2L);
+        assertThat(ref.getFunction()).isSameAs(context.withName("increment"));
+        long version = ref.getVersion();
+
+        PFuncInfo info = new PFuncInfo();
+        info.setName("addOne");
+        info.setMethod(MyFunc.class.getMethod("increment", long.class));
+        context.addFunction(info, ((PFuncJarFunction) context.withName("increment")).getJar());
+        assertThat(ref.invokeLong(1L)).isEqualTo(2L);
+        assertThat(ref.getVersion()).isGreaterThan(version);
+
+        try {
+            context.ref("doesNotExist");
+            fail("Should have failed");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage()).contains("doesNotExist");
+        }
+    }
 }
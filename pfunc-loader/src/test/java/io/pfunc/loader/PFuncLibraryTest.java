@@ -0,0 +1,318 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import io.pfunc.sample.MyFunc;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class PFuncLibraryTest {
+    /**
+     * Returns a class loader isolated from the test classpath holding its own copy of the sample functions
+     */
+    public static URLClassLoader createSampleClassLoader() throws Exception {
+        URL[] urls = {
+                MyFunc.class.getProtectionDomain().getCodeSource().getLocation(),
+                Class.forName("io.pfunc.bootstrap.PFuncInfo").getProtectionDomain().getCodeSource().getLocation()
+        };
+        return new URLClassLoader(urls, null);
+    }
+
+    /**
+     * Returns an isolated class loader of the sample functions whose <code>pfunc.properties</code> has the given
+     * property overridden
+     */
+    public static URLClassLoader createSampleClassLoader(String key, String value) throws Exception {
+        URLClassLoader sample = createSampleClassLoader();
+        URL original = sample.findResource(PFuncContext.PROPERTIES_FILE_PATH);
+        Properties properties = new Properties();
+        try (InputStream in = original.openStream()) {
+            properties.load(in);
+        }
+        properties.setProperty(PropertiesKeys.FUNCTION_INDEX,
+                new URL(original, properties.getProperty(PropertiesKeys.FUNCTION_INDEX)).toExternalForm());
+        properties.setProperty(key, value);
+        File file = File.createTempFile("pfunc", ".properties");
+        file.deleteOnExit();
+        try (OutputStream out = new FileOutputStream(file)) {
+            properties.store(out, null);
+        }
+        URL override = file.toURI().toURL();
+        return new URLClassLoader(sample.getURLs(), null) {
+            @Override
+            public Enumeration<URL> findResources(String name) throws IOException {
+                if (PFuncContext.PROPERTIES_FILE_PATH.equals(name)) {
+                    return Collections.enumeration(Collections.singletonList(override));
+                }
+                return super.findResources(name);
+            }
+        };
+    }
+
+    @Test
+    public void replacesLibraryWhileInvocationsFinish() throws Exception {
+        PFuncContext context = new PFuncContext();
+        PFuncLibrary first = context.loadLibrary("sample", createSampleClassLoader());
+        assertThat(first.getVersion()).isEqualTo(1);
+        PFuncRef ref = context.ref("increment");
+        PFunction oldWaitFor = context.withName("waitFor");
+        assertThat(ref.invokeLong(1L)).isEqualTo(2L);
+
+        // keep an invocation of the old version running across the reload
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<Object> running = CompletableFuture.supplyAsync(() -> {
+            started.countDown();
+            return oldWaitFor.invoke(300L);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        while (first.getInFlight() == 0 && !running.isDone()) {
+            Thread.sleep(1);
+        }
+
+        PFuncLibrary second = context.loadLibrary("sample", createSampleClassLoader());
+        assertThat(second.getVersion()).isEqualTo(2);
+        assertThat(context.getLibraries()).containsOnlyKeys("sample").containsValue(second);
+        assertThat(context.withName("waitFor")).isNotSameAs(oldWaitFor);
+        assertThat(ref.invokeLong(1L)).isEqualTo(2L);
+        assertThat(ref.getFunction()).isSameAs(context.withName("increment"));
+        assertThat(first.isClosed()).isFalse();
+
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo(true);
+        assertThat(first.whenClosed().get(5, TimeUnit.SECONDS)).isSameAs(first);
+        assertThat(second.isClosed()).isFalse();
+
+        PFuncLibrary unloaded = context.unloadLibrary("sample");
+        assertThat(unloaded).isSameAs(second);
+        assertThat(context.getFunctionMap()).isEmpty();
+        assertThat(context.getLibraries()).isEmpty();
+        assertThat(second.whenClosed().get(5, TimeUnit.SECONDS)).isSameAs(second);
+        assertThat(context.unloadLibrary("sample")).isNull();
+    }
+
+    @Test
+    public void unloadsPromptlyAfterTimeoutWithMetricsDisabled() throws Exception {
+        PFuncContext context = new PFuncContext();
+        context.setLibraryDrainTimeoutMillis(60000L);
+        PFuncLibrary library = context.loadLibrary("sample", createSampleClassLoader(PropertiesKeys.METRICS_ENABLED, "false"));
+        PFunction function = context.withName("waitFor");
+        assertThat(((PFuncJarFunction) function).getStatistics()).isNull();
+
+        try {
+            function.invokeAsyncWithOptions(PFuncInvocationOptions.withTimeout(50, TimeUnit.MILLISECONDS).interrupt(false),
+                    10000L).get(5, TimeUnit.SECONDS);
+            fail("Should have timed out");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(PFuncTimeoutException.class);
+        }
+        // the timed out invocation no longer counts as in flight even if it is still running
+        assertThat(library.getInFlight()).isEqualTo(0);
+
+        long start = System.nanoTime();
+        assertThat(context.unloadLibrary("sample").whenClosed().get(5, TimeUnit.SECONDS)).isSameAs(library);
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000);
+    }
+
+    @Test
+    public void reclaimsClassLoadersOfReplacedLibraries() throws Exception {
+        PFuncContext context = new PFuncContext();
+        List<WeakReference<ClassLoader>> classLoaders = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            URLClassLoader classLoader = createSampleClassLoader();
+            classLoaders.add(new WeakReference<>(classLoader));
+            PFuncLibrary library = context.loadLibrary("sample", classLoader);
+            assertThat(context.withName("increment").invokeLong(i)).isEqualTo(i + 1);
+            assertThat(context.withName("helloWorld").invoke("James")).isEqualTo("Hello James");
+            library = null;
+            classLoader = null;
+        }
+        context.unloadLibrary("sample").whenClosed().get(5, TimeUnit.SECONDS);
+
+        for (int i = 0; i < 100 && !allCollected(classLoaders); i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertThat(allCollected(classLoaders)).describedAs("replaced class loaders were garbage collected").isTrue();
+    }
+
+    @Test
+    public void parallelLoadingResolvesDuplicatesLikeSerialLoading() throws Exception {
+        PFuncContext serial = new PFuncContext();
+        serial.loadFunctions(MyFunc.class.getClassLoader());
+
+        for (int i = 0; i < 5; i++) {
+            PFuncContext context = new PFuncContext();
+            context.setParallelLoading(true);
+            context.loadFunctions(MyFunc.class.getClassLoader());
+            assertThat(context.getFunctionMap().keySet()).containsExactlyElementsOf(serial.getFunctionMap().keySet());
+
+            context = new PFuncContext();
+            context.setParallelLoading(true);
+            Map<String, ClassLoader> classLoaders = new LinkedHashMap<>();
+            classLoaders.put("first", createSampleClassLoader());
+            classLoaders.put("second", createSampleClassLoader());
+            classLoaders.put("third", createSampleClassLoader());
+            List<PFuncLibrary> libraries = context.loadLibraries(classLoaders);
+            assertThat(libraries).extracting(PFuncLibrary::getName).containsExactly("first", "second", "third");
+            assertThat(libraries.get(0).getFunctions()).hasSize(serial.getFunctionMap().size());
+            assertThat(libraries.get(1).getFunctions()).isEmpty();
+            assertThat(libraries.get(2).getFunctions()).isEmpty();
+            assertThat(context.withName("increment").getMetadata().getMethod().getDeclaringClass().getClassLoader())
+                    .isSameAs(classLoaders.get("first"));
+            for (PFuncLibrary library : libraries) {
+                context.unloadLibrary(library.getName());
+            }
+        }
+    }
+
+    @Test
+    public void activatesLazyLibrariesOnFirstCall() throws Exception {
+        String key = "io.pfunc:pfunc-sample:test";
+        PFuncContext eager = new PFuncContext();
+        PFuncManifest manifest = new PFuncManifest();
+        manifest.setFunctions(key, eager.loadLibrary("sample", createSampleClassLoader()));
+        File file = File.createTempFile("pfunc", ".manifest");
+        file.deleteOnExit();
+        manifest.store(file);
+
+        manifest = PFuncManifest.load(file, getClass().getClassLoader());
+        assertThat(manifest.getKeys()).containsExactly(key);
+        PFuncInfo increment = null;
+        for (PFuncInfo info : manifest.getFunctions(key)) {
+            if (info.getName().equals("increment")) {
+                increment = info;
+            }
+        }
+        assertThat(increment).isNotNull();
+        assertThat(increment.getReturnType()).isEqualTo(long.class);
+        assertThat(increment.getPrototype()).isEqualTo(eager.withName("increment").getMetadata().getPrototype());
+
+        PFuncContext context = new PFuncContext();
+        AtomicInteger activations = new AtomicInteger();
+        PFuncLibrary lazy = context.loadLazyLibrary("sample", manifest.getFunctions(key), () -> {
+            activations.incrementAndGet();
+            Thread.sleep(50);
+            return createSampleClassLoader();
+        });
+        assertThat(lazy.getClassLoader()).isNull();
+        assertThat(context.getFunctionMap().keySet()).containsExactlyElementsOf(eager.getFunctionMap().keySet());
+        assertThat(context.withName("increment").getMetadata().getReturnType()).isEqualTo(long.class);
+        assertThat(activations.get()).isEqualTo(0);
+
+        PFunction function = context.withName("increment");
+        CountDownLatch start = new CountDownLatch(1);
+        List<CompletableFuture<Object>> calls = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            calls.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return function.invoke(41L);
+            }));
+        }
+        start.countDown();
+        for (CompletableFuture<Object> call : calls) {
+            assertThat(call.get(10, TimeUnit.SECONDS)).isEqualTo(42L);
+        }
+        assertThat(activations.get()).isEqualTo(1);
+
+        PFuncLibrary activated = context.getLibraries().get("sample");
+        assertThat(activated.getVersion()).isEqualTo(2);
+        assertThat(activated.getClassLoader()).isNotNull();
+        assertThat(context.withName("increment")).isInstanceOf(PFuncJarFunction.class);
+        assertThat(context.withName("helloWorld").invoke("James")).isEqualTo("Hello James");
+        assertThat(lazy.whenClosed().get(5, TimeUnit.SECONDS)).isSameAs(lazy);
+        context.unloadLibrary("sample");
+        eager.unloadLibrary("sample");
+    }
+
+    @Test
+    public void closesClassLoaderAndBacksOffWhenActivationFails() throws Exception {
+        PFuncContext eager = new PFuncContext();
+        List<PFuncInfo> metadata = new ArrayList<>();
+        for (PFunction function : eager.loadLibrary("sample", createSampleClassLoader()).getFunctions()) {
+            metadata.add(function.getMetadata());
+        }
+
+        PFuncContext context = new PFuncContext();
+        AtomicInteger activations = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        context.loadLazyLibrary("sample", metadata, () -> {
+            activations.incrementAndGet();
+            return new URLClassLoader(new URL[0], null) {
+                @Override
+                public Enumeration<URL> getResources(String name) throws IOException {
+                    throw new IOException("Corrupt jar");
+                }
+
+                @Override
+                public void close() throws IOException {
+                    closed.incrementAndGet();
+                    super.close();
+                }
+            };
+        });
+        PFunction function = context.withName("increment");
+        for (int i = 0; i < 3; i++) {
+            try {
+                function.invoke(41L);
+                fail("Should have failed to activate the library");
+            } catch (IllegalArgumentException e) {
+                assertThat(e.getMessage()).contains("Corrupt jar");
+            }
+        }
+        assertThat(activations.get()).isEqualTo(1);
+        assertThat(closed.get()).isEqualTo(1);
+        context.unloadLibrary("sample");
+        eager.unloadLibrary("sample");
+    }
+
+    private static boolean allCollected(List<WeakReference<ClassLoader>> references) {
+        for (WeakReference<ClassLoader> reference : references) {
+            if (reference.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
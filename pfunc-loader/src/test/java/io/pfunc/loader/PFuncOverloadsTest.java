@@ -0,0 +1,161 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import io.pfunc.sample.Bootstrap;
+import io.pfunc.sample.MyFunc;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class PFuncOverloadsTest {
+    private PFuncContext context;
+    private PFuncJar jar;
+
+    @Before
+    public void init() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(PropertiesKeys.DIRECT_INVOKE, "true");
+        jar = new PFuncJar(MyFunc.class.getClassLoader(), Bootstrap.class,
+                Bootstrap.class.getMethod("invoke", String.class, Object[].class), properties);
+        context = new PFuncContext();
+        for (Method method : Overloads.class.getMethods()) {
+            if (method.getName().equals("describe")) {
+                context.addFunction(metadata(method), jar);
+            }
+        }
+    }
+
+    @Test
+    public void selectsOverloadByArgumentClasses() throws Exception {
+        PFunction function = context.withName("describe");
+        assertThat(function).isInstanceOf(PFuncOverloads.class);
+        assertThat(((PFuncOverloads) function).getOverloads()).hasSize(4);
+
+        assertThat(function.invoke("a")).isEqualTo("text a");
+        assertThat(function.invoke1(new File("b"))).isEqualTo("file b");
+        assertThat(function.invoke(3L)).isEqualTo(3L);
+        assertThat(function.invokeLong(new Object[]{4L})).isEqualTo(4L);
+        assertThat(function.invoke(1.5)).isEqualTo("object 1.5");
+        // the cached selections are used again when the argument classes change back
+        assertThat(function.invoke("c")).isEqualTo("text c");
+        assertThat(function.invoke(5L)).isEqualTo(5L);
+        // primitive arguments select the overload for their wrapper class without boxing
+        assertThat(function.invokeLong(6L)).isEqualTo(6L);
+
+        assertThat(context.withSignature("describe", File.class).invoke(new File("d"))).isEqualTo("file d");
+        assertThat(context.getStatistics()).containsKeys("describe(java.lang.String arg0)", "describe(long arg0)");
+    }
+
+    @Test
+    public void labelsPrometheusSeriesOfOverloadsBySignature() throws Exception {
+        PFunction function = context.withName("describe");
+        function.invoke("a");
+        function.invoke(3L);
+        function.invoke(4L);
+
+        String text = context.getPrometheusStatistics();
+        assertThat(text).contains("pfunc_invocations_total{function=\"describe\",signature=\"describe(java.lang.String arg0)\"} 1\n");
+        assertThat(text).contains("pfunc_invocations_total{function=\"describe\",signature=\"describe(long arg0)\"} 2\n");
+        // every series has a distinct set of labels
+        Set<String> series = new HashSet<>();
+        for (String line : text.split("\n")) {
+            if (!line.startsWith("#")) {
+                assertThat(series.add(line.substring(0, line.lastIndexOf(' ')))).describedAs(line).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void rejectsAmbiguousArguments() throws Exception {
+        try {
+            context.withName("describe").invoke((Object) null);
+            fail("Should have been ambiguous");
+        } catch (PFuncArgumentException e) {
+            assertThat(e.getMessage()).startsWith("More than one overload of describe matches the arguments [null]");
+        }
+        try {
+            context.withName("describe").invoke("a", "b");
+            fail("Should not have matched");
+        } catch (PFuncArgumentException e) {
+            assertThat(e.getMessage()).startsWith("No overload of describe matches the arguments");
+        }
+    }
+
+    @Test
+    public void dropsDuplicateSignaturesAndUnwrapsLastOverload() throws Exception {
+        context.addFunction(metadata(Overloads.class.getMethod("describe", String.class)), jar);
+        assertThat(((PFuncOverloads) context.withName("describe")).getOverloads()).hasSize(4);
+
+        PFuncContext single = new PFuncContext();
+        PFuncLibrary first = single.loadLazyLibrary("first", Arrays.asList(metadata(Overloads.class.getMethod("describe", String.class))), () -> {
+            throw new IllegalStateException("not activated");
+        });
+        single.loadLazyLibrary("second", Arrays.asList(metadata(Overloads.class.getMethod("describe", long.class))), () -> {
+            throw new IllegalStateException("not activated");
+        });
+        assertThat(single.withName("describe")).isInstanceOf(PFuncOverloads.class);
+        single.unloadLibrary(first.getName());
+        assertThat(single.withName("describe")).isNotInstanceOf(PFuncOverloads.class);
+        assertThat(single.withName("describe").getMetadata().getParameterInfos()[0].getType()).isEqualTo(long.class);
+    }
+
+    private static PFuncInfo metadata(Method method) {
+        PFuncInfo answer = new PFuncInfo();
+        answer.setName(method.getName());
+        answer.setReturnType(method.getReturnType());
+        answer.setMethod(method);
+        Class<?>[] types = method.getParameterTypes();
+        PFuncParameterInfo[] parameterInfos = new PFuncParameterInfo[types.length];
+        for (int i = 0; i < types.length; i++) {
+            parameterInfos[i] = new PFuncParameterInfo();
+            parameterInfos[i].setName("arg" + i);
+            parameterInfos[i].setType(types[i]);
+        }
+        answer.setParameterInfos(parameterInfos);
+        return answer;
+    }
+
+    public static class Overloads {
+        public static String describe(String text) {
+            return "text " + text;
+        }
+
+        public static String describe(File file) {
+            return "file " + file.getName();
+        }
+
+        public static Object describe(long value) {
+            return value;
+        }
+
+        public static String describe(Object value) {
+            return "object " + value;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import io.pfunc.sample.Bootstrap;
+import io.pfunc.sample.MyFunc;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class PFuncPipelineTest {
+    @Test
+    public void composeFunctions() throws Exception {
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        PFuncPipeline pipeline = context.compose("increment", "increment", "increment");
+        // the sample library invokes its functions directly so its default configuration is fused
+        assertThat(pipeline.isFused()).isTrue();
+        assertThat(pipeline.getMetadata().getName()).isEqualTo("increment | increment | increment");
+        assertThat(pipeline.getMetadata().getReturnType()).isEqualTo(long.class);
+        assertThat(pipeline.invoke(1L)).isEqualTo(4L);
+        assertThat(pipeline.invokeLong(1L)).isEqualTo(4L);
+        assertThat(context.getStatistics().get("increment").getCallCount()).isEqualTo(6);
+
+        Object words = context.compose("helloWorld", "words").invoke1("James");
+        assertThat(words).isInstanceOf(Stream.class);
+
+        try {
+            context.compose("helloWorld", "increment");
+            fail("Should have failed to compose a String into a long");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage()).contains("helloWorld");
+        }
+    }
+
+    @Test
+    public void fuseDirectFunctions() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(PropertiesKeys.DIRECT_INVOKE, "true");
+        properties.setProperty(PropertiesKeys.METRICS_ENABLED, "false");
+        PFuncJar jar = new PFuncJar(MyFunc.class.getClassLoader(), Bootstrap.class,
+                Bootstrap.class.getMethod("invoke", String.class, Object[].class), properties);
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        PFuncJarFunction increment = new PFuncJarFunction(context, context.withName("increment").getMetadata(), jar);
+
+        PFuncPipeline pipeline = new PFuncPipeline(increment, increment);
+        assertThat(pipeline.isFused()).isTrue();
+        assertThat(pipeline.invoke(1L)).isEqualTo(3L);
+        assertThat(pipeline.invoke1(5)).isEqualTo(7L);
+    }
+
+    @Test
+    public void fusedStagesAreCountedInFlight() throws Exception {
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        PFuncPipeline pipeline = context.compose("increment", "waitFor");
+        assertThat(pipeline.isFused()).isTrue();
+        PFuncJarFunction waitFor = (PFuncJarFunction) context.withName("waitFor");
+
+        CompletableFuture<Object> running = CompletableFuture.supplyAsync(() -> pipeline.invoke1(300L));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (waitFor.getInFlight() == 0 && !running.isDone() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(waitFor.getInFlight()).isEqualTo(1);
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo(true);
+        assertThat(waitFor.getInFlight()).isEqualTo(0);
+        assertThat(context.getStatistics().get("increment").getCallCount()).isEqualTo(1);
+        assertThat(context.getStatistics().get("waitFor").getCallCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void compatibleTypes() throws Exception {
+        assertThat(PFuncPipeline.isCompatible(int.class, long.class)).isTrue();
+        assertThat(PFuncPipeline.isCompatible(Integer.class, double.class)).isTrue();
+        assertThat(PFuncPipeline.isCompatible(long.class, int.class)).isFalse();
+        assertThat(PFuncPipeline.isCompatible(Object.class, String.class)).isTrue();
+        assertThat(PFuncPipeline.isCompatible(String.class, CharSequence.class)).isTrue();
+        assertThat(PFuncPipeline.isCompatible(String.class, Long.class)).isFalse();
+        assertThat(PFuncPipeline.isCompatible(void.class, Object.class)).isFalse();
+    }
+}
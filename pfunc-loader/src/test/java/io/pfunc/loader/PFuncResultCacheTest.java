@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import io.pfunc.sample.Bootstrap;
+import io.pfunc.sample.MyFunc;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class PFuncResultCacheTest {
+    @Test
+    public void cacheConfiguredFunctions() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(PropertiesKeys.CACHE_FUNCTIONS, "increment");
+        properties.setProperty(PropertiesKeys.CACHE_MAXIMUM_SIZE, "2");
+        PFuncJar jar = new PFuncJar(MyFunc.class.getClassLoader(), Bootstrap.class,
+                Bootstrap.class.getMethod("invoke", String.class, Object[].class), properties);
+
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        assertThat(jar.createResultCache(context.withName("helloWorld").getMetadata())).isNull();
+        PFuncJarFunction function = new PFuncJarFunction(context, context.withName("increment").getMetadata(), jar);
+        PFuncResultCache cache = function.getCache();
+        assertThat(cache).isNotNull();
+
+        Object[] arguments = {1L};
+        assertThat(function.invoke(arguments)).isEqualTo(2L);
+        arguments[0] = 5L;
+        assertThat(function.invoke(1L)).isEqualTo(2L);
+        assertThat(function.invokeLong(1L)).isEqualTo(2L);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+        assertThat(cache.getHitCount()).isEqualTo(2);
+
+        function.invoke(2L);
+        function.invoke(3L);
+        function.invoke(4L);
+        assertThat(cache.size()).isLessThanOrEqualTo(2);
+        assertThat(cache.getEvictionCount()).isGreaterThan(0);
+    }
+
+    @Test
+    public void cachesNullResultsAndExpiresEntries() throws Exception {
+        AtomicLong ticker = new AtomicLong();
+        PFuncResultCache cache = new PFuncResultCache(10, 200, ticker::get);
+        cache.put(new Object[]{"a", new int[]{1, 2}}, null);
+        assertThat(cache.get(new Object[]{"a", new int[]{1, 2}})).isNull();
+        assertThat(cache.get(new Object[]{"b"})).isSameAs(PFuncResultCache.MISSING);
+
+        ticker.addAndGet(TimeUnit.MILLISECONDS.toNanos(200));
+        assertThat(cache.get(new Object[]{"a", new int[]{1, 2}})).isNull();
+        ticker.incrementAndGet();
+        assertThat(cache.get(new Object[]{"a", new int[]{1, 2}})).isSameAs(PFuncResultCache.MISSING);
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void copiesNestedArrayArguments() throws Exception {
+        PFuncResultCache cache = new PFuncResultCache(10, 0);
+        int[] values = {1, 2};
+        String[][] names = {{"a"}, {"b"}};
+        Object[] arguments = {values, names};
+        cache.put(arguments, "first");
+
+        // changing the caller's arrays must not change the cached key
+        values[0] = 5;
+        names[1][0] = "c";
+        assertThat(cache.get(arguments)).isSameAs(PFuncResultCache.MISSING);
+        assertThat(cache.get(new Object[]{new int[]{1, 2}, new String[][]{{"a"}, {"b"}}})).isEqualTo("first");
+    }
+}
@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import io.pfunc.loader.helpers.PrometheusHelper;
+import io.pfunc.sample.MyFunc;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class PFuncStatisticsTest {
+    @Test
+    public void histogramPercentiles() throws Exception {
+        PFuncLatencyHistogram histogram = new PFuncLatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        assertThat(histogram.getCount()).isEqualTo(1000);
+        assertThat(histogram.getMaximumNanos()).isEqualTo(TimeUnit.MICROSECONDS.toNanos(1000));
+        assertThat(histogram.getMeanNanos()).isEqualTo(500500);
+        assertThat((double) histogram.getValueAtPercentile(50)).isBetween(500000.0, 500000 * 1.125);
+        assertThat((double) histogram.getValueAtPercentile(99)).isBetween(990000.0, 990000 * 1.125);
+        assertThat(histogram.getCountBelow(1L << 19)).isEqualTo(524);
+        histogram.record((1L << 20) - 1);
+        assertThat(histogram.getCountAtOrBelow((1L << 20) - 1)).isEqualTo(1001);
+
+        for (long value : new long[]{0, 7, 8, 1000, 123456789, PFuncLatencyHistogram.MAXIMUM_TRACKABLE_NANOS}) {
+            int index = PFuncLatencyHistogram.bucketIndex(value);
+            assertThat(PFuncLatencyHistogram.bucketUpperBound(index)).isGreaterThanOrEqualTo(value);
+            assertThat(index == 0 || PFuncLatencyHistogram.bucketUpperBound(index - 1) < value).isTrue();
+        }
+    }
+
+    @Test
+    public void recordsInvocations() throws Exception {
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        PFunction function = context.withName("increment");
+        assertThat(function.invokeLong(1L)).isEqualTo(2L);
+        assertThat(function.invoke(2L)).isEqualTo(3L);
+        try {
+            function.invoke("notANumber");
+            fail("Should have failed");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        PFuncStatistics statistics = context.getStatistics().get("increment");
+        assertThat(statistics.getCallCount()).isEqualTo(3);
+        assertThat(statistics.getErrorCount()).isEqualTo(1);
+        assertThat(statistics.getInFlight()).isEqualTo(0);
+        assertThat(statistics.getLatency().getCount()).isBetween(0L, 3L);
+
+        String text = context.getPrometheusStatistics();
+        assertThat(text).contains("pfunc_invocations_total{function=\"increment\"} 3\n");
+        assertThat(text).contains("pfunc_invocation_errors_total{function=\"increment\"} 1\n");
+        assertThat(text).contains("pfunc_invocation_duration_seconds_bucket{function=\"increment\",le=\"+Inf\"} ");
+
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        context.registerMBeans(server, PFuncContext.DEFAULT_JMX_DOMAIN);
+        ObjectName name = new ObjectName("io.pfunc:type=Function,name=\"increment\"");
+        assertThat(server.getAttribute(name, "CallCount")).isEqualTo(3L);
+        context.unregisterMBeans(server);
+        assertThat(server.isRegistered(name)).isFalse();
+    }
+
+    @Test
+    public void prometheusHistogramIsScaledBySampleInterval() throws Exception {
+        PFuncStatistics statistics = new PFuncStatistics("sampled", 4);
+        statistics.enter();
+        statistics.exit((1L << 10) - 1, false);
+        statistics.enter();
+        statistics.exit(1L << 10, false);
+        StringBuilder out = new StringBuilder();
+        PrometheusHelper.writeStatistics(Collections.singletonList(statistics), out);
+        String text = out.toString();
+
+        // a latency equal to the bound of a bucket is counted in it
+        assertThat(text).contains("pfunc_invocation_duration_seconds_bucket{function=\"sampled\",le=\"1.023E-6\"} 4\n");
+        assertThat(text).contains("pfunc_invocation_duration_seconds_bucket{function=\"sampled\",le=\"4.095E-6\"} 8\n");
+        assertThat(text).contains("pfunc_invocation_duration_seconds_count{function=\"sampled\"} 8\n");
+        assertThat(text).contains("pfunc_invocation_duration_seconds_sum{function=\"sampled\"} 8.188E-6\n");
+        assertThat(text).contains("pfunc_invocation_latency_sample_interval{function=\"sampled\"} 4\n");
+    }
+
+    @Test
+    public void conversionFailuresDoNotReduceInFlight() throws Exception {
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        PFunction function = context.withName("waitFor");
+        PFuncStatistics statistics = context.getStatistics().get("waitFor");
+        CompletableFuture<Object> running = CompletableFuture.supplyAsync(() -> function.invoke(500L));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (statistics.getInFlight() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(statistics.getInFlight()).isEqualTo(1);
+
+        try {
+            function.invoke("notANumber");
+            fail("Should have failed");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertThat(statistics.getErrorCount()).isEqualTo(1);
+        assertThat(statistics.getInFlight()).isEqualTo(1);
+
+        assertThat(running.get(5, TimeUnit.SECONDS)).isEqualTo(true);
+        assertThat(statistics.getCallCount()).isEqualTo(2);
+        assertThat(statistics.getInFlight()).isEqualTo(0);
+    }
+}
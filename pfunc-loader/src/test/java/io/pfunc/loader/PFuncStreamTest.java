@@ -0,0 +1,246 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import io.pfunc.loader.helpers.StreamHelper;
+import io.pfunc.sample.MyFunc;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class PFuncStreamTest {
+    protected PFuncContext context;
+
+    @Before
+    public void init() throws Exception {
+        context = new PFuncContext(MyFunc.class.getClassLoader());
+    }
+
+    @Test
+    public void streamFunctionResults() throws Exception {
+        PFuncJarFunction function = (PFuncJarFunction) context.withName("words");
+        assertThat(function.isStreaming()).isTrue();
+
+        List<Object> items = collect(function.invokeStream("a b c d"));
+        assertThat(items).containsExactly("a", "b", "c", "d");
+    }
+
+    @Test
+    public void singleValuesArePublishedAsOneItem() throws Exception {
+        PFuncJarFunction function = (PFuncJarFunction) context.withName("helloWorld");
+        assertThat(function.isStreaming()).isFalse();
+
+        assertThat(collect(function.invokeStream("James"))).containsExactly("Hello James");
+    }
+
+    @Test
+    public void reactiveStreamsPublishersOnlyEmitRequestedItems() throws Exception {
+        RangePublisher publisher = new RangePublisher(10);
+        assertThat(StreamHelper.isStreamingType(RangePublisher.class)).isTrue();
+
+        List<Object> items = collect(StreamHelper.toPublisher(publisher, ForkJoinPool.commonPool(), 4));
+        assertThat(items).hasSize(10).startsWith(0, 1, 2);
+        assertThat(publisher.maximumOutstanding).isEqualTo(1);
+    }
+
+    @Test
+    public void closesStreamsWhenCompletedOrCancelled() throws Exception {
+        CountDownLatch completedClosed = new CountDownLatch(1);
+        Stream<Integer> finite = Stream.of(1, 2, 3).onClose(completedClosed::countDown);
+        assertThat(collect(StreamHelper.toPublisher(finite, ForkJoinPool.commonPool(), 4))).containsExactly(1, 2, 3);
+        assertThat(completedClosed.await(10, TimeUnit.SECONDS)).isTrue();
+
+        AtomicLong pulled = new AtomicLong();
+        CountDownLatch cancelledClosed = new CountDownLatch(1);
+        Stream<Integer> infinite = Stream.iterate(0, i -> i + 1).peek(i -> pulled.incrementAndGet()).onClose(cancelledClosed::countDown);
+        StreamHelper.toPublisher(infinite, ForkJoinPool.commonPool(), 4).subscribe(new PFuncFlow.Subscriber<Object>() {
+            private PFuncFlow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(PFuncFlow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Object item) {
+                if (item.equals(2)) {
+                    subscription.cancel();
+                } else {
+                    subscription.request(1);
+                }
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        assertThat(cancelledClosed.await(10, TimeUnit.SECONDS)).isTrue();
+        // the source is not pulled once the subscriber has cancelled
+        assertThat(pulled.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void onlyPullsIteratorsWithDemand() throws Exception {
+        AtomicLong hasNextCalls = new AtomicLong();
+        Iterator<Integer> iterator = new Iterator<Integer>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                hasNextCalls.incrementAndGet();
+                return next < 3;
+            }
+
+            @Override
+            public Integer next() {
+                return next++;
+            }
+        };
+        List<Object> items = new CopyOnWriteArrayList<>();
+        CountDownLatch completed = new CountDownLatch(1);
+        PFuncFlow.Subscription[] subscription = new PFuncFlow.Subscription[1];
+        // run on the calling thread so that the subscription has drained by the time request returns
+        StreamHelper.toPublisher(iterator, Runnable::run, 4).subscribe(new PFuncFlow.Subscriber<Object>() {
+            @Override
+            public void onSubscribe(PFuncFlow.Subscription s) {
+                subscription[0] = s;
+            }
+
+            @Override
+            public void onNext(Object item) {
+                items.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        });
+        // only the check for an empty stream is made before there is demand
+        assertThat(hasNextCalls.get()).isEqualTo(1);
+
+        subscription[0].request(1);
+        assertThat(items).containsExactly(0);
+        assertThat(hasNextCalls.get()).isEqualTo(2);
+
+        subscription[0].request(3);
+        assertThat(items).containsExactly(0, 1, 2);
+        assertThat(completed.await(10, TimeUnit.SECONDS)).isTrue();
+    }
+
+    /**
+     * Requests one item at a time and returns all the items once the stream completes
+     */
+    protected List<Object> collect(PFuncFlow.Publisher<Object> publisher) throws Exception {
+        List<Object> items = new CopyOnWriteArrayList<>();
+        CompletableFuture<List<Object>> answer = new CompletableFuture<>();
+        publisher.subscribe(new PFuncFlow.Subscriber<Object>() {
+            private PFuncFlow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(PFuncFlow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Object item) {
+                items.add(item);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                answer.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                answer.complete(items);
+            }
+        });
+        return answer.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * A reactive streams publisher of the integers up to a maximum which records the largest outstanding demand
+     */
+    public static class RangePublisher implements Publisher<Integer> {
+        private final int count;
+        private volatile long maximumOutstanding;
+
+        public RangePublisher(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super Integer> subscriber) {
+            AtomicLong outstanding = new AtomicLong();
+            subscriber.onSubscribe(new Subscription() {
+                private int next;
+                private boolean emitting;
+
+                @Override
+                public synchronized void request(long n) {
+                    maximumOutstanding = Math.max(maximumOutstanding, outstanding.addAndGet(n));
+                    if (emitting) {
+                        return;
+                    }
+                    emitting = true;
+                    while (outstanding.get() > 0 && next < count) {
+                        outstanding.decrementAndGet();
+                        subscriber.onNext(next++);
+                    }
+                    emitting = false;
+                    if (next == count) {
+                        next++;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+        }
+    }
+}
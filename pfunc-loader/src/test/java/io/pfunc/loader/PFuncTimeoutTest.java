@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.loader;
+
+import io.pfunc.sample.Bootstrap;
+import io.pfunc.sample.MyFunc;
+import org.junit.Test;
+
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class PFuncTimeoutTest {
+    @Test
+    public void timerFiresScheduledTasks() throws Exception {
+        PFuncTimer timer = new PFuncTimer("test-timer", 1, 8);
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            AtomicBoolean cancelledRan = new AtomicBoolean();
+            PFuncTimer.Timeout cancelled = timer.schedule(() -> cancelledRan.set(true), 5, TimeUnit.MILLISECONDS);
+            PFuncTimer.Timeout timeout = timer.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+            assertThat(cancelled.cancel()).isTrue();
+
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(timeout.isExpired()).isTrue();
+            assertThat(cancelled.isCancelled()).isTrue();
+            assertThat(cancelledRan.get()).isFalse();
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void completesWithinDeadline() throws Exception {
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        PFunction function = context.withName("increment");
+        assertThat(function.invokeWithOptions(PFuncInvocationOptions.withTimeout(1, TimeUnit.SECONDS), 1L)).isEqualTo(2L);
+        assertThat(context.getStatistics().get("increment").getTimeoutCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void interruptsTimedOutInvocations() throws Exception {
+        assertTimesOut(PFuncInvocationOptions.withTimeout(50, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void cancelsTimedOutInvocationsWithoutInterrupt() throws Exception {
+        assertTimesOut(PFuncInvocationOptions.withTimeout(50, TimeUnit.MILLISECONDS).interrupt(false));
+    }
+
+    protected void assertTimesOut(PFuncInvocationOptions options) throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(PropertiesKeys.FUNCTION_CONCURRENCY_LIMIT, "1");
+        PFuncJar jar = new PFuncJar(MyFunc.class.getClassLoader(), Bootstrap.class,
+                Bootstrap.class.getMethod("invoke", String.class, Object[].class), properties);
+
+        PFuncContext context = new PFuncContext(MyFunc.class.getClassLoader());
+        PFuncJarFunction function = new PFuncJarFunction(context, context.withName("waitFor").getMetadata(), jar);
+        long start = System.nanoTime();
+        try {
+            function.invokeWithOptions(options, 10000L);
+            fail("Should have timed out");
+        } catch (PFuncTimeoutException e) {
+            assertThat(e.getMessage()).contains("waitFor");
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000);
+
+        PFuncStatistics statistics = function.getStatistics();
+        assertThat(statistics.getTimeoutCount()).isEqualTo(1);
+        assertThat(statistics.getErrorCount()).isEqualTo(1);
+        assertThat(statistics.getInFlight()).isEqualTo(0);
+        assertThat(function.getConcurrencyLimiter().getInFlight()).isEqualTo(0);
+
+        // the cancelled call notices promptly so later calls are not starved
+        assertThat(function.invokeWithOptions(PFuncInvocationOptions.withTimeout(5, TimeUnit.SECONDS), 1L)).isEqualTo(true);
+    }
+}
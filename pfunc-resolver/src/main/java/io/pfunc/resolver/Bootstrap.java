@@ -19,134 +19,488 @@ package io.pfunc.resolver;
 
 import io.pfunc.loader.PFuncContext;
 import io.pfunc.loader.PFuncInfo;
+import io.pfunc.loader.PFuncManifest;
+import io.pfunc.loader.PFuncOverloads;
+import io.pfunc.loader.PFuncRef;
+import io.pfunc.loader.PFuncRegistrySnapshot;
 import io.pfunc.loader.PFunction;
+import org.eclipse.aether.repository.RemoteRepository;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Bootstrap {
     private static final Logger LOGGER = Logger.getLogger(Bootstrap.class.getName());
+    public static final String MANIFEST_PROPERTY = "io.pfunc.manifest";
+    public static final String REPOSITORY_DIRECTIVE = "repository=";
 
     protected static PFuncContext context = new PFuncContext();
+    // shared by all libraries so that they reuse one repository session which may resolve them in parallel
+    private static final Resolver resolver = new Resolver();
+    private static volatile FunctionMetadata functionMetadata;
 
     static {
         init();
     }
 
     protected static void init() {
+        // the .pfunc.libraries files to load keyed by the name of the library loaded from each of them
+        Map<String, URL> sources = new LinkedHashMap<>();
         // lets detect a properites file
         File file = new File(".pfunc.libraries");
         if (file.isFile() && file.exists()) {
-            loadFile(file);
+            addSource(sources, file);
         }
         String property = System.getProperty("io.pfunc.libraries");
         if (property != null && property.length() > 0) {
-            File propertyFile = new File(property);
-            if (!file.getAbsolutePath().equals(propertyFile.getAbsolutePath())) {
-                loadFile(propertyFile);
-            }
+            addSource(sources, new File(property));
         }
 
         Enumeration<URL> urls; 
         try {
             urls = Bootstrap.class.getClassLoader().getResources(".pfunc.libraries");
-         } catch (Exception e) {
+            while (urls.hasMoreElements()) {
+                addSource(sources, urls.nextElement());
+            }
+        } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Failed to .pfunc.libraries files on the classpath due to " + e, e);
-            return;
         }
-        while (urls.hasMoreElements()) {
-            URL url = urls.nextElement();
+        loadSources(context, sources);
+    }
+
+    private static void addSource(Map<String, URL> sources, File file) {
+        try {
+            addSource(sources, file.toURI().toURL());
+        } catch (MalformedURLException e) {
+            LOGGER.log(Level.WARNING, "Failed to load file " + file + " due to " + e, e);
+        }
+    }
+
+    /**
+     * Adds the source unless it has already been added. Files are keyed by their canonical <code>file:</code> URL
+     * so that a file found both on disk and on the classpath is only loaded once
+     */
+    protected static void addSource(Map<String, URL> sources, URL url) {
+        sources.putIfAbsent(sourceKey(url), url);
+    }
+
+    protected static String sourceKey(URL url) {
+        if ("file".equals(url.getProtocol())) {
             try {
-                LOGGER.info("Loading boottrap url " + file);
-                loadLibraries(context, url);
+                return new File(url.toURI()).getCanonicalFile().toURI().toURL().toExternalForm();
             } catch (Exception e) {
-                LOGGER.log(Level.WARNING, "Failed to load  " + url + " due to " + e, e);
+                LOGGER.log(Level.FINE, "Could not find the canonical file of " + url + " due to " + e, e);
+            }
+        }
+        return url.toExternalForm();
+    }
+
+    /**
+     * Loads the libraries listed in each of the .pfunc.libraries files as a library named after the file. The maven
+     * coordinates of all the files are resolved together, then all of the libraries are registered in the order of the
+     * files so that the first file to define a function wins.
+     * <p>
+     * If the <code>io.pfunc.manifest</code> system property names a manifest file then libraries whose coordinates
+     * are in the manifest are registered lazily from their metadata, only being resolved and loaded when one of
+     * their functions is first invoked, while the metadata of the other libraries is added to the manifest.
+     */
+    protected static void loadSources(PFuncContext context, Map<String, URL> sources) {
+        File manifestFile = getManifestFile();
+        PFuncManifest manifest = manifestFile != null ? loadManifest(manifestFile) : null;
+
+        // the libraries listed in each source and those which are not in the manifest so must be loaded now
+        Map<String, List<String>> listed = new LinkedHashMap<>();
+        List<String> eager = new ArrayList<>();
+        for (Map.Entry<String, URL> entry : sources.entrySet()) {
+            List<String> libraries = readLibraries(entry.getValue());
+            if (libraries != null && !libraries.isEmpty()) {
+                listed.put(entry.getKey(), libraries);
+                if (manifest == null || manifest.getFunctions(manifestKey(libraries)) == null) {
+                    eager.add(entry.getKey());
+                }
+            }
+        }
+        Map<String, List<String>> eagerLibraries = new LinkedHashMap<>();
+        for (String name : eager) {
+            eagerLibraries.put(name, listed.get(name));
+        }
+        Map<String, URLClassLoader> classLoaders = createClassLoaders(resolver, eagerLibraries, context.isParallelLoading());
+        if (manifest == null) {
+            loadLibraries(context, classLoaders);
+            return;
+        }
+
+        boolean manifestChanged = false;
+        for (Map.Entry<String, List<String>> entry : listed.entrySet()) {
+            String name = entry.getKey();
+            List<String> libraries = entry.getValue();
+            String key = manifestKey(libraries);
+            if (!eager.contains(name)) {
+                context.loadLazyLibrary(name, manifest.getFunctions(key), () -> {
+                    URLClassLoader classLoader = createClassLoader(libraries);
+                    if (classLoader == null) {
+                        throw new IllegalArgumentException("No libraries could be resolved from " + libraries);
+                    }
+                    return classLoader;
+                });
+            } else if (classLoaders.containsKey(name)) {
+                URLClassLoader classLoader = classLoaders.get(name);
+                try {
+                    manifest.setFunctions(key, context.loadLibrary(name, classLoader));
+                    manifestChanged = true;
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Failed to load  " + name + " due to " + e, e);
+                    closeQuietly(classLoader);
+                }
+            }
+        }
+        if (manifestChanged) {
+            try {
+                manifest.store(manifestFile);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to store the manifest " + manifestFile + " due to " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the class loaders of the named libraries. The maven coordinates of all the libraries are resolved in a
+     * single conflict mediated resolution so that the dependencies they share are only collected once, then each class
+     * loader is given the artifacts of its own coordinates from the shared graph. If that fails each library is
+     * resolved separately, in parallel if enabled, so that one broken library does not stop the others loading.
+     */
+    protected static Map<String, URLClassLoader> createClassLoaders(Resolver resolver, Map<String, List<String>> libraries, boolean parallel) {
+        Map<String, LibraryList> lists = new LinkedHashMap<>();
+        Set<String> coordinates = new LinkedHashSet<>();
+        List<RemoteRepository> repositories = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : libraries.entrySet()) {
+            LibraryList list = new LibraryList(entry.getValue());
+            lists.put(entry.getKey(), list);
+            coordinates.addAll(list.coordinates);
+            repositories.addAll(list.repositories);
+        }
+        Map<String, List<URL>> resolved;
+        try {
+            resolved = coordinates.isEmpty() ? Collections.<String, List<URL>>emptyMap() : resolver.resolveEach(coordinates, repositories);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to resolve " + libraries.keySet() + " together due to " + e, e);
+            return createClassLoadersSeparately(resolver, libraries, parallel);
+        }
+        Map<String, URLClassLoader> answer = new LinkedHashMap<>();
+        for (Map.Entry<String, LibraryList> entry : lists.entrySet()) {
+            LibraryList list = entry.getValue();
+            Set<URL> urls = new LinkedHashSet<>(list.urls);
+            for (String coordinate : list.coordinates) {
+                urls.addAll(resolved.getOrDefault(coordinate, Collections.<URL>emptyList()));
+            }
+            URLClassLoader classLoader = createClassLoader(urls);
+            if (classLoader != null) {
+                answer.put(entry.getKey(), classLoader);
             }
         }
+        return answer;
     }
 
-    private static void loadFile(File file) {
+    private static Map<String, URLClassLoader> createClassLoadersSeparately(Resolver resolver, Map<String, List<String>> libraries, boolean parallel) {
+        List<String> names = new ArrayList<>(libraries.keySet());
+        List<URLClassLoader> created = new ArrayList<>();
+        if (parallel && names.size() > 1) {
+            List<CompletableFuture<URLClassLoader>> futures = new ArrayList<>();
+            for (String name : names) {
+                futures.add(CompletableFuture.supplyAsync(() -> createClassLoader(resolver, name, libraries.get(name)), ForkJoinPool.commonPool()));
+            }
+            for (CompletableFuture<URLClassLoader> future : futures) {
+                created.add(future.join());
+            }
+        } else {
+            for (String name : names) {
+                created.add(createClassLoader(resolver, name, libraries.get(name)));
+            }
+        }
+        Map<String, URLClassLoader> answer = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (created.get(i) != null) {
+                answer.put(names.get(i), created.get(i));
+            }
+        }
+        return answer;
+    }
+
+    private static void loadLibraries(PFuncContext context, Map<String, URLClassLoader> classLoaders) {
         try {
-            LOGGER.info("Loading boottrap file " + file);
-            loadLibraries(context, file);
+            context.loadLibraries(classLoaders);
         } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Failed to load file " + file + " due to " + e, e);
+            // lets load the libraries one at a time so that one broken library does not stop the others loading
+            LOGGER.log(Level.WARNING, "Failed to load libraries " + classLoaders.keySet() + " due to " + e, e);
+            for (Map.Entry<String, URLClassLoader> entry : classLoaders.entrySet()) {
+                try {
+                    context.loadLibrary(entry.getKey(), entry.getValue());
+                } catch (Exception e2) {
+                    LOGGER.log(Level.WARNING, "Failed to load  " + entry.getKey() + " due to " + e2, e2);
+                    closeQuietly(entry.getValue());
+                }
+            }
         }
     }
 
+    /**
+     * Returns the manifest file named by the <code>io.pfunc.manifest</code> system property or null if lazy
+     * loading is not enabled
+     */
+    protected static File getManifestFile() {
+        String property = System.getProperty(MANIFEST_PROPERTY);
+        if (property != null && property.length() > 0) {
+            return new File(property);
+        }
+        return null;
+    }
+
+    private static PFuncManifest loadManifest(File file) {
+        try {
+            return PFuncManifest.load(file, Bootstrap.class.getClassLoader());
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load the manifest " + file + " due to " + e, e);
+            return new PFuncManifest();
+        }
+    }
+
+    /**
+     * Returns the key of the libraries in the manifest which is made of their coordinates and URLs
+     */
+    protected static String manifestKey(List<String> libraries) {
+        return String.join(" ", libraries);
+    }
+
+    /**
+     * Returns the libraries listed in the .pfunc.libraries file at the URL, logging and returning null if the file
+     * could not be read
+     */
+    private static List<String> readLibraries(URL url) {
+        LOGGER.info("Loading boottrap url " + url);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream()))) {
+            return readLibraries(reader);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load  " + url + " due to " + e, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the class loader of the libraries, logging and returning null if the libraries could not be resolved
+     */
+    private static URLClassLoader createClassLoader(Resolver resolver, String name, List<String> libraries) {
+        try {
+            return createClassLoader(resolver, libraries);
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Failed to load  " + name + " due to " + e, e);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(URLClassLoader classLoader) {
+        try {
+            classLoader.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Failed to close " + classLoader + " due to " + e, e);
+        }
+    }
+
+    /**
+     * Loads the libraries listed in the file as a library named after the file, replacing the libraries previously
+     * loaded from it
+     */
     public static void loadLibraries(PFuncContext context, File file) throws Exception {
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            loadLibraries(context, reader);
+            loadLibraries(context, sourceKey(file.toURI().toURL()), reader);
         }
     }
     public static void loadLibraries(PFuncContext context, URL url) throws Exception {
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(url.openStream()))) {
-            loadLibraries(context, reader);
+            loadLibraries(context, sourceKey(url), reader);
         }
     }
 
     protected static void loadLibraries(PFuncContext context, BufferedReader reader) throws Exception {
-        List<String> coordinates = new ArrayList<>();
-        List<URL> urls = new ArrayList<>();
-            while (true) {
-                String line = reader.readLine();
-                if (line == null) {
-                    break;
-                }
-                line = line.trim();
-                if (line.startsWith("mvn://")) {
-                    coordinates.add(line.substring("mvn://".length()));
-                } else if (line.startsWith("mvn:")) {
-                    coordinates.add(line.substring("mvn:".length()));
-                } else if (line.length() > 0) {
-                    try {
-                        URL u = new URL(line);
-                        urls.add(u);
-                    } catch (MalformedURLException e) {
-                        LOGGER.log(Level.WARNING, "Failed to parse URL " + line + " due to " + e, e);
-                    }
+        loadLibraries(context, null, reader);
+    }
+
+    /**
+     * Loads the listed libraries into a new class loader registered as a new version of the named library, or
+     * adds their functions to the context if there is no name
+     */
+    protected static void loadLibraries(PFuncContext context, String name, BufferedReader reader) throws Exception {
+        URLClassLoader classLoader = createClassLoader(reader);
+        if (classLoader != null) {
+            if (name != null) {
+                try {
+                    context.loadLibrary(name, classLoader);
+                } catch (Exception e) {
+                    classLoader.close();
+                    throw e;
                 }
+            } else {
+                context.loadFunctions(classLoader);
             }
-        if (!coordinates.isEmpty()) {
-            Resolver resolver = new Resolver();
-            urls.addAll(resolver.resolveCoordinates(coordinates));
+        } else if (name != null) {
+            context.unloadLibrary(name);
         }
-        if (!urls.isEmpty()) {
-            URL[] urlArray = new URL[urls.size()];
-            urls.toArray(urlArray);
-            ClassLoader parentClassLoader = Bootstrap.class.getClassLoader();
-            URLClassLoader classLoader = new URLClassLoader(urlArray, parentClassLoader);
-            context.loadFunctions(classLoader);
+    }
+
+    /**
+     * Resolves the libraries listed by the reader returning a class loader for them or null if none are listed
+     */
+    protected static URLClassLoader createClassLoader(BufferedReader reader) throws Exception {
+        return createClassLoader(readLibraries(reader));
+    }
+
+    /**
+     * Returns the non blank lines of the reader, each of which is maven coordinates or a URL
+     */
+    protected static List<String> readLibraries(BufferedReader reader) throws IOException {
+        List<String> answer = new ArrayList<>();
+        while (true) {
+            String line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            line = line.trim();
+            if (line.length() > 0) {
+                answer.add(line);
+            }
         }
+        return answer;
+    }
+
+    /**
+     * Resolves the maven coordinates and URLs returning a class loader for them or null if there are none. The
+     * coordinates are resolved from the configured repositories followed by those of any
+     * <code>repository=id::url</code> lines.
+     */
+    protected static URLClassLoader createClassLoader(List<String> libraries) throws Exception {
+        return createClassLoader(resolver, libraries);
+    }
+
+    private static URLClassLoader createClassLoader(Resolver resolver, List<String> libraries) throws Exception {
+        LibraryList list = new LibraryList(libraries);
+        Set<URL> urls = new LinkedHashSet<>(list.urls);
+        if (!list.coordinates.isEmpty()) {
+            urls.addAll(resolver.resolveCoordinates(list.coordinates, list.repositories));
+        }
+        return createClassLoader(urls);
+    }
+
+    private static URLClassLoader createClassLoader(Collection<URL> urls) {
+        if (urls.isEmpty()) {
+            return null;
+        }
+        URL[] urlArray = new URL[urls.size()];
+        urls.toArray(urlArray);
+        ClassLoader parentClassLoader = Bootstrap.class.getClassLoader();
+        return new URLClassLoader(urlArray, parentClassLoader);
     }
 
     public static PFuncContext getContext() {
         return context;
     }
 
+    /**
+     * Returns the resolver of the maven coordinates of the libraries which exposes the statistics of its repositories
+     */
+    public static Resolver getResolver() {
+        return resolver;
+    }
+
     public static Object invoke(String functionName, Object[] arguments) {
         return context.withName(functionName).invoke(arguments);
     }
 
+    /**
+     * Returns a handle to the function which hot callers can invoke repeatedly without looking up its name
+     */
+    public static PFuncRef functionRef(String functionName) {
+        return context.ref(functionName);
+    }
+
+    /**
+     * Returns a copy of the metadata of the loaded functions sorted by name. The metadata is only collected again
+     * when the functions change and each caller gets its own copy of the array so it may be modified.
+     */
     public static PFuncInfo[] functionMetadata() throws NoSuchMethodException {
-        List<PFuncInfo> list = new ArrayList<>();
-        Collection<PFunction> functions = context.getFunctionMap().values();
-        for (PFunction function : functions) {
-            list.add(function.getMetadata());
+        PFuncRegistrySnapshot snapshot = context.getSnapshot();
+        FunctionMetadata answer = functionMetadata;
+        if (answer == null || answer.snapshot != snapshot) {
+            answer = new FunctionMetadata(snapshot);
+            functionMetadata = answer;
+        }
+        return answer.infos.clone();
+    }
+
+    /**
+     * The function metadata derived from a snapshot of the functions
+     */
+    private static class FunctionMetadata {
+        private final PFuncRegistrySnapshot snapshot;
+        private final PFuncInfo[] infos;
+
+        FunctionMetadata(PFuncRegistrySnapshot snapshot) {
+            this.snapshot = snapshot;
+            List<PFuncInfo> list = new ArrayList<>();
+            for (PFunction function : snapshot.getFunctions()) {
+                if (function instanceof PFuncOverloads) {
+                    for (PFunction overload : ((PFuncOverloads) function).getOverloads()) {
+                        list.add(overload.getMetadata());
+                    }
+                } else {
+                    list.add(function.getMetadata());
+                }
+            }
+            this.infos = list.toArray(new PFuncInfo[list.size()]);
+        }
+    }
+
+    /**
+     * The maven coordinates, repositories and URLs listed in a .pfunc.libraries file
+     */
+    private static class LibraryList {
+        final List<String> coordinates = new ArrayList<>();
+        final List<RemoteRepository> repositories = new ArrayList<>();
+        final List<URL> urls = new ArrayList<>();
+
+        LibraryList(List<String> libraries) {
+            for (String line : libraries) {
+                if (line.startsWith(REPOSITORY_DIRECTIVE)) {
+                    repositories.add(ResolverSettings.parseRepository(line.substring(REPOSITORY_DIRECTIVE.length()).trim()));
+                } else if (line.startsWith("mvn://")) {
+                    coordinates.add(line.substring("mvn://".length()).trim());
+                } else if (line.startsWith("mvn:")) {
+                    coordinates.add(line.substring("mvn:".length()).trim());
+                } else {
+                    try {
+                        urls.add(new URL(line));
+                    } catch (MalformedURLException e) {
+                        LOGGER.log(Level.WARNING, "Failed to parse URL " + line + " due to " + e, e);
+                    }
+                }
+            }
         }
-        PFuncInfo[] answer = new PFuncInfo[list.size()];
-        list.toArray(answer);
-        return answer;
     }
-}
\ No newline at end of file
+}
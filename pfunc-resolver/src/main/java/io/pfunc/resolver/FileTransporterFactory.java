@@ -0,0 +1,99 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.resolver;
+
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.spi.connector.transport.AbstractTransporter;
+import org.eclipse.aether.spi.connector.transport.GetTask;
+import org.eclipse.aether.spi.connector.transport.PeekTask;
+import org.eclipse.aether.spi.connector.transport.PutTask;
+import org.eclipse.aether.spi.connector.transport.Transporter;
+import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transfer.NoTransporterException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.net.URI;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+
+/**
+ * Transports artifacts from directory repositories with <code>file:</code> URLs, which remain usable in offline mode
+ */
+public class FileTransporterFactory implements TransporterFactory {
+    @Override
+    public Transporter newInstance(RepositorySystemSession session, RemoteRepository repository) throws NoTransporterException {
+        if (!"file".equalsIgnoreCase(repository.getProtocol())) {
+            throw new NoTransporterException(repository);
+        }
+        try {
+            return new FileTransporter(Paths.get(URI.create(repository.getUrl())).toFile());
+        } catch (IllegalArgumentException e) {
+            throw new NoTransporterException(repository, e);
+        }
+    }
+
+    @Override
+    public float getPriority() {
+        return 1;
+    }
+
+    private static class FileTransporter extends AbstractTransporter {
+        private final File basedir;
+
+        FileTransporter(File basedir) {
+            this.basedir = basedir;
+        }
+
+        @Override
+        public int classify(Throwable error) {
+            return error instanceof FileNotFoundException || error instanceof NoSuchFileException ? ERROR_NOT_FOUND : ERROR_OTHER;
+        }
+
+        @Override
+        protected void implPeek(PeekTask task) throws Exception {
+            File file = getFile(task.getLocation());
+            if (!file.isFile()) {
+                throw new FileNotFoundException(file.toString());
+            }
+        }
+
+        @Override
+        protected void implGet(GetTask task) throws Exception {
+            File file = getFile(task.getLocation());
+            utilGet(task, new FileInputStream(file), true, file.length(), false);
+        }
+
+        @Override
+        protected void implPut(PutTask task) throws Exception {
+            File file = getFile(task.getLocation());
+            file.getParentFile().mkdirs();
+            utilPut(task, new FileOutputStream(file), true);
+        }
+
+        @Override
+        protected void implClose() {
+        }
+
+        private File getFile(URI location) {
+            return new File(basedir, location.getPath());
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.resolver;
+
+import io.pfunc.loader.PFuncLatencyHistogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The transfers of a {@link Resolver} from a repository, including failed ones such as artifacts or checksums which
+ * were not found, so that slow or failing repositories can be diagnosed
+ */
+public class RepositoryStatistics {
+    private final String url;
+    private final LongAdder transfers = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final PFuncLatencyHistogram latency = new PFuncLatencyHistogram();
+
+    public RepositoryStatistics(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String toString() {
+        return "RepositoryStatistics{" + url + " transfers: " + getTransferCount() + " failures: " + getFailureCount()
+                + " bytes: " + getTransferredBytes() + " latency: " + latency + "}";
+    }
+
+    public void transferred(long latencyMillis, long bytes, boolean failed) {
+        transfers.increment();
+        if (failed) {
+            failures.increment();
+        }
+        this.bytes.add(bytes);
+        latency.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0, latencyMillis)));
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public long getTransferCount() {
+        return transfers.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getTransferredBytes() {
+        return bytes.sum();
+    }
+
+    public PFuncLatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getMeanLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(latency.getMeanNanos());
+    }
+
+    public long getMaximumLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(latency.getMaximumNanos());
+    }
+}
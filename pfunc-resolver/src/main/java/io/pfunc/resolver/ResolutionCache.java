@@ -0,0 +1,370 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.resolver;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A persistent cache of the artifact files which a list of maven coordinates resolved to from a list of repositories,
+ * stored as one file per coordinate and repository list under the <code>.pfunc/resolutions</code> directory of the
+ * local repository.
+ * <p>
+ * A cached resolution is only used while all of its files still exist with the same size and modification time, or
+ * the same checksum if they have been touched. Resolutions of SNAPSHOT versions or version ranges can change in the
+ * remote repositories so they expire after {@link #getVolatileExpiry()} milliseconds, whether those versions are in
+ * the coordinates themselves or were resolved for any of their dependencies.
+ */
+public class ResolutionCache {
+    private static final Logger LOGGER = Logger.getLogger(ResolutionCache.class.getName());
+    /**
+     * Set to <code>false</code> to disable the resolution cache
+     */
+    public static final String CACHE_PROPERTY = "io.pfunc.resolutionCache";
+    /**
+     * The number of milliseconds after which resolutions of SNAPSHOT versions or version ranges expire; zero to never
+     * reuse them or negative to never expire them
+     */
+    public static final String VOLATILE_EXPIRY_PROPERTY = "io.pfunc.resolutionCache.volatileExpiry";
+    public static final long DEFAULT_VOLATILE_EXPIRY = TimeUnit.DAYS.toMillis(1);
+
+    private static final String COORDINATE = "coordinate.";
+    private static final String REPOSITORY = "repository.";
+    private static final String ARTIFACT = "artifact.";
+
+    private final File directory;
+    private long volatileExpiry = Long.getLong(VOLATILE_EXPIRY_PROPERTY, DEFAULT_VOLATILE_EXPIRY);
+
+    public ResolutionCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cache stored in the given local repository or null if it is disabled via the
+     * <code>io.pfunc.resolutionCache</code> system property
+     */
+    public static ResolutionCache createDefault(File localRepository) {
+        if ("false".equalsIgnoreCase(System.getProperty(CACHE_PROPERTY))) {
+            return null;
+        }
+        return new ResolutionCache(new File(localRepository, ".pfunc/resolutions"));
+    }
+
+    /**
+     * Returns the trimmed non empty coordinates in their original order, as that is the order of the class path
+     */
+    public static List<String> normalize(Iterable<String> coordinates) {
+        List<String> answer = new ArrayList<>();
+        for (String coordinate : coordinates) {
+            String trimmed = coordinate.trim();
+            if (!trimmed.isEmpty()) {
+                answer.add(trimmed);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the hash of the normalized coordinates and repository URLs used to name their cache entry
+     */
+    public static String key(List<String> coordinates, List<String> repositories) {
+        MessageDigest digest = sha1();
+        for (String coordinate : coordinates) {
+            digest.update(coordinate.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        for (String repository : repositories) {
+            digest.update((byte) '@');
+            digest.update(repository.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns true if the coordinate is a SNAPSHOT, version range or LATEST/RELEASE whose resolution can change
+     */
+    public static boolean isVolatile(String coordinate) {
+        String version = new DefaultArtifact(coordinate).getVersion();
+        return version.endsWith("SNAPSHOT") || version.startsWith("[") || version.startsWith("(")
+                || version.equals("LATEST") || version.equals("RELEASE");
+    }
+
+    /**
+     * Returns the files the normalized coordinates were resolved to from the repositories or null if there is no valid
+     * cached resolution
+     */
+    public List<File> get(List<String> coordinates, List<String> repositories) {
+        Properties properties = load(coordinates, repositories);
+        if (properties == null) {
+            return null;
+        }
+        List<File> answer = new ArrayList<>();
+        for (int i = 0; properties.containsKey(ARTIFACT + i + ".file"); i++) {
+            answer.add(new File(properties.getProperty(ARTIFACT + i + ".file")));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the files each of the normalized coordinates and its dependencies were resolved to by a single
+     * resolution from the repositories or null if there is no valid cached resolution
+     */
+    public Map<String, List<File>> getEach(List<String> coordinates, List<String> repositories) {
+        Properties properties = load(coordinates, repositories);
+        if (properties == null) {
+            return null;
+        }
+        Map<String, List<File>> answer = new LinkedHashMap<>();
+        for (int i = 0; i < coordinates.size(); i++) {
+            String indices = properties.getProperty(COORDINATE + i + ".artifacts");
+            if (indices == null) {
+                return null;
+            }
+            List<File> files = new ArrayList<>();
+            for (String index : indices.split(",")) {
+                if (!index.isEmpty()) {
+                    files.add(new File(properties.getProperty(ARTIFACT + index + ".file")));
+                }
+            }
+            answer.put(coordinates.get(i), files);
+        }
+        return answer;
+    }
+
+    /**
+     * Stores the files the normalized coordinates were resolved to from the repositories
+     */
+    public void put(List<String> coordinates, List<String> repositories, List<File> files) throws IOException {
+        put(coordinates, repositories, files, false);
+    }
+
+    /**
+     * Stores the files the normalized coordinates were resolved to from the repositories, expiring them like a
+     * SNAPSHOT version if the resolution is volatile such as when a dependency resolved to a SNAPSHOT or from a
+     * version range
+     */
+    public void put(List<String> coordinates, List<String> repositories, List<File> files, boolean volatileResolution) throws IOException {
+        Properties properties = createProperties(coordinates, repositories, volatileResolution);
+        for (int i = 0; i < files.size(); i++) {
+            setArtifact(properties, i, files.get(i));
+        }
+        store(getFile(coordinates, repositories), properties);
+    }
+
+    /**
+     * Stores the files each of the normalized coordinates and its dependencies were resolved to by a single
+     * resolution from the repositories
+     */
+    public void putEach(List<String> coordinates, List<String> repositories, Map<String, List<File>> files) throws IOException {
+        putEach(coordinates, repositories, files, false);
+    }
+
+    /**
+     * Stores the files each of the normalized coordinates and its dependencies were resolved to by a single
+     * resolution from the repositories, expiring them like a SNAPSHOT version if the resolution is volatile
+     */
+    public void putEach(List<String> coordinates, List<String> repositories, Map<String, List<File>> files,
+                        boolean volatileResolution) throws IOException {
+        Properties properties = createProperties(coordinates, repositories, volatileResolution);
+        Map<File, Integer> indices = new HashMap<>();
+        for (int i = 0; i < coordinates.size(); i++) {
+            StringBuilder builder = new StringBuilder();
+            for (File file : files.getOrDefault(coordinates.get(i), Collections.<File>emptyList())) {
+                Integer index = indices.get(file);
+                if (index == null) {
+                    index = indices.size();
+                    indices.put(file, index);
+                    setArtifact(properties, index, file);
+                }
+                if (builder.length() > 0) {
+                    builder.append(',');
+                }
+                builder.append(index);
+            }
+            properties.setProperty(COORDINATE + i + ".artifacts", builder.toString());
+        }
+        store(getFile(coordinates, repositories), properties);
+    }
+
+    /**
+     * Returns the file the resolution of the normalized coordinates from the repositories is cached in
+     */
+    public File getFile(List<String> coordinates, List<String> repositories) {
+        return new File(directory, key(coordinates, repositories) + ".properties");
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public long getVolatileExpiry() {
+        return volatileExpiry;
+    }
+
+    public void setVolatileExpiry(long volatileExpiry) {
+        this.volatileExpiry = volatileExpiry;
+    }
+
+    private boolean isExpired(Properties properties) {
+        if (volatileExpiry < 0) {
+            return false;
+        }
+        long resolved = Long.parseLong(properties.getProperty("resolved"));
+        return System.currentTimeMillis() - resolved >= volatileExpiry;
+    }
+
+    /**
+     * Returns the properties of the cache entry if all of its files are still valid
+     */
+    private Properties load(List<String> coordinates, List<String> repositories) {
+        File file = getFile(coordinates, repositories);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                properties.load(in);
+            }
+            if (!coordinates.equals(loadList(properties, COORDINATE)) || !repositories.equals(loadList(properties, REPOSITORY))) {
+                return null;
+            }
+            if (Boolean.parseBoolean(properties.getProperty("volatile")) && isExpired(properties)) {
+                return null;
+            }
+            boolean touched = false;
+            for (int i = 0; properties.containsKey(ARTIFACT + i + ".file"); i++) {
+                String prefix = ARTIFACT + i;
+                File artifact = new File(properties.getProperty(prefix + ".file"));
+                if (!artifact.isFile()) {
+                    return null;
+                }
+                long length = Long.parseLong(properties.getProperty(prefix + ".length"));
+                long lastModified = Long.parseLong(properties.getProperty(prefix + ".lastModified"));
+                if (artifact.length() != length || artifact.lastModified() != lastModified) {
+                    if (!checksum(artifact).equals(properties.getProperty(prefix + ".sha1"))) {
+                        return null;
+                    }
+                    properties.setProperty(prefix + ".length", Long.toString(artifact.length()));
+                    properties.setProperty(prefix + ".lastModified", Long.toString(artifact.lastModified()));
+                    touched = true;
+                }
+            }
+            if (touched) {
+                // lets avoid checksumming the touched files again on the next start
+                store(file, properties);
+            }
+            return properties;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Ignoring the invalid resolution cache entry " + file + " due to " + e, e);
+            return null;
+        }
+    }
+
+    private static Properties createProperties(List<String> coordinates, List<String> repositories, boolean volatileResolution) {
+        Properties properties = new Properties();
+        boolean isVolatile = volatileResolution;
+        for (int i = 0; i < coordinates.size(); i++) {
+            String coordinate = coordinates.get(i);
+            properties.setProperty(COORDINATE + i, coordinate);
+            isVolatile |= isVolatile(coordinate);
+        }
+        for (int i = 0; i < repositories.size(); i++) {
+            properties.setProperty(REPOSITORY + i, repositories.get(i));
+        }
+        properties.setProperty("volatile", Boolean.toString(isVolatile));
+        properties.setProperty("resolved", Long.toString(System.currentTimeMillis()));
+        return properties;
+    }
+
+    private static void setArtifact(Properties properties, int index, File file) throws IOException {
+        File artifact = file.getAbsoluteFile();
+        String prefix = ARTIFACT + index;
+        properties.setProperty(prefix + ".file", artifact.getPath());
+        properties.setProperty(prefix + ".length", Long.toString(artifact.length()));
+        properties.setProperty(prefix + ".lastModified", Long.toString(artifact.lastModified()));
+        properties.setProperty(prefix + ".sha1", checksum(artifact));
+    }
+
+    private void store(File file, Properties properties) throws IOException {
+        directory.mkdirs();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile.toPath())) {
+                properties.store(out, "pfunc resolution");
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    private static List<String> loadList(Properties properties, String prefix) {
+        List<String> answer = new ArrayList<>();
+        for (int i = 0; properties.containsKey(prefix + i); i++) {
+            answer.add(properties.getProperty(prefix + i));
+        }
+        return answer;
+    }
+
+    private static String checksum(File file) throws IOException {
+        MessageDigest digest = sha1();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            for (int count; (count = in.read(buffer)) > 0; ) {
+                digest.update(buffer, 0, count);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -19,10 +19,13 @@ package io.pfunc.resolver;
 import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
 import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.collection.CollectRequest;
 import org.eclipse.aether.connector.basic.BasicRepositoryConnectorFactory;
 import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
 import org.eclipse.aether.impl.DefaultServiceLocator;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.RemoteRepository;
@@ -31,56 +34,332 @@ import org.eclipse.aether.resolution.DependencyRequest;
 import org.eclipse.aether.resolution.DependencyResult;
 import org.eclipse.aether.spi.connector.RepositoryConnectorFactory;
 import org.eclipse.aether.spi.connector.transport.TransporterFactory;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferResource;
 import org.eclipse.aether.transport.http.HttpTransporterFactory;
+import org.eclipse.aether.util.graph.transformer.ConflictResolver;
 
+import java.io.File;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
+ * Resolves maven coordinates to the URLs of their artifacts and transitive dependencies. Resolutions of coordinate
+ * lists are cached in the local repository so that later starts only need to check the cached files still exist.
+ * <p>
+ * A resolver is thread safe; it lazily creates a session on the first resolution which is then shared by all
+ * resolutions, along with the repository system which is shared by all resolvers. The artifacts of a dependency
+ * graph are downloaded in parallel using up to {@link #getDownloadThreads()} threads per repository. The
+ * repositories, mirrors and offline mode come from the {@link ResolverSettings}.
  */
 public class Resolver {
+    private static final Logger LOGGER = Logger.getLogger(Resolver.class.getName());
+    /**
+     * The maximum number of artifacts to download from a repository in parallel
+     */
+    public static final String THREADS_PROPERTY = "io.pfunc.resolver.threads";
+    public static final int DEFAULT_THREADS = 8;
+
+    private final ResolverSettings settings;
+    private final Map<String, RepositoryStatistics> repositoryStatistics = new ConcurrentHashMap<>();
+    private ResolutionCache resolutionCache;
+    private int downloadThreads = Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS);
+    private volatile RepositorySystemSession session;
+
+    public Resolver() {
+        this(ResolverSettings.load());
+    }
+
+    public Resolver(ResolverSettings settings) {
+        this.settings = settings;
+        this.resolutionCache = ResolutionCache.createDefault(settings.getLocalRepository());
+    }
+
     public List<URL> resolveCoordinates(Iterable<String> coordinates) throws Exception {
-        List<Dependency> dependencies = createDependencies(coordinates);
-        return resolveCoordinates(dependencies);
+        return resolveCoordinates(coordinates, Collections.<RemoteRepository>emptyList());
+    }
+
+    /**
+     * Resolves the coordinates from the configured repositories followed by the given repositories
+     */
+    public List<URL> resolveCoordinates(Iterable<String> coordinates, List<RemoteRepository> repositories) throws Exception {
+        List<String> normalized = ResolutionCache.normalize(coordinates);
+        List<RemoteRepository> remoteRepositories = getRepositories(repositories);
+        List<String> urls = new ArrayList<>();
+        for (RemoteRepository repository : remoteRepositories) {
+            urls.add(repository.getUrl());
+        }
+        List<File> files = resolutionCache != null ? resolutionCache.get(normalized, urls) : null;
+        if (files == null) {
+            DependencyResult result = resolveDependencies(createDependencies(normalized), remoteRepositories);
+            files = new ArrayList<>();
+            for (ArtifactResult artifact : result.getArtifactResults()) {
+                files.add(artifact.getArtifact().getFile());
+            }
+            if (resolutionCache != null) {
+                try {
+                    resolutionCache.put(normalized, urls, files, isVolatile(result.getRoot()));
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Failed to cache the resolution of " + normalized + " due to " + e, e);
+                }
+            }
+        }
+        return toURLs(files);
     }
 
     public List<URL> resolveCoordinates(String... coordinates) throws Exception {
-        List<Dependency> dependencies = createDependencies(coordinates);
-        return resolveCoordinates(dependencies);
+        return resolveCoordinates(Arrays.asList(coordinates));
+    }
+
+    /**
+     * Resolves the union of the coordinates in a single conflict mediated resolution from the configured repositories
+     * followed by the given repositories, returning the URLs of each coordinate and its dependencies in the shared
+     * dependency graph keyed by the normalized coordinate
+     */
+    public Map<String, List<URL>> resolveEach(Iterable<String> coordinates, List<RemoteRepository> repositories) throws Exception {
+        List<String> normalized = new ArrayList<>(new LinkedHashSet<>(ResolutionCache.normalize(coordinates)));
+        List<RemoteRepository> remoteRepositories = getRepositories(repositories);
+        List<String> urls = new ArrayList<>();
+        for (RemoteRepository repository : remoteRepositories) {
+            urls.add(repository.getUrl());
+        }
+        Map<String, List<File>> files = resolutionCache != null ? resolutionCache.getEach(normalized, urls) : null;
+        if (files == null) {
+            files = new LinkedHashMap<>();
+            DependencyNode root = resolveDependencies(createDependencies(normalized), remoteRepositories).getRoot();
+            boolean volatileResolution = isVolatile(root);
+            // the nodes which lost conflicts refer to the winners so any node of a group and artifact will do
+            Map<String, DependencyNode> nodes = new HashMap<>();
+            for (DependencyNode child : root.getChildren()) {
+                nodes.putIfAbsent(versionlessKey(child.getArtifact()), child);
+            }
+            for (String coordinate : normalized) {
+                Set<File> coordinateFiles = new LinkedHashSet<>();
+                DependencyNode node = nodes.get(versionlessKey(new DefaultArtifact(coordinate)));
+                if (node != null) {
+                    addFiles(node, coordinateFiles, Collections.newSetFromMap(new IdentityHashMap<>()));
+                }
+                files.put(coordinate, new ArrayList<>(coordinateFiles));
+            }
+            if (resolutionCache != null) {
+                try {
+                    resolutionCache.putEach(normalized, urls, files, volatileResolution);
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Failed to cache the resolution of " + normalized + " due to " + e, e);
+                }
+            }
+        }
+        Map<String, List<URL>> answer = new LinkedHashMap<>();
+        for (Map.Entry<String, List<File>> entry : files.entrySet()) {
+            answer.put(entry.getKey(), toURLs(entry.getValue()));
+        }
+        return answer;
     }
 
     public List<URL> resolveCoordinates(List<Dependency> dependencies) throws Exception {
-        DefaultServiceLocator serviceLocator = MavenRepositorySystemUtils.newServiceLocator();
-        serviceLocator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
-        serviceLocator.addService(TransporterFactory.class, HttpTransporterFactory.class);
+        return toURLs(resolveFiles(dependencies, getRepositories(Collections.<RemoteRepository>emptyList())));
+    }
+
+    /**
+     * Returns the configured repositories followed by the given repositories and then maven central with each
+     * replaced by its mirror, if it has one, and without duplicate ids
+     */
+    public List<RemoteRepository> getRepositories(List<RemoteRepository> repositories) {
+        Map<String, RemoteRepository> answer = new LinkedHashMap<>();
+        RemoteRepository central = null;
+        for (RemoteRepository repository : settings.getRepositories()) {
+            if (central == null && ResolverSettings.CENTRAL_ID.equals(repository.getId())) {
+                central = repository;
+                continue;
+            }
+            RemoteRepository mirror = settings.mirror(repository);
+            answer.putIfAbsent(mirror.getId(), mirror);
+        }
+        for (RemoteRepository repository : repositories) {
+            RemoteRepository mirror = settings.mirror(repository);
+            answer.putIfAbsent(mirror.getId(), mirror);
+        }
+        if (central != null) {
+            RemoteRepository mirror = settings.mirror(central);
+            answer.putIfAbsent(mirror.getId(), mirror);
+        }
+        return new ArrayList<>(answer.values());
+    }
+
+    public ResolverSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Returns the statistics of the transfers from each repository keyed by its URL
+     */
+    public Map<String, RepositoryStatistics> getRepositoryStatistics() {
+        return Collections.unmodifiableMap(repositoryStatistics);
+    }
 
-        RepositorySystem repositorySystem = serviceLocator.getService(RepositorySystem.class);
-        DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
-        LocalRepository localRepository = new LocalRepository(System.getProperty("user.home") + "/.m2/repository");
-        session.setLocalRepositoryManager(repositorySystem.newLocalRepositoryManager(session, localRepository));
+    public int getDownloadThreads() {
+        return downloadThreads;
+    }
 
-        RemoteRepository remoteRepository = new RemoteRepository.Builder("central", "default", "http://central.maven.org/maven2").build();
-        CollectRequest collectRequest = new CollectRequest(null, Arrays.asList(remoteRepository));
+    /**
+     * Sets the maximum number of artifacts to download from a repository in parallel which must be called before the
+     * first resolution
+     */
+    public void setDownloadThreads(int downloadThreads) {
+        if (downloadThreads < 1) {
+            throw new IllegalArgumentException("downloadThreads must be positive but was " + downloadThreads);
+        }
+        this.downloadThreads = downloadThreads;
+    }
 
-        collectRequest.setDependencies(dependencies);
-        DependencyRequest dependencyRequest = new DependencyRequest(collectRequest, null);
-        DependencyResult result = repositorySystem.resolveDependencies(session, dependencyRequest);
+    public ResolutionCache getResolutionCache() {
+        return resolutionCache;
+    }
 
-        List<URL> answer = new ArrayList<URL>();
+    /**
+     * Sets the cache of resolutions or null to always resolve the coordinates
+     */
+    public void setResolutionCache(ResolutionCache resolutionCache) {
+        this.resolutionCache = resolutionCache;
+    }
+
+    /**
+     * Resolves the dependencies and their transitive dependencies using the repository system
+     */
+    protected List<File> resolveFiles(List<Dependency> dependencies, List<RemoteRepository> repositories) throws Exception {
+        DependencyResult result = resolveDependencies(dependencies, repositories);
+        List<File> answer = new ArrayList<File>();
         for (ArtifactResult artifact : result.getArtifactResults()) {
-            answer.add(artifact.getArtifact().getFile().toURI().toURL());
+            answer.add(artifact.getArtifact().getFile());
         }
         return answer;
     }
 
-    private List<Dependency> createDependencies(String[] allCoordinates) {
-        List<Dependency> dependencies = new ArrayList<Dependency>();
-        for (String coordinate : allCoordinates) {
-            dependencies.add(new Dependency(new DefaultArtifact(coordinate), null));
+    /**
+     * Collects the conflict mediated graph of the dependencies and resolves the artifacts of its winning nodes. The
+     * graph keeps the nodes which lost conflicts linked to their winners so that the dependencies of any node can
+     * be found.
+     */
+    protected DependencyResult resolveDependencies(List<Dependency> dependencies, List<RemoteRepository> repositories) throws Exception {
+        CollectRequest collectRequest = new CollectRequest(dependencies, null, repositories);
+        DependencyRequest dependencyRequest = new DependencyRequest(collectRequest,
+                (node, parents) -> !node.getData().containsKey(ConflictResolver.NODE_DATA_WINNER));
+        return RepositorySystemHolder.INSTANCE.resolveDependencies(getSession(), dependencyRequest);
+    }
+
+    /**
+     * Returns the session shared by all resolutions, creating it on first use
+     */
+    protected RepositorySystemSession getSession() {
+        RepositorySystemSession answer = session;
+        if (answer == null) {
+            synchronized (this) {
+                answer = session;
+                if (answer == null) {
+                    answer = createSession(RepositorySystemHolder.INSTANCE);
+                    session = answer;
+                }
+            }
         }
-        return dependencies;
+        return answer;
+    }
+
+    protected RepositorySystemSession createSession(RepositorySystem repositorySystem) {
+        DefaultRepositorySystemSession answer = MavenRepositorySystemUtils.newSession();
+        answer.setLocalRepositoryManager(repositorySystem.newLocalRepositoryManager(answer, new LocalRepository(settings.getLocalRepository())));
+        answer.setConfigProperty("aether.connector.basic.threads", downloadThreads);
+        answer.setConfigProperty(ConflictResolver.CONFIG_PROP_VERBOSE, true);
+        answer.setOffline(settings.isOffline());
+        // directory repositories can still be used offline
+        answer.setConfigProperty("aether.offline.protocols", "file");
+        answer.setMirrorSelector(settings.getMirrorSelector());
+        answer.setTransferListener(new AbstractTransferListener() {
+            @Override
+            public void transferSucceeded(TransferEvent event) {
+                recordTransfer(event, false);
+            }
+
+            @Override
+            public void transferFailed(TransferEvent event) {
+                recordTransfer(event, true);
+            }
+        });
+        answer.setReadOnly();
+        return answer;
+    }
+
+    private void recordTransfer(TransferEvent event, boolean failed) {
+        TransferResource resource = event.getResource();
+        long latency = System.currentTimeMillis() - resource.getTransferStartTime();
+        repositoryStatistics.computeIfAbsent(resource.getRepositoryUrl(), RepositoryStatistics::new)
+                .transferred(latency, event.getTransferredBytes(), failed);
+    }
+
+    private static void addFiles(DependencyNode node, Set<File> files, Set<DependencyNode> visited) {
+        DependencyNode winner = (DependencyNode) node.getData().get(ConflictResolver.NODE_DATA_WINNER);
+        if (winner != null) {
+            node = winner;
+        }
+        if (visited.add(node)) {
+            Artifact artifact = node.getArtifact();
+            if (artifact != null && artifact.getFile() != null) {
+                files.add(artifact.getFile());
+            }
+            for (DependencyNode child : node.getChildren()) {
+                addFiles(child, files, visited);
+            }
+        }
+    }
+
+    /**
+     * Returns true if any artifact in the graph is a SNAPSHOT or was selected from a version range so that resolving
+     * it again could give different files
+     */
+    static boolean isVolatile(DependencyNode root) {
+        Set<DependencyNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<DependencyNode> nodes = new ArrayList<>();
+        nodes.add(root);
+        while (!nodes.isEmpty()) {
+            DependencyNode node = nodes.remove(nodes.size() - 1);
+            if (!visited.add(node)) {
+                continue;
+            }
+            Artifact artifact = node.getArtifact();
+            if (artifact != null && artifact.isSnapshot()) {
+                return true;
+            }
+            if (node.getVersionConstraint() != null && node.getVersionConstraint().getRange() != null) {
+                return true;
+            }
+            nodes.addAll(node.getChildren());
+        }
+        return false;
+    }
+
+    private static String versionlessKey(Artifact artifact) {
+        return artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getExtension() + ":" + artifact.getClassifier();
+    }
+
+    private static List<URL> toURLs(List<File> files) throws MalformedURLException {
+        List<URL> answer = new ArrayList<URL>(files.size());
+        for (File file : files) {
+            answer.add(file.toURI().toURL());
+        }
+        return answer;
     }
 
     private List<Dependency> createDependencies(Iterable<String> allCoordinates) {
@@ -90,4 +369,16 @@ public class Resolver {
         }
         return dependencies;
     }
+
+    private static final class RepositorySystemHolder {
+        static final RepositorySystem INSTANCE = createRepositorySystem();
+
+        private static RepositorySystem createRepositorySystem() {
+            DefaultServiceLocator serviceLocator = MavenRepositorySystemUtils.newServiceLocator();
+            serviceLocator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
+            serviceLocator.addService(TransporterFactory.class, HttpTransporterFactory.class);
+            serviceLocator.addService(TransporterFactory.class, FileTransporterFactory.class);
+            return serviceLocator.getService(RepositorySystem.class);
+        }
+    }
 }
@@ -0,0 +1,293 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.resolver;
+
+import org.eclipse.aether.repository.MirrorSelector;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.util.repository.DefaultMirrorSelector;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The local repository, remote repositories, mirrors and offline mode used by a {@link Resolver}.
+ * <p>
+ * {@link #load()} starts from the maven <code>settings.xml</code> file, or the file named by the
+ * <code>io.pfunc.settings</code> system property, then applies the <code>io.pfunc.*</code> system properties. The
+ * repositories and mirrors properties are comma separated lists of <code>id::url</code> and
+ * <code>id::mirrorOf::url</code> entries.
+ */
+public class ResolverSettings {
+    private static final Logger LOGGER = Logger.getLogger(ResolverSettings.class.getName());
+    public static final String SETTINGS_PROPERTY = "io.pfunc.settings";
+    public static final String LOCAL_REPOSITORY_PROPERTY = "io.pfunc.localRepository";
+    public static final String REPOSITORIES_PROPERTY = "io.pfunc.repositories";
+    public static final String MIRRORS_PROPERTY = "io.pfunc.mirrors";
+    public static final String OFFLINE_PROPERTY = "io.pfunc.offline";
+    public static final String CENTRAL_ID = "central";
+    public static final String CENTRAL_URL = "https://repo.maven.apache.org/maven2";
+
+    private File localRepository = new File(System.getProperty("user.home"), ".m2/repository");
+    private final List<RemoteRepository> repositories = new ArrayList<>();
+    private final List<String[]> mirrors = new ArrayList<>();
+    private boolean offline;
+
+    /**
+     * Returns the settings configured by the <code>settings.xml</code> file and the system properties
+     */
+    public static ResolverSettings load() {
+        ResolverSettings answer = new ResolverSettings();
+        String property = System.getProperty(SETTINGS_PROPERTY);
+        File file = property != null && property.length() > 0
+                ? new File(property) : new File(System.getProperty("user.home"), ".m2/settings.xml");
+        if (file.isFile()) {
+            try {
+                answer.loadSettingsXml(file);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to load the maven settings " + file + " due to " + e, e);
+            }
+        }
+        answer.loadSystemProperties();
+        return answer;
+    }
+
+    @Override
+    public String toString() {
+        return "ResolverSettings{localRepository: " + localRepository + " repositories: " + getRepositories()
+                + " offline: " + offline + "}";
+    }
+
+    /**
+     * Applies the local repository, offline mode, mirrors and the repositories of the active profiles of a maven
+     * <code>settings.xml</code> file. Document type declarations and external entities are rejected so that a
+     * settings file cannot read other files or make network requests when it is parsed.
+     */
+    public void loadSettingsXml(File file) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        factory.setXIncludeAware(false);
+        factory.setExpandEntityReferences(false);
+        Document document = factory.newDocumentBuilder().parse(file);
+        Element settings = document.getDocumentElement();
+
+        String local = childText(settings, "localRepository");
+        if (local != null) {
+            setLocalRepository(new File(local.replace("${user.home}", System.getProperty("user.home"))));
+        }
+        String offlineText = childText(settings, "offline");
+        if (offlineText != null) {
+            setOffline(Boolean.parseBoolean(offlineText));
+        }
+        for (Element mirror : children(child(settings, "mirrors"), "mirror")) {
+            String id = childText(mirror, "id");
+            String mirrorOf = childText(mirror, "mirrorOf");
+            String url = childText(mirror, "url");
+            if (id == null || mirrorOf == null || url == null) {
+                LOGGER.warning("Ignoring the mirror " + id + " in " + file + " as it requires an id, mirrorOf and url");
+                continue;
+            }
+            addMirror(id, mirrorOf, url);
+        }
+        Set<String> activeProfiles = new HashSet<>();
+        for (Element activeProfile : children(child(settings, "activeProfiles"), "activeProfile")) {
+            activeProfiles.add(activeProfile.getTextContent().trim());
+        }
+        for (Element profile : children(child(settings, "profiles"), "profile")) {
+            if (activeProfiles.contains(childText(profile, "id"))
+                    || "true".equals(childText(child(profile, "activation"), "activeByDefault"))) {
+                for (Element repository : children(child(profile, "repositories"), "repository")) {
+                    addRepository(childText(repository, "id"), childText(repository, "url"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies the <code>io.pfunc.*</code> system properties
+     */
+    public void loadSystemProperties() {
+        String local = System.getProperty(LOCAL_REPOSITORY_PROPERTY);
+        if (local != null && local.length() > 0) {
+            setLocalRepository(new File(local));
+        }
+        for (String entry : split(System.getProperty(REPOSITORIES_PROPERTY))) {
+            addRepository(entry);
+        }
+        for (String entry : split(System.getProperty(MIRRORS_PROPERTY))) {
+            String[] values = entry.split("::", 3);
+            if (values.length != 3) {
+                throw new IllegalArgumentException("Invalid mirror " + entry + " should be id::mirrorOf::url");
+            }
+            addMirror(values[0], values[1], values[2]);
+        }
+        String offlineText = System.getProperty(OFFLINE_PROPERTY);
+        if (offlineText != null && offlineText.length() > 0) {
+            setOffline(Boolean.parseBoolean(offlineText));
+        }
+    }
+
+    /**
+     * Adds a repository given as <code>id::url</code> or a URL which is then also used as its id
+     */
+    public void addRepository(String entry) {
+        repositories.add(parseRepository(entry));
+    }
+
+    public void addRepository(String id, String url) {
+        repositories.add(createRepository(id, url));
+    }
+
+    /**
+     * Adds a mirror of the repositories matched by the maven <code>mirrorOf</code> pattern such as <code>*</code>,
+     * <code>external:*</code> or <code>central,!internal</code>
+     */
+    public void addMirror(String id, String mirrorOf, String url) {
+        if (id == null || mirrorOf == null || url == null) {
+            throw new IllegalArgumentException("A mirror requires an id, mirrorOf and url but was " + id + " " + mirrorOf + " " + url);
+        }
+        mirrors.add(new String[]{id, mirrorOf, url});
+    }
+
+    /**
+     * Returns the repository or the mirror which replaces it
+     */
+    public RemoteRepository mirror(RemoteRepository repository) {
+        RemoteRepository mirror = getMirrorSelector().getMirror(repository);
+        return mirror != null ? mirror : repository;
+    }
+
+    public MirrorSelector getMirrorSelector() {
+        DefaultMirrorSelector answer = new DefaultMirrorSelector();
+        for (String[] mirror : mirrors) {
+            answer.add(mirror[0], mirror[2], "default", false, mirror[1], "*");
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the configured repositories followed by maven central unless a repository with the
+     * <code>central</code> id has been configured to replace it. Mirrors are applied by {@link #mirror(RemoteRepository)}
+     */
+    public List<RemoteRepository> getRepositories() {
+        List<RemoteRepository> answer = new ArrayList<>(repositories);
+        if (!isCentral(answer)) {
+            answer.add(createRepository(CENTRAL_ID, CENTRAL_URL));
+        }
+        return Collections.unmodifiableList(answer);
+    }
+
+    public File getLocalRepository() {
+        return localRepository;
+    }
+
+    public void setLocalRepository(File localRepository) {
+        this.localRepository = localRepository;
+    }
+
+    /**
+     * Returns true if only the local repository and <code>file:</code> repositories may be used
+     */
+    public boolean isOffline() {
+        return offline;
+    }
+
+    public void setOffline(boolean offline) {
+        this.offline = offline;
+    }
+
+    /**
+     * Returns the repository given as <code>id::url</code> or a URL which is then also used as its id
+     */
+    public static RemoteRepository parseRepository(String entry) {
+        int idx = entry.indexOf("::");
+        if (idx > 0) {
+            return createRepository(entry.substring(0, idx), entry.substring(idx + 2));
+        }
+        return createRepository(entry, entry);
+    }
+
+    public static RemoteRepository createRepository(String id, String url) {
+        if (id == null || url == null) {
+            throw new IllegalArgumentException("A repository requires an id and url but was " + id + " " + url);
+        }
+        return new RemoteRepository.Builder(id, "default", url).build();
+    }
+
+    private static boolean isCentral(List<RemoteRepository> repositories) {
+        for (RemoteRepository repository : repositories) {
+            if (CENTRAL_ID.equals(repository.getId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> split(String value) {
+        List<String> answer = new ArrayList<>();
+        if (value != null) {
+            for (String entry : value.split(",")) {
+                if (entry.trim().length() > 0) {
+                    answer.add(entry.trim());
+                }
+            }
+        }
+        return answer;
+    }
+
+    private static Element child(Element element, String name) {
+        if (element != null) {
+            for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node instanceof Element && name.equals(node.getNodeName())) {
+                    return (Element) node;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<Element> children(Element element, String name) {
+        List<Element> answer = new ArrayList<>();
+        if (element != null) {
+            for (Node node = element.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (node instanceof Element && name.equals(node.getNodeName())) {
+                    answer.add((Element) node);
+                }
+            }
+        }
+        return answer;
+    }
+
+    private static String childText(Element element, String name) {
+        Element child = child(element, name);
+        return child != null ? child.getTextContent().trim() : null;
+    }
+}
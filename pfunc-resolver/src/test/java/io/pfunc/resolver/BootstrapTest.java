@@ -17,17 +17,33 @@
 package io.pfunc.resolver;
 
 import io.pfunc.loader.PFuncContext;
+import io.pfunc.loader.PFuncInfo;
 import io.pfunc.loader.PFunction;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.DependencyResult;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 /**
  */
 public class BootstrapTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testBootstrap() throws Exception {
         String basedir = System.getProperty("basedir", ".");
@@ -42,4 +58,73 @@ public class BootstrapTest {
         System.out.println("Loaded functions: " + map.keySet());
     }
 
+    @Test
+    public void functionMetadataReturnsCopies() throws Exception {
+        PFuncInfo[] metadata = Bootstrap.functionMetadata();
+        PFuncInfo[] again = Bootstrap.functionMetadata();
+        assertThat(again).isNotSameAs(metadata).containsExactly(metadata);
+        if (metadata.length > 0) {
+            metadata[0] = null;
+            assertThat(Bootstrap.functionMetadata()[0]).isNotNull();
+        }
+    }
+
+    @Test
+    public void resolvesAllLibrariesTogether() throws Exception {
+        File remote = folder.newFolder("remote");
+        ResolverTest.writeArtifact(remote, "common", "1.0", "");
+        ResolverTest.writeArtifact(remote, "common", "2.0", "");
+        ResolverTest.writeArtifact(remote, "a", "1.0", dependency("common", "1.0"));
+        ResolverTest.writeArtifact(remote, "b", "1.0", dependency("common", "2.0"));
+
+        ResolverSettings settings = new ResolverSettings();
+        settings.setLocalRepository(folder.newFolder("local"));
+        AtomicInteger resolutions = new AtomicInteger();
+        Resolver resolver = new Resolver(settings) {
+            @Override
+            protected DependencyResult resolveDependencies(List<Dependency> dependencies, List<RemoteRepository> repositories) throws Exception {
+                resolutions.incrementAndGet();
+                return super.resolveDependencies(dependencies, repositories);
+            }
+        };
+        resolver.setResolutionCache(null);
+
+        String repository = Bootstrap.REPOSITORY_DIRECTIVE + "test::" + remote.toURI();
+        URL extra = folder.newFile("extra.jar").toURI().toURL();
+        Map<String, List<String>> libraries = new LinkedHashMap<>();
+        libraries.put("first", Arrays.asList(repository, "mvn:test:a:1.0"));
+        libraries.put("second", Arrays.asList("mvn:test:b:1.0", extra.toString()));
+        Map<String, URLClassLoader> classLoaders = Bootstrap.createClassLoaders(resolver, libraries, false);
+        assertThat(resolutions.get()).isEqualTo(1);
+
+        // both libraries share the mediated version of their common dependency
+        assertThat(fileNames(classLoaders.get("first"))).containsExactly("a-1.0.jar", "common-1.0.jar");
+        assertThat(fileNames(classLoaders.get("second"))).containsExactly("extra.jar", "b-1.0.jar", "common-1.0.jar");
+    }
+
+    @Test
+    public void loadsEachSourceOnce() throws Exception {
+        File file = folder.newFile(".pfunc.libraries");
+        Map<String, URL> sources = new LinkedHashMap<>();
+        Bootstrap.addSource(sources, file.toURI().toURL());
+        // the same file found on the classpath via a different but equivalent URL
+        Bootstrap.addSource(sources, new File(folder.getRoot(), "./.pfunc.libraries").toURI().toURL());
+        Bootstrap.addSource(sources, new URL("file:" + file.getAbsolutePath()));
+        assertThat(sources).hasSize(1);
+        assertThat(sources.keySet().iterator().next()).isEqualTo(file.getCanonicalFile().toURI().toURL().toExternalForm());
+    }
+
+    private static String dependency(String artifactId, String version) {
+        return "<dependencies><dependency><groupId>test</groupId><artifactId>" + artifactId + "</artifactId><version>"
+                + version + "</version></dependency></dependencies>";
+    }
+
+    private static List<String> fileNames(URLClassLoader classLoader) throws Exception {
+        List<String> answer = new ArrayList<>();
+        for (URL url : classLoader.getURLs()) {
+            answer.add(new File(url.toURI()).getName());
+        }
+        classLoader.close();
+        return answer;
+    }
 }
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.resolver;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ */
+public class ResolutionCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected ResolutionCache cache;
+    protected List<String> coordinates = Arrays.asList("io.pfunc:a:1.0", "io.pfunc:b:2.0");
+    protected List<String> repositories = Arrays.asList("https://repo.maven.apache.org/maven2");
+    protected List<File> files;
+
+    @Before
+    public void init() throws Exception {
+        cache = new ResolutionCache(new File(folder.getRoot(), "resolutions"));
+        files = Arrays.asList(createFile("a.jar", "a"), createFile("b.jar", "b"));
+    }
+
+    @Test
+    public void returnsCachedFiles() throws Exception {
+        assertThat(cache.get(coordinates, repositories)).isNull();
+        cache.put(coordinates, repositories, files);
+        assertThat(cache.get(coordinates, repositories)).isEqualTo(files);
+        assertThat(cache.get(ResolutionCache.normalize(Arrays.asList(" io.pfunc:a:1.0", "", "io.pfunc:b:2.0 ")), repositories)).isEqualTo(files);
+        assertThat(cache.get(Arrays.asList("io.pfunc:b:2.0", "io.pfunc:a:1.0"), repositories)).isNull();
+        assertThat(cache.get(coordinates, Arrays.asList("http://other/repository"))).isNull();
+    }
+
+    @Test
+    public void validatesCachedFiles() throws Exception {
+        cache.put(coordinates, repositories, files);
+
+        // touching a file does not invalidate the entry as its checksum is unchanged
+        files.get(0).setLastModified(files.get(0).lastModified() - 10000);
+        assertThat(cache.get(coordinates, repositories)).isEqualTo(files);
+
+        Files.write(files.get(1).toPath(), "changed".getBytes(StandardCharsets.UTF_8));
+        assertThat(cache.get(coordinates, repositories)).isNull();
+
+        cache.put(coordinates, repositories, files);
+        assertThat(files.get(0).delete()).isTrue();
+        assertThat(cache.get(coordinates, repositories)).isNull();
+    }
+
+    @Test
+    public void expiresVolatileResolutions() throws Exception {
+        List<String> snapshots = Arrays.asList("io.pfunc:a:1.0", "io.pfunc:b:2.0-SNAPSHOT");
+        List<String> ranges = Arrays.asList("io.pfunc:a:[1.0,2.0)");
+        assertThat(ResolutionCache.isVolatile("io.pfunc:b:2.0-SNAPSHOT")).isTrue();
+        assertThat(ResolutionCache.isVolatile("io.pfunc:a:[1.0,2.0)")).isTrue();
+        assertThat(ResolutionCache.isVolatile("io.pfunc:a:1.0")).isFalse();
+
+        cache.put(coordinates, repositories, files);
+        cache.put(snapshots, repositories, files);
+        cache.put(ranges, repositories, files);
+        assertThat(cache.get(snapshots, repositories)).isEqualTo(files);
+
+        cache.setVolatileExpiry(0);
+        assertThat(cache.get(coordinates, repositories)).isEqualTo(files);
+        assertThat(cache.get(snapshots, repositories)).isNull();
+        assertThat(cache.get(ranges, repositories)).isNull();
+
+        cache.setVolatileExpiry(-1);
+        assertThat(cache.get(snapshots, repositories)).isEqualTo(files);
+    }
+
+    @Test
+    public void expiresResolutionsWithVolatileDependencies() throws Exception {
+        cache.put(coordinates, repositories, files, true);
+        assertThat(cache.get(coordinates, repositories)).isEqualTo(files);
+
+        cache.setVolatileExpiry(0);
+        assertThat(cache.get(coordinates, repositories)).isNull();
+    }
+
+    private File createFile(String name, String content) throws Exception {
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.pfunc.resolver;
+
+import org.eclipse.aether.repository.RemoteRepository;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.SAXParseException;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class ResolverSettingsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void loadsSettingsXml() throws Exception {
+        File file = folder.newFile("settings.xml");
+        String xml = "<settings>"
+                + "<localRepository>/tmp/pfunc-repository</localRepository>"
+                + "<offline>true</offline>"
+                + "<mirrors><mirror><mirrorOf>*</mirrorOf><url>https://incomplete.example.com</url></mirror>"
+                + "<mirror><id>internal</id><mirrorOf>central</mirrorOf><url>https://nexus.example.com/maven</url></mirror></mirrors>"
+                + "<profiles>"
+                + "<profile><id>active</id><repositories><repository><id>active</id><url>https://active.example.com</url></repository></repositories></profile>"
+                + "<profile><id>default</id><activation><activeByDefault>true</activeByDefault></activation>"
+                + "<repositories><repository><id>default</id><url>https://default.example.com</url></repository></repositories></profile>"
+                + "<profile><id>inactive</id><repositories><repository><id>inactive</id><url>https://inactive.example.com</url></repository></repositories></profile>"
+                + "</profiles>"
+                + "<activeProfiles><activeProfile>active</activeProfile></activeProfiles>"
+                + "</settings>";
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+        ResolverSettings settings = new ResolverSettings();
+        settings.loadSettingsXml(file);
+        assertThat(settings.getLocalRepository()).isEqualTo(new File("/tmp/pfunc-repository"));
+        assertThat(settings.isOffline()).isTrue();
+        List<RemoteRepository> repositories = settings.getRepositories();
+        assertThat(repositories).extracting(RemoteRepository::getId).containsExactly("active", "default", "central");
+
+        RemoteRepository central = ResolverSettings.createRepository("central", ResolverSettings.CENTRAL_URL);
+        assertThat(settings.mirror(central).getUrl()).isEqualTo("https://nexus.example.com/maven");
+        assertThat(settings.mirror(repositories.get(0))).isSameAs(repositories.get(0));
+    }
+
+    @Test
+    public void rejectsExternalEntities() throws Exception {
+        File secret = folder.newFile("secret.txt");
+        Files.write(secret.toPath(), "/tmp/secret".getBytes(StandardCharsets.UTF_8));
+        File file = folder.newFile("settings.xml");
+        String xml = "<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE settings [<!ENTITY secret SYSTEM \"" + secret.toURI() + "\">]>"
+                + "<settings><localRepository>&secret;</localRepository></settings>";
+        Files.write(file.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+
+        ResolverSettings settings = new ResolverSettings();
+        try {
+            settings.loadSettingsXml(file);
+            fail("Should have rejected the document type declaration");
+        } catch (SAXParseException e) {
+            assertThat(e.getMessage()).contains("DOCTYPE");
+        }
+        assertThat(settings.getLocalRepository()).isNotEqualTo(new File("/tmp/secret"));
+    }
+
+    @Test
+    public void defaultsToCentral() throws Exception {
+        ResolverSettings settings = new ResolverSettings();
+        assertThat(settings.getRepositories()).extracting(RemoteRepository::getUrl).containsExactly(ResolverSettings.CENTRAL_URL);
+        settings.addRepository("internal::https://nexus.example.com/maven");
+        assertThat(settings.getRepositories()).extracting(RemoteRepository::getId).containsExactly("internal", "central");
+
+        // a repository with the central id replaces maven central
+        settings.addRepository("central::https://central.example.com/maven");
+        assertThat(settings.getRepositories()).extracting(RemoteRepository::getUrl)
+                .containsExactly("https://nexus.example.com/maven", "https://central.example.com/maven");
+        assertThat(ResolverSettings.parseRepository("internal::https://nexus.example.com/maven").getId()).isEqualTo("internal");
+        assertThat(ResolverSettings.parseRepository("https://nexus.example.com/maven").getUrl()).isEqualTo("https://nexus.example.com/maven");
+    }
+}
@@ -18,18 +18,41 @@ package io.pfunc.resolver;
 
 import io.pfunc.loader.PFuncContext;
 import io.pfunc.loader.PFunction;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.DependencyResolutionException;
+import org.eclipse.aether.resolution.DependencyResult;
+import org.eclipse.aether.util.version.GenericVersionScheme;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.net.InetSocketAddress;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 /**
  */
 public class ResolverTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void testResolver() throws Exception {
         Resolver helper = new Resolver();
@@ -50,4 +73,168 @@ public class ResolverTest {
         System.out.println("Loaded functions: " + map.keySet());
     }
 
+    @Test
+    public void warmStartUsesResolutionCache() throws Exception {
+        AtomicInteger resolutions = new AtomicInteger();
+        Resolver helper = new Resolver() {
+            @Override
+            protected DependencyResult resolveDependencies(List<Dependency> dependencies, List<RemoteRepository> repositories) throws Exception {
+                resolutions.incrementAndGet();
+                return super.resolveDependencies(dependencies, repositories);
+            }
+        };
+        helper.setResolutionCache(new ResolutionCache(folder.newFolder("resolutions")));
+
+        List<URL> urls = helper.resolveCoordinates("io.pfunc:pfunc-sample:1.0-SNAPSHOT");
+        assertThat(helper.resolveCoordinates(" io.pfunc:pfunc-sample:1.0-SNAPSHOT ")).isEqualTo(urls);
+        assertThat(resolutions.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void detectsVolatileDependencies() throws Exception {
+        DefaultDependencyNode root = new DefaultDependencyNode((Dependency) null);
+        DefaultDependencyNode library = node("io.pfunc:library:1.0");
+        DefaultDependencyNode dependency = node("io.pfunc:dependency:1.2");
+        root.setChildren(Arrays.<DependencyNode>asList(library));
+        library.setChildren(Arrays.<DependencyNode>asList(dependency));
+        assertThat(Resolver.isVolatile(root)).isFalse();
+
+        dependency.setVersionConstraint(new GenericVersionScheme().parseVersionConstraint("[1.0,2.0)"));
+        assertThat(Resolver.isVolatile(root)).isTrue();
+
+        library.setChildren(Arrays.<DependencyNode>asList(node("io.pfunc:dependency:1.3-SNAPSHOT")));
+        assertThat(Resolver.isVolatile(root)).isTrue();
+    }
+
+    private static DefaultDependencyNode node(String coordinate) throws Exception {
+        DefaultDependencyNode answer = new DefaultDependencyNode(new Dependency(new DefaultArtifact(coordinate), "compile"));
+        answer.setVersionConstraint(new GenericVersionScheme().parseVersionConstraint(answer.getArtifact().getVersion()));
+        return answer;
+    }
+
+    @Test
+    public void downloadsArtifactsInParallel() throws Exception {
+        int libraryCount = 8;
+        File remote = folder.newFolder("remote");
+        StringBuilder dependencies = new StringBuilder();
+        for (int i = 0; i < libraryCount; i++) {
+            writeArtifact(remote, "lib" + i, "");
+            dependencies.append("<dependency><groupId>test</groupId><artifactId>lib").append(i)
+                    .append("</artifactId><version>1.0</version></dependency>");
+        }
+        writeArtifact(remote, "root", "<dependencies>" + dependencies + "</dependencies>");
+
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", exchange -> {
+            File file = new File(remote, exchange.getRequestURI().getPath());
+            try {
+                if (!file.isFile()) {
+                    exchange.sendResponseHeaders(404, -1);
+                    return;
+                }
+                if (file.getName().endsWith(".jar")) {
+                    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    Thread.sleep(200);
+                    active.decrementAndGet();
+                }
+                byte[] data = Files.readAllBytes(file.toPath());
+                exchange.sendResponseHeaders(200, data.length);
+                exchange.getResponseBody().write(data);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+            ResolverSettings settings = new ResolverSettings();
+            settings.setLocalRepository(folder.newFolder("local"));
+            settings.addRepository("test", url);
+            Resolver helper = new Resolver(settings);
+            helper.setResolutionCache(null);
+            helper.setDownloadThreads(4);
+
+            List<URL> urls = helper.resolveCoordinates("test:root:1.0");
+            assertThat(urls).hasSize(libraryCount + 1);
+            assertThat(maxActive.get()).isGreaterThan(1).isLessThanOrEqualTo(4);
+        } finally {
+            server.stop(0);
+            ((ExecutorService) server.getExecutor()).shutdown();
+        }
+    }
+
+    @Test
+    public void offlineResolvesFromDirectoryRepository() throws Exception {
+        File remote = folder.newFolder("remote");
+        writeArtifact(remote, "lib", "");
+        writeArtifact(remote, "root", "<dependencies><dependency><groupId>test</groupId><artifactId>lib</artifactId>"
+                + "<version>1.0</version></dependency></dependencies>");
+        String url = remote.toURI().toString();
+
+        ResolverSettings settings = new ResolverSettings();
+        settings.setLocalRepository(folder.newFolder("local"));
+        settings.setOffline(true);
+        settings.addRepository("test", url);
+        Resolver helper = new Resolver(settings);
+        helper.setResolutionCache(null);
+        assertThat(helper.resolveCoordinates("test:root:1.0")).hasSize(2);
+        assertThat(helper.getRepositoryStatistics().get(url).getTransferCount()).isGreaterThanOrEqualTo(4);
+
+        // remote repositories are not contacted in offline mode
+        settings = new ResolverSettings();
+        settings.setLocalRepository(folder.newFolder("local2"));
+        settings.setOffline(true);
+        settings.addRepository("unreachable", "http://127.0.0.1:1/");
+        helper = new Resolver(settings);
+        helper.setResolutionCache(null);
+        try {
+            helper.resolveCoordinates("test:root:1.0");
+            fail("Should have failed");
+        } catch (DependencyResolutionException e) {
+            assertThat(e.getMessage()).contains("offline");
+        }
+        assertThat(helper.getRepositoryStatistics()).isEmpty();
+    }
+
+    @Test
+    public void resolvesFromMirror() throws Exception {
+        File remote = folder.newFolder("remote");
+        writeArtifact(remote, "root", "");
+
+        ResolverSettings settings = new ResolverSettings();
+        settings.setLocalRepository(folder.newFolder("local"));
+        settings.addRepository("unreachable", "http://127.0.0.1:1/");
+        Resolver helper = new Resolver(settings);
+        helper.setResolutionCache(null);
+        List<RemoteRepository> others = Arrays.asList(ResolverSettings.parseRepository("other::http://127.0.0.1:2/"));
+        assertThat(helper.getRepositories(others)).extracting(RemoteRepository::getId).containsExactly("unreachable", "other", "central");
+
+        settings.addMirror("mirror", "*", remote.toURI().toString());
+        List<RemoteRepository> repositories = helper.getRepositories(others);
+        assertThat(repositories).hasSize(1);
+        assertThat(repositories.get(0).getId()).isEqualTo("mirror");
+        assertThat(helper.resolveCoordinates("test:root:1.0")).hasSize(1);
+    }
+
+    private static void writeArtifact(File repository, String artifactId, String dependencies) throws Exception {
+        writeArtifact(repository, artifactId, "1.0", dependencies);
+    }
+
+    /**
+     * Writes the pom and a dummy jar of the artifact in the <code>test</code> group to the repository directory
+     */
+    static void writeArtifact(File repository, String artifactId, String version, String dependencies) throws Exception {
+        File dir = new File(repository, "test/" + artifactId + "/" + version);
+        dir.mkdirs();
+        String pom = "<project><modelVersion>4.0.0</modelVersion><groupId>test</groupId><artifactId>" + artifactId
+                + "</artifactId><version>" + version + "</version>" + dependencies + "</project>";
+        String name = artifactId + "-" + version;
+        Files.write(new File(dir, name + ".pom").toPath(), pom.getBytes(StandardCharsets.UTF_8));
+        Files.write(new File(dir, name + ".jar").toPath(), name.getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -16,11 +16,53 @@
  */
 package io.pfunc.sample;
 
+import io.pfunc.bootstrap.PFunc;
+import io.pfunc.bootstrap.PFuncInvocationContext;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
 /**
  */
 public class MyFunc {
 
+    /**
+     * Returns a greeting
+     *
+     * @param name the name to greet
+     */
+    @PFunc
     public static String helloWorld(String name) {
         return "Hello " + name;
     }
+
+    @PFunc
+    public static long increment(long value) {
+        return value + 1;
+    }
+
+    @PFunc
+    public static Stream<String> words(String text) {
+        return Arrays.stream(text.split("\\s+"));
+    }
+
+    /**
+     * Waits for the given time returning false if the invocation was cancelled before then
+     */
+    @PFunc
+    public static boolean waitFor(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < deadline) {
+            if (PFuncInvocationContext.isCancelled()) {
+                return false;
+            }
+            try {
+                Thread.sleep(Math.min(10, Math.max(1, deadline - System.currentTimeMillis())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -26,6 +26,7 @@ public class MyFuncTest {
     @Test
     public void testFunction() throws Exception {
         assertThat(MyFunc.helloWorld("James")).isEqualTo("Hello James");
+        assertThat(MyFunc.increment(41)).isEqualTo(42);
     }
 
 }